@@ -15,9 +15,11 @@
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Optional;
 
@@ -184,7 +186,10 @@ public void run() {
                         }
                         try {
                             Files.createDirectories(outputPath.getParent());
-                            Files.write(outputPath, ((JavaClassRepresentation) representation).classFile());
+                            try (FileChannel channel = FileChannel.open(outputPath, StandardOpenOption.CREATE,
+                                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                                representation.writeTo(ClassOutput.of(channel));
+                            }
                         } catch (IOException e) {
                             System.err.println("Failed to write output file: " + e.getMessage());
                             e.printStackTrace();
@@ -0,0 +1,98 @@
+package me.darknet.assembler.compile;
+
+import dev.xdark.blw.classfile.MemberIdentifier;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Merges the members of a freshly written class into an existing class file.
+ */
+final class ClassFileMerger {
+
+    private ClassFileMerger() {
+    }
+
+    /**
+     * The header of the merged class is the one of the written class. Members of the existing class are replaced by
+     * the members of the written class with the same name and descriptor, in place, members which are not replaced
+     * are copied as they are if they are kept. Members which only the written class has are placed last.
+     * <p>
+     * The writer of the merged class starts from the constant pool of the existing class, so the code of the copied
+     * members is not parsed and written again, but taken over byte for byte.
+     *
+     * @param base
+     *                the existing class
+     * @param written
+     *                the written class
+     * @param keep
+     *                whether a member of the existing class which is not replaced is kept
+     *
+     * @return the merged class.
+     */
+    static byte @NotNull [] merge(@NotNull ClassReader base, byte @NotNull [] written,
+            @NotNull Predicate<MemberIdentifier> keep) {
+        ClassNode writtenClass = new ClassNode();
+        new ClassReader(written).accept(writtenClass, 0);
+        Map<MemberIdentifier, FieldNode> writtenFields = new LinkedHashMap<>();
+        for (FieldNode field : writtenClass.fields)
+            writtenFields.put(new MemberIdentifier(field.name, field.desc), field);
+        Map<MemberIdentifier, MethodNode> writtenMethods = new LinkedHashMap<>();
+        for (MethodNode method : writtenClass.methods)
+            writtenMethods.put(new MemberIdentifier(method.name, method.desc), method);
+        writtenClass.fields = new ArrayList<>();
+        writtenClass.methods = new ArrayList<>();
+
+        ClassWriter writer = new ClassWriter(base, 0);
+        writtenClass.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+            @Override
+            public void visitEnd() {
+                // members follow
+            }
+        });
+        base.accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature,
+                    Object value) {
+                MemberIdentifier key = new MemberIdentifier(name, descriptor);
+                FieldNode replacement = writtenFields.remove(key);
+                if (replacement != null)
+                    replacement.accept(writer);
+                else if (keep.test(key))
+                    return writer.visitField(access, name, descriptor, signature, value);
+                return null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                    String[] exceptions) {
+                MemberIdentifier key = new MemberIdentifier(name, descriptor);
+                MethodNode replacement = writtenMethods.remove(key);
+                if (replacement != null)
+                    replacement.accept(writer);
+                else if (keep.test(key))
+                    // handing the writer's own visitor to its reader has the method copied as is
+                    return writer.visitMethod(access, name, descriptor, signature, exceptions);
+                return null;
+            }
+        }, 0);
+        for (FieldNode field : writtenFields.values())
+            field.accept(writer);
+        for (MethodNode method : writtenMethods.values())
+            method.accept(writer);
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+}
@@ -0,0 +1,100 @@
+package me.darknet.assembler.compile;
+
+import me.darknet.assembler.ast.ASTElement;
+import me.darknet.assembler.ast.specific.ASTClass;
+import me.darknet.assembler.ast.specific.ASTField;
+import me.darknet.assembler.ast.specific.ASTMember;
+import me.darknet.assembler.ast.specific.ASTMethod;
+import me.darknet.assembler.compile.analysis.AnalysisResults;
+import me.darknet.assembler.compile.analysis.MethodAnalysisLookup;
+import me.darknet.assembler.compile.builder.BlwReplaceClassBuilder;
+import me.darknet.assembler.compile.visitor.JavaCompileResult;
+import me.darknet.assembler.error.ErrorCollector;
+import me.darknet.assembler.visitor.ASTRootVisitor;
+
+import dev.xdark.blw.classfile.MemberIdentifier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compilation of a class which only compiles the members changed since a previous compilation, see
+ * {@link JvmCompiler#recompile}.
+ */
+final class IncrementalCompilation {
+
+    private final ASTClass declaration;
+    private final MemberFingerprints fingerprints;
+    private final Set<MemberIdentifier> reused;
+    private final @Nullable JavaCompileResult previous;
+    private final boolean streamCode;
+
+    private IncrementalCompilation(ASTClass declaration, MemberFingerprints fingerprints, Set<MemberIdentifier> reused,
+            @Nullable JavaCompileResult previous, boolean streamCode) {
+        this.declaration = declaration;
+        this.fingerprints = fingerprints;
+        this.reused = reused;
+        this.previous = previous;
+        this.streamCode = streamCode;
+    }
+
+    /**
+     * @return the compilation, or {@code null} if the declarations can only be compiled as a whole.
+     */
+    static @Nullable IncrementalCompilation of(@Nullable JavaCompileResult previous, @NotNull List<ASTElement> ast,
+            @NotNull JvmCompilerOptions options) {
+        if (ast.size() != 1 || !(ast.getFirst() instanceof ASTClass declaration) || options.overlay != null)
+            return null;
+        MemberFingerprints fingerprints = MemberFingerprints.of(declaration, options);
+        Set<MemberIdentifier> reused = Collections.emptySet();
+        if (previous != null && previous.representation() != null && previous.fingerprints() != null)
+            reused = fingerprints.unchanged(previous.fingerprints());
+        return new IncrementalCompilation(declaration, fingerprints, reused, previous, options.streamCode());
+    }
+
+    /**
+     * @return fingerprints of the members of the new version.
+     */
+    @NotNull
+    MemberFingerprints fingerprints() {
+        return fingerprints;
+    }
+
+    /**
+     * Visit the class, leaving out the reused members. Code is only streamed when asked for, see
+     * {@link JvmCompilerOptions#streamCode(boolean)}.
+     */
+    void transform(@NotNull ASTRootVisitor visitor, @NotNull ErrorCollector collector) {
+        declaration.accept(collector, visitor.visitClass(declaration.getModifiers(), declaration.getName()), streamCode,
+                member -> !(member instanceof ASTField || member instanceof ASTMethod)
+                        || !reused.contains(MemberFingerprints.key((ASTMember) member)));
+    }
+
+    /**
+     * @param changed
+     *                the class written from the visited members
+     * @param builder
+     *                the builder of the class, the analysis results of the reused methods are added to it
+     *
+     * @return the class with the reused members of the previous class.
+     */
+    byte @NotNull [] merge(byte @NotNull [] changed, @NotNull BlwReplaceClassBuilder builder) {
+        JavaCompileResult previous = this.previous;
+        if (reused.isEmpty() || previous == null || previous.representation() == null)
+            return changed;
+
+        MethodAnalysisLookup previousLookup = previous.analysisLookup();
+        for (MemberIdentifier key : reused) {
+            AnalysisResults results = previousLookup.results(key);
+            if (results != null)
+                builder.getMethodAnalysisResults().put(key, results);
+        }
+
+        return ClassFileMerger.merge(new ClassReader(previous.representation().classFile()), changed,
+                reused::contains);
+    }
+}
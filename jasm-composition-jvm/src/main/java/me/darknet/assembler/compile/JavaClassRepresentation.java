@@ -1,10 +1,27 @@
 package me.darknet.assembler.compile;
 
+import me.darknet.assembler.compiler.ClassOutput;
 import me.darknet.assembler.compiler.ClassRepresentation;
 
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * @param classFile
  *                  Raw class file.
  */
 public record JavaClassRepresentation(byte[] classFile) implements ClassRepresentation {
+
+    @Override
+    public @NotNull ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(classFile).asReadOnlyBuffer();
+    }
+
+    @Override
+    public void writeTo(@NotNull ClassOutput output) throws IOException {
+        // the array is exposed by classFile() anyway, a writable view lets array backed sinks write from it directly
+        output.write(ByteBuffer.wrap(classFile));
+    }
 }
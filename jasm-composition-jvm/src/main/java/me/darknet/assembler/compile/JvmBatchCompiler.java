@@ -0,0 +1,133 @@
+package me.darknet.assembler.compile;
+
+import me.darknet.assembler.ast.ASTElement;
+import me.darknet.assembler.compile.visitor.JavaCompileResult;
+import me.darknet.assembler.compiler.CachedInheritanceChecker;
+import me.darknet.assembler.compiler.InheritanceChecker;
+import me.darknet.assembler.error.Result;
+
+import dev.xdark.blw.BytecodeLibrary;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compiler of many classes at once. Every class is compiled like {@link JvmCompiler#compile} does, as a task of its
+ * own on the executor of the batch, while the setup which {@link JvmCompiler} repeats for every class is shared:
+ * <ul>
+ * <li>the inheritance checker, whose answers are cached for all classes, see {@link CachedInheritanceChecker}</li>
+ * <li>the {@link TypeCache} of the types parsed from descriptors</li>
+ * <li>the {@link OverlayCache} of the overlays compiled against</li>
+ * <li>the bytecode library writing the classes</li>
+ * </ul>
+ * Every unit is compiled with a copy of its options using the shared checker and caches, the checker and caches of
+ * the given options are ignored and the options themselves are left as they are. A batch compiler can be used for any
+ * amount of batches, and from any amount of threads.
+ */
+public class JvmBatchCompiler {
+
+    private final CachedInheritanceChecker checker;
+    private final TypeCache typeCache = new TypeCache();
+    private final OverlayCache overlayCache = new OverlayCache();
+    private final BytecodeLibrary library;
+    private final Executor executor;
+
+    /**
+     * Batch compiler running on the {@link ForkJoinPool#commonPool() common pool}.
+     *
+     * @param checker
+     *                the inheritance checker for all classes, it must be thread safe
+     */
+    public JvmBatchCompiler(@NotNull InheritanceChecker checker) {
+        this(checker, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param checker
+     *                 the inheritance checker for all classes, it must be thread safe
+     * @param executor
+     *                 the executor to compile the classes on
+     */
+    public JvmBatchCompiler(@NotNull InheritanceChecker checker, @NotNull Executor executor) {
+        this.checker = checker instanceof CachedInheritanceChecker cached ? cached
+                : new CachedInheritanceChecker(checker);
+        this.library = JvmCompiler.createLibrary(this.checker);
+        this.executor = executor;
+    }
+
+    /**
+     * Compile a single class on the executor.
+     *
+     * @param ast
+     *                the AST of the class
+     * @param options
+     *                the options of the class, which are copied and not changed
+     *
+     * @return the result of the compilation, completed exceptionally when compiling the class throws.
+     */
+    public @NotNull CompletableFuture<Result<JavaCompileResult>> submit(@NotNull List<ASTElement> ast,
+            @NotNull JvmCompilerOptions options) {
+        JvmCompilerOptions shared = new JvmCompilerOptions(options).inheritanceChecker(checker).typeCache(typeCache)
+                .overlayCache(overlayCache);
+        return CompletableFuture.supplyAsync(() -> JvmCompiler.compile(ast, shared, library), executor);
+    }
+
+    /**
+     * Compile all classes of a batch, the classes are compiled in parallel as far as the executor allows.
+     *
+     * @param units
+     *              the classes to compile
+     *
+     * @return the results of the compilations, in the order of the units.
+     */
+    public @NotNull List<CompletableFuture<Result<JavaCompileResult>>> compile(@NotNull List<Unit> units) {
+        List<CompletableFuture<Result<JavaCompileResult>>> results = new ArrayList<>(units.size());
+        for (Unit unit : units) {
+            results.add(submit(unit.ast(), unit.options()));
+        }
+        return results;
+    }
+
+    /**
+     * @return the inheritance checker shared by all classes.
+     */
+    public @NotNull CachedInheritanceChecker checker() {
+        return checker;
+    }
+
+    /**
+     * @return the type cache shared by all classes.
+     */
+    public @NotNull TypeCache typeCache() {
+        return typeCache;
+    }
+
+    /**
+     * @return the overlay cache shared by all classes.
+     */
+    public @NotNull OverlayCache overlayCache() {
+        return overlayCache;
+    }
+
+    /**
+     * @return the library writing all classes.
+     */
+    public @NotNull BytecodeLibrary library() {
+        return library;
+    }
+
+    /**
+     * A class to compile.
+     *
+     * @param ast
+     *                the AST of the class
+     * @param options
+     *                the options of the class
+     */
+    public record Unit(@NotNull List<ASTElement> ast, @NotNull JvmCompilerOptions options) {
+    }
+}
@@ -8,8 +8,10 @@
 import me.darknet.assembler.compile.builder.BlwReplaceClassBuilder;
 import me.darknet.assembler.compile.visitor.BlwRootVisitor;
 import me.darknet.assembler.compile.visitor.JavaCompileResult;
+import me.darknet.assembler.compiler.ClassBuffer;
 import me.darknet.assembler.compiler.Compiler;
 import me.darknet.assembler.compiler.CompilerOptions;
+import me.darknet.assembler.compiler.InheritanceChecker;
 import me.darknet.assembler.error.ErrorCollector;
 import me.darknet.assembler.error.Result;
 import me.darknet.assembler.transformer.Transformer;
@@ -19,43 +21,76 @@
 import dev.xdark.blw.asm.ClassWriterProvider;
 import dev.xdark.blw.classfile.ClassBuilder;
 import dev.xdark.blw.classfile.ClassFileView;
+import dev.xdark.blw.classfile.MemberIdentifier;
 import dev.xdark.blw.version.JavaVersion;
 import me.darknet.assembler.util.Location;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.List;
 
+/**
+ * Compiler of JVM classes. All state of a compilation is local to its call, a compiler can be shared by any amount of
+ * threads.
+ */
 public class JvmCompiler implements Compiler {
 
-    private BytecodeLibrary library;
-
-    private void applyOverlay(ErrorCollector collector, ClassBuilder builder, byte[] overlay) {
-        if (overlay != null) {
-            try {
-                library.read(new ByteArrayInputStream(overlay), builder);
-            } catch (IOException e) {
-                collector.addError("Failed to read overlay: " + e.getMessage(), null);
+    private volatile BytecodeLibrary library;
+
+    /**
+     * Read the overlay into the builder. With {@link JvmCompilerOptions#overlayHeaderOnly(boolean)}, only the header
+     * of the overlay is read, and the member an annotation is compiled for. The other members of the overlay are then
+     * merged into the written class afterwards.
+     *
+     * @return the overlay to merge the written class into, or {@code null} if the builder holds the whole overlay or
+     *         it cannot be read.
+     */
+    private static OverlayCache.@Nullable Overlay applyOverlay(BytecodeLibrary library, ErrorCollector collector,
+            ClassBuilder builder, JvmCompilerOptions options) {
+        try {
+            if (!options.overlayHeaderOnly()) {
+                library.read(new ByteArrayInputStream(options.overlay.classFile()), builder);
+                return null;
             }
+            OverlayCache.Overlay overlay = options.overlayCache().get(options.overlay.classFile());
+            byte[] seed = overlay.header();
+            String annotationPath = options.annotationPath();
+            if (annotationPath != null) {
+                // see BlwRootVisitor#visitAnnotation
+                String[] path = annotationPath.split("\\.");
+                if (path.length == 6 && (path[2].equals("field") || path[2].equals("method")))
+                    seed = overlay.headerWith(path[2].equals("field"), new MemberIdentifier(path[3], path[4]));
+            }
+            library.read(new ByteArrayInputStream(seed), builder);
+            return overlay;
+        } catch (IOException | IllegalArgumentException e) {
+            collector.addError("Failed to read overlay: " + e.getMessage(), null);
+            return null;
         }
     }
 
-    @Override
-    public @NotNull Result<JavaCompileResult> compile(List<ASTElement> ast, CompilerOptions<?> options) {
-        this.library = new AsmBytecodeLibrary(new ClassWriterProvider() {
+    /**
+     * @param checker
+     *                checker used by the class writers of the library to merge frames
+     *
+     * @return a library writing classes with the given checker. The library holds no state of its own, it can be
+     *         shared by compilations on any amount of threads.
+     */
+    static @NotNull BytecodeLibrary createLibrary(@NotNull InheritanceChecker checker) {
+        return new AsmBytecodeLibrary(new ClassWriterProvider() {
             @Override
             public ClassWriter newClassWriterFor(ClassReader classReader, ClassFileView classFileView) {
-                return new JvmClassWriter(classReader, correctFlags(classFileView), options.inheritanceChecker());
+                return new JvmClassWriter(classReader, correctFlags(classFileView), checker);
             }
 
             @Override
             public ClassWriter newClassWriterFor(ClassFileView classFileView) {
-                return new JvmClassWriter(correctFlags(classFileView), options.inheritanceChecker());
+                return new JvmClassWriter(correctFlags(classFileView), checker);
             }
 
             int correctFlags(ClassFileView classFileView) {
@@ -67,8 +102,62 @@ int correctFlags(ClassFileView classFileView) {
                 return flags;
             }
         });
+    }
 
+    @Override
+    public @NotNull Result<JavaCompileResult> compile(List<ASTElement> ast, CompilerOptions<?> options) {
+        BytecodeLibrary library = createLibrary(options.inheritanceChecker());
+        this.library = library;
+        return compile(ast, (JvmCompilerOptions) options, library);
+    }
+
+    /**
+     * Compile the next version of a class, reusing the members which did not change since a previous compilation.
+     * Members are compared by the {@link MemberFingerprints fingerprints} of their declarations, unchanged ones are
+     * neither analyzed nor written again: their bytecode is copied from the previous class and their analysis results
+     * are taken over. Their analysis results thus refer to the previous AST.
+     * <p>
+     * Everything is compiled if there is no usable previous result, if the modifiers, name, supertypes, version or
+     * analysis options of the class changed, or if the declaration is not a class or has an overlay. Members which are
+     * new are placed after the members of the previous class, the order of the others is kept.
+     *
+     * @param previous
+     *                 the result of compiling the previous version of the class with this method, or {@code null}
+     * @param ast
+     *                 the AST of the new version
+     * @param options
+     *                 the options of the compilation, the inheritance checker must answer like it did for the
+     *                 previous compilation
+     *
+     * @return the result of the compilation, with fingerprints for compiling the version after it.
+     */
+    public @NotNull Result<JavaCompileResult> recompile(@Nullable JavaCompileResult previous, List<ASTElement> ast,
+            CompilerOptions<?> options) {
+        BytecodeLibrary library = createLibrary(options.inheritanceChecker());
+        this.library = library;
         JvmCompilerOptions blwOptions = (JvmCompilerOptions) options;
+        return compile(ast, blwOptions, library, IncrementalCompilation.of(previous, ast, blwOptions));
+    }
+
+    /**
+     * Compile with a library which may be shared with other compilations.
+     *
+     * @param ast
+     *                   the AST to compile
+     * @param blwOptions
+     *                   the options of the compilation
+     * @param library
+     *                   the library to read overlays and write the class with
+     *
+     * @return the result of the compilation
+     */
+    static @NotNull Result<JavaCompileResult> compile(List<ASTElement> ast, JvmCompilerOptions blwOptions,
+            BytecodeLibrary library) {
+        return compile(ast, blwOptions, library, null);
+    }
+
+    private static @NotNull Result<JavaCompileResult> compile(List<ASTElement> ast, JvmCompilerOptions blwOptions,
+            BytecodeLibrary library, @Nullable IncrementalCompilation incremental) {
         BlwReplaceClassBuilder builder = new BlwReplaceClassBuilder();
 
         ErrorCollector collector = new ErrorCollector();
@@ -81,23 +170,35 @@ int correctFlags(ClassFileView classFileView) {
 
         builder.setVersion(blwOptions.version);
 
-        if (blwOptions.overlay != null)
-            applyOverlay(collector, builder, blwOptions.overlay.classFile());
+        OverlayCache.Overlay overlay = blwOptions.overlay == null || blwOptions.overlay.classFile() == null ? null
+                : applyOverlay(library, collector, builder, blwOptions);
         if (collector.hasErr()) {
             return new Result<>(new JavaCompileResult(null, builder), collector.getErrors(), collector.getWarns());
         }
 
-        Transformer transformer = new Transformer(visitor);
-        transformer.transform(ast).ifErr(collector::addErrors).ifWarn(collector::addWarnings);
+        if (incremental != null) {
+            incremental.transform(visitor, collector);
+        } else {
+            // code of lazily processed methods is only streamed when asked for, see JvmCompilerOptions#streamCode
+            Transformer transformer = new Transformer(visitor, blwOptions.streamCode);
+            transformer.transform(ast).ifErr(collector::addErrors).ifWarn(collector::addWarnings);
+        }
 
         if (!collector.hasErr()) {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] classFile;
             try {
                 // This just exists to reduce debugging needed to find out that the user didn't specify the class
                 // definition properly in their JASM input.
                 if (builder.type() == null) throw new IllegalStateException("Cannot build class, type name not specified");
 
+                // the library writes the class at once, which the buffer takes without a second copy
+                ClassBuffer out = new ClassBuffer();
                 library.write(builder.build(), out);
+                classFile = out.detach();
+                if (overlay != null)
+                    classFile = overlay.merge(classFile);
+                if (incremental != null)
+                    classFile = incremental.merge(classFile, builder);
             } catch (Throwable t) {
                 // We cannot continue, the result might be very corrupted.
                 // Collect as much info that could have led to the error as possible.
@@ -127,7 +228,8 @@ int correctFlags(ClassFileView classFileView) {
                 return new Result<>(new JavaCompileResult(null, builder),
                         collector.getErrors(), collector.getWarns());
             }
-            return new Result<>(new JavaCompileResult(new JavaClassRepresentation(out.toByteArray()), builder),
+            MemberFingerprints fingerprints = incremental == null ? null : incremental.fingerprints();
+            return new Result<>(new JavaCompileResult(new JavaClassRepresentation(classFile), builder, fingerprints),
                     collector.getErrors(), collector.getWarns());
         }
 
@@ -135,6 +237,10 @@ int correctFlags(ClassFileView classFileView) {
                 collector.getErrors(), collector.getWarns());
     }
 
+    /**
+     * @return the library of the most recent compilation, or {@code null} before the first one. With compilations
+     *         running on multiple threads, it is the library of whichever one started last.
+     */
     public BytecodeLibrary library() {
         return library;
     }
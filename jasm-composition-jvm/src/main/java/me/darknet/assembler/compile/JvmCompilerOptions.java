@@ -21,6 +21,10 @@ public class JvmCompilerOptions implements CompilerOptions<JvmCompilerOptions> {
     protected String annotationPath;
     protected InheritanceChecker inheritanceChecker = ReflectiveInheritanceChecker.INSTANCE;
     protected JvmAnalysisEngineFactory engineProvider = TypedJvmAnalysisEngine::new;
+    protected TypeCache typeCache = new TypeCache();
+    protected OverlayCache overlayCache = new OverlayCache();
+    protected boolean overlayHeaderOnly;
+    protected boolean streamCode;
     private boolean doWriteVariables = true;
 
     public JvmCompilerOptions() {
@@ -28,6 +32,24 @@ public JvmCompilerOptions() {
         this.version = JavaVersion.V8;
     }
 
+    /**
+     * @param other
+     *              Options to copy, the checker, engine provider and caches are shared with the copy.
+     */
+    public JvmCompilerOptions(@NotNull JvmCompilerOptions other) {
+        this.asmArgs = other.asmArgs;
+        this.version = other.version;
+        this.overlay = other.overlay;
+        this.annotationPath = other.annotationPath;
+        this.inheritanceChecker = other.inheritanceChecker;
+        this.engineProvider = other.engineProvider;
+        this.typeCache = other.typeCache;
+        this.overlayCache = other.overlayCache;
+        this.overlayHeaderOnly = other.overlayHeaderOnly;
+        this.streamCode = other.streamCode;
+        this.doWriteVariables = other.doWriteVariables;
+    }
+
     public JvmCompilerOptions computeFrames(boolean computeFrames) {
         if (computeFrames) {
             this.asmArgs |= ClassWriter.COMPUTE_FRAMES;
@@ -102,6 +124,94 @@ public JvmCompilerOptions inheritanceChecker(InheritanceChecker checker) {
         return this;
     }
 
+    /**
+     * @param typeCache
+     *                  Cache of the types parsed while compiling, may be shared with other compilations.
+     *
+     * @return The options
+     */
+    public JvmCompilerOptions typeCache(@NotNull TypeCache typeCache) {
+        this.typeCache = typeCache;
+        return this;
+    }
+
+    /**
+     * @return Cache of the types parsed while compiling.
+     */
+    public @NotNull TypeCache typeCache() {
+        return typeCache;
+    }
+
+    /**
+     * @param overlayCache
+     *                     Cache of the parsed overlays, may be shared with other compilations.
+     *
+     * @return The options
+     */
+    public JvmCompilerOptions overlayCache(@NotNull OverlayCache overlayCache) {
+        this.overlayCache = overlayCache;
+        return this;
+    }
+
+    /**
+     * @return Cache of the parsed overlays.
+     */
+    public @NotNull OverlayCache overlayCache() {
+        return overlayCache;
+    }
+
+    /**
+     * Reading the whole overlay into the class builder costs as much as the overlay is large, while a compilation
+     * usually only replaces a member or two of it. With this option the builder is only seeded with the header of the
+     * overlay, parsed once by the {@link #overlayCache() overlay cache}, and the members of the overlay which are not
+     * replaced are copied into the written class as they are. The builder, and so
+     * {@link me.darknet.assembler.compile.visitor.JavaCompileResult#analysisLookup()}, then only holds the members
+     * compiled from the source.
+     *
+     * @param overlayHeaderOnly
+     *                          {@code true} to seed the class builder with only the header of the overlay. Off by
+     *                          default, the builder holds the whole overlay.
+     *
+     * @return The options
+     */
+    public JvmCompilerOptions overlayHeaderOnly(boolean overlayHeaderOnly) {
+        this.overlayHeaderOnly = overlayHeaderOnly;
+        return this;
+    }
+
+    /**
+     * @return {@code true} when the class builder is only seeded with the header of the overlay.
+     */
+    public boolean overlayHeaderOnly() {
+        return overlayHeaderOnly;
+    }
+
+    /**
+     * Streaming only applies to code which was not parsed yet, see
+     * {@link me.darknet.assembler.transformer.Transformer#Transformer(me.darknet.assembler.visitor.ASTRootVisitor, boolean)}.
+     * The instructions of a streamed method are created while it is compiled and dropped after, so the
+     * {@link me.darknet.assembler.compile.analysis.AnalysisResults#getCodeToAstMap() code to AST map} of the analysis
+     * holds instructions which are not the ones of {@link me.darknet.assembler.ast.primitive.ASTCode#instructions()},
+     * and keeps them alive for as long as the analysis results are.
+     *
+     * @param streamCode
+     *                   {@code true} to parse, verify and compile lazily parsed method code one instruction at a
+     *                   time. Off by default.
+     *
+     * @return The options
+     */
+    public JvmCompilerOptions streamCode(boolean streamCode) {
+        this.streamCode = streamCode;
+        return this;
+    }
+
+    /**
+     * @return {@code true} when lazily parsed method code is streamed into the compiler.
+     */
+    public boolean streamCode() {
+        return streamCode;
+    }
+
     public boolean doWriteVariables() {
         return doWriteVariables;
     }
@@ -0,0 +1,112 @@
+package me.darknet.assembler.compile;
+
+import me.darknet.assembler.ast.ASTElement;
+import me.darknet.assembler.ast.ASTFingerprint;
+import me.darknet.assembler.ast.specific.ASTClass;
+import me.darknet.assembler.ast.specific.ASTField;
+import me.darknet.assembler.ast.specific.ASTMember;
+import me.darknet.assembler.ast.specific.ASTMethod;
+
+import dev.xdark.blw.classfile.MemberIdentifier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fingerprints of the fields and methods of a compiled class, see {@link ASTFingerprint}. A member is compiled the
+ * same as long as its own fingerprint and the fingerprint of the context it is compiled in are the same. The context
+ * covers the header of the class and the options affecting how code is analyzed and written.
+ */
+public final class MemberFingerprints {
+
+    private final String context;
+    private final Map<MemberIdentifier, String> members;
+
+    private MemberFingerprints(String context, Map<MemberIdentifier, String> members) {
+        this.context = context;
+        this.members = members;
+    }
+
+    /**
+     * @param declaration
+     *                    the class
+     * @param options
+     *                    the options the class is compiled with
+     *
+     * @return fingerprints of the members of the class.
+     */
+    public static @NotNull MemberFingerprints of(@NotNull ASTClass declaration, @NotNull JvmCompilerOptions options) {
+        String context = ASTFingerprint.ofHeader(declaration) + ':' + options.version() + ':'
+                + options.doWriteVariables() + ':' + options.engineProvider.getClass().getName();
+        Map<MemberIdentifier, String> members = new HashMap<>();
+        Set<MemberIdentifier> duplicates = new HashSet<>();
+        for (ASTElement content : declaration.contents()) {
+            if (!(content instanceof ASTField || content instanceof ASTMethod))
+                continue;
+            ASTMember member = (ASTMember) content;
+            MemberIdentifier key = key(member);
+            if (members.put(key, ASTFingerprint.of(member)) != null)
+                duplicates.add(key);
+        }
+        // duplicate members cannot be told apart
+        members.keySet().removeAll(duplicates);
+        return new MemberFingerprints(context, Collections.unmodifiableMap(members));
+    }
+
+    /**
+     * @param member
+     *               the field or method
+     *
+     * @return the key of the member.
+     */
+    public static @NotNull MemberIdentifier key(@NotNull ASTMember member) {
+        return new MemberIdentifier(member.getName().literal(), member.getDescriptor().literal());
+    }
+
+    /**
+     * @return fingerprint of the class header and options the members are compiled in.
+     */
+    public @NotNull String context() {
+        return context;
+    }
+
+    /**
+     * @return fingerprints of the members, keyed by name and descriptor. Members declared more than once are left
+     *         out.
+     */
+    public @NotNull Map<MemberIdentifier, String> members() {
+        return members;
+    }
+
+    /**
+     * @param key
+     *            the key of the member
+     *
+     * @return fingerprint of the member, or {@code null} if there is no such member.
+     */
+    public @Nullable String fingerprint(@NotNull MemberIdentifier key) {
+        return members.get(key);
+    }
+
+    /**
+     * @param previous
+     *                 fingerprints of a previous version of the class
+     *
+     * @return keys of the members compiling to the same as in the previous version, empty if the context changed.
+     */
+    public @NotNull Set<MemberIdentifier> unchanged(@NotNull MemberFingerprints previous) {
+        if (!context.equals(previous.context))
+            return Collections.emptySet();
+        Set<MemberIdentifier> unchanged = new HashSet<>();
+        members.forEach((key, fingerprint) -> {
+            if (fingerprint.equals(previous.members.get(key)))
+                unchanged.add(key);
+        });
+        return unchanged;
+    }
+}
@@ -0,0 +1,173 @@
+package me.darknet.assembler.compile;
+
+import dev.xdark.blw.classfile.MemberIdentifier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the overlay classes compiled against with {@link JvmCompilerOptions#overlayHeaderOnly(boolean)}. Reading a
+ * whole overlay into the class builder of every compilation costs as much as the overlay is large, while a compilation
+ * only replaces a member or two of it. Instead, every overlay is parsed once into an {@link Overlay}, which the
+ * builders of compilations are seeded from with just the header of the class, the members of the overlay which are
+ * not replaced are then copied from it as they are.
+ * <p>
+ * Overlays are looked up by their contents, the {@link #MAX_SIZE} most recently used are kept. The cache is thread
+ * safe, one cache can be shared by any amount of compilations.
+ */
+public class OverlayCache {
+
+    /**
+     * Maximum amount of overlays held by the cache.
+     */
+    public static final int MAX_SIZE = 16;
+
+    private final Map<Key, Overlay> overlays = new LinkedHashMap<>(MAX_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Overlay> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    /**
+     * @param classFile
+     *                  the overlay class
+     *
+     * @return the parsed overlay.
+     *
+     * @throws IllegalArgumentException
+     *                                  when the class cannot be parsed
+     */
+    @NotNull
+    Overlay get(byte @NotNull [] classFile) {
+        Key key = new Key(classFile);
+        Overlay overlay;
+        synchronized (overlays) {
+            overlay = overlays.get(key);
+        }
+        if (overlay == null) {
+            // not parsed under the lock, parsing a large class takes a while. The bytes are copied in case the caller
+            // changes them afterwards.
+            byte[] copy = classFile.clone();
+            overlay = new Overlay(copy);
+            synchronized (overlays) {
+                overlays.putIfAbsent(new Key(copy), overlay);
+            }
+        }
+        return overlay;
+    }
+
+    /**
+     * Remove all overlays from the cache.
+     */
+    public void clear() {
+        synchronized (overlays) {
+            overlays.clear();
+        }
+    }
+
+    /**
+     * A parsed overlay class. It is never modified, compilations share it.
+     */
+    static final class Overlay {
+
+        private final ClassReader reader;
+        private final byte[] header;
+
+        private Overlay(byte[] classFile) {
+            try {
+                reader = new ClassReader(classFile);
+                header = write(reader, null);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid class file", e);
+            }
+        }
+
+        /**
+         * @return the class without any members, it must not be modified.
+         */
+        byte @NotNull [] header() {
+            return header;
+        }
+
+        /**
+         * @param field
+         *               {@code true} for a field, {@code false} for a method
+         * @param member
+         *               the member
+         *
+         * @return the class with only the given member.
+         */
+        byte @NotNull [] headerWith(boolean field, @NotNull MemberIdentifier member) {
+            return write(reader, new Target(field, member));
+        }
+
+        /**
+         * @param written
+         *                the class compiled against the overlay
+         *
+         * @return the overlay with the members and header of the compiled class.
+         */
+        byte @NotNull [] merge(byte @NotNull [] written) {
+            return ClassFileMerger.merge(reader, written, key -> true);
+        }
+
+        private static byte[] write(ClassReader reader, @Nullable Target target) {
+            // a fresh constant pool, so the header does not carry the constants of all members
+            ClassWriter writer = new ClassWriter(0);
+            reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+                @Override
+                public FieldVisitor visitField(int access, String name, String descriptor, String signature,
+                        Object value) {
+                    if (target != null && target.field() && target.matches(name, descriptor))
+                        return super.visitField(access, name, descriptor, signature, value);
+                    return null;
+                }
+
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                        String[] exceptions) {
+                    if (target != null && !target.field() && target.matches(name, descriptor))
+                        return super.visitMethod(access, name, descriptor, signature, exceptions);
+                    return null;
+                }
+            }, 0);
+            return writer.toByteArray();
+        }
+
+        private record Target(boolean field, MemberIdentifier member) {
+            boolean matches(String name, String descriptor) {
+                return member.equals(new MemberIdentifier(name, descriptor));
+            }
+        }
+    }
+
+    private static final class Key {
+        private final byte[] classFile;
+        private final int hash;
+
+        private Key(byte[] classFile) {
+            this.classFile = classFile;
+            this.hash = Arrays.hashCode(classFile);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && hash == other.hash && Arrays.equals(classFile, other.classFile);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package me.darknet.assembler.compile;
+
+import dev.xdark.blw.type.ClassType;
+import dev.xdark.blw.type.InstanceType;
+import dev.xdark.blw.type.MethodType;
+import dev.xdark.blw.type.ObjectType;
+import dev.xdark.blw.type.TypeReader;
+import dev.xdark.blw.type.Types;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Cache of the types parsed from descriptors and internal names while compiling. The same descriptors show up in
+ * every method referring to a member, and types are immutable, so one cache can be shared by any amount of
+ * compilations, also on different threads.
+ * <p>
+ * Once a table holds {@link #MAX_SIZE} types, new types are no longer added and are parsed on every lookup. Lookups
+ * of invalid descriptors throw like parsing them does, they are not cached.
+ */
+public class TypeCache {
+
+    /**
+     * Maximum amount of types held by each table of the cache.
+     */
+    public static final int MAX_SIZE = 1 << 16;
+
+    private final Map<String, MethodType> methodTypes = new ConcurrentHashMap<>();
+    private final Map<String, ClassType> fieldTypes = new ConcurrentHashMap<>();
+    private final Map<String, InstanceType> instanceTypes = new ConcurrentHashMap<>();
+    private final Map<String, ObjectType> objectTypes = new ConcurrentHashMap<>();
+
+    /**
+     * @param descriptor
+     *                   the method descriptor
+     *
+     * @return the type of the descriptor, see {@link Types#methodType(String)}.
+     */
+    public @NotNull MethodType methodType(@NotNull String descriptor) {
+        return lookup(methodTypes, descriptor, Types::methodType);
+    }
+
+    /**
+     * @param descriptor
+     *                   the field descriptor
+     *
+     * @return the type of the descriptor, see {@link TypeReader#requireClassType()}.
+     */
+    public @NotNull ClassType fieldType(@NotNull String descriptor) {
+        return lookup(fieldTypes, descriptor, d -> new TypeReader(d).requireClassType());
+    }
+
+    /**
+     * @param internalName
+     *                     the internal name of the class
+     *
+     * @return the type of the class, see {@link Types#instanceTypeFromInternalName(String)}.
+     */
+    public @NotNull InstanceType instanceType(@NotNull String internalName) {
+        return lookup(instanceTypes, internalName, Types::instanceTypeFromInternalName);
+    }
+
+    /**
+     * @param internalName
+     *                     the internal name of the class, or the descriptor of an array
+     *
+     * @return the type of the class or array, see {@link Types#objectTypeFromInternalName(String)}.
+     */
+    public @NotNull ObjectType objectType(@NotNull String internalName) {
+        return lookup(objectTypes, internalName, Types::objectTypeFromInternalName);
+    }
+
+    /**
+     * Remove all types from the cache.
+     */
+    public void clear() {
+        methodTypes.clear();
+        fieldTypes.clear();
+        instanceTypes.clear();
+        objectTypes.clear();
+    }
+
+    private static <T> T lookup(Map<String, T> table, String key, Function<String, T> parser) {
+        T type = table.get(key);
+        if (type != null)
+            return type;
+        type = parser.apply(key);
+        if (table.size() < MAX_SIZE)
+            table.putIfAbsent(key, type);
+        return type;
+    }
+}
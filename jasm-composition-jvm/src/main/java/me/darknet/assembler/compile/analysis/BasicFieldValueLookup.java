@@ -6,14 +6,15 @@
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Basic implementation of {@link FieldValueLookup} with some common fields implemented.
  */
 public class BasicFieldValueLookup implements FieldValueLookup {
-    protected static final Map<String, Value> CONST_FIELDS = new HashMap<>();
+    // concurrent, subclasses may register fields while lookups run on other threads
+    protected static final Map<String, Value> CONST_FIELDS = new ConcurrentHashMap<>();
 
     @Override
     public @Nullable Value accept(@NotNull FieldInstruction instruction, Value.@Nullable ObjectValue context) {
@@ -7,16 +7,17 @@
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Basic implementation of {@link MethodValueLookup} with some common methods implemented.
  */
 public class BasicMethodValueLookup implements MethodValueLookup {
-    protected static final Map<String, StringFunc> INSTANCE_STRING_FUNCS = new HashMap<>();
-    protected static final Map<String, StaticFunc> STATIC_FUNCS = new HashMap<>();
+    // concurrent, subclasses may register functions while lookups run on other threads
+    protected static final Map<String, StringFunc> INSTANCE_STRING_FUNCS = new ConcurrentHashMap<>();
+    protected static final Map<String, StaticFunc> STATIC_FUNCS = new ConcurrentHashMap<>();
 
     @Override
     public @Nullable Value accept(@NotNull MethodInstruction instruction, Value.@Nullable ObjectValue context,
@@ -0,0 +1,628 @@
+package me.darknet.assembler.compile.analysis.frame;
+
+import me.darknet.assembler.compile.analysis.Local;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Frame storing its locals and stack in flat arrays, the local at an index is at the same index of the locals array
+ * and the bottom of the stack is at index zero of the stack array.
+ * <p>
+ * A {@link #copyInto(ArrayFrame) copy} shares the arrays of its frame until either of them changes, which only then
+ * copies the array it changes. The analysis copies frames at every instruction, most of which are never changed or
+ * only pop and push a few values.
+ *
+ * @param <L>
+ *            Type of locals.
+ * @param <S>
+ *            Type of stack values.
+ */
+abstract class ArrayFrame<L extends Local, S> {
+    private static final Object[] EMPTY = new Object[0];
+    private static final int MIN_STACK = 4;
+
+    private Object[] locals;
+    private int localCount;
+    private boolean localsShared;
+    private Object[] stack;
+    private int stackSize;
+    private boolean stackShared;
+    private LocalsView localsView;
+    private StackView stackView;
+
+    /**
+     * @param maxLocals
+     *                  Expected amount of local slots, the locals grow beyond it when needed.
+     * @param maxStack
+     *                  Expected size of the stack, the stack grows beyond it when needed.
+     */
+    ArrayFrame(int maxLocals, int maxStack) {
+        this.locals = maxLocals > 0 ? new Object[maxLocals] : EMPTY;
+        this.stack = maxStack > 0 ? new Object[maxStack] : EMPTY;
+    }
+
+    /**
+     * Share the state of this frame with another frame, until either of them changes.
+     *
+     * @param copy
+     *             Frame to share the state with.
+     * @param <F>
+     *             Frame type.
+     *
+     * @return The copy.
+     */
+    <F extends ArrayFrame<L, S>> F copyInto(@NotNull F copy) {
+        ArrayFrame<L, S> target = copy;
+        target.locals = locals;
+        target.localCount = localCount;
+        target.stack = stack;
+        target.stackSize = stackSize;
+        target.localsShared = target.stackShared = true;
+        localsShared = stackShared = true;
+        return copy;
+    }
+
+    /**
+     * @param index
+     *              Index of the local.
+     *
+     * @return Local at the index, or {@code null} if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    L local(int index) {
+        Object[] locals = this.locals;
+        return index >= 0 && index < locals.length ? (L) locals[index] : null;
+    }
+
+    /**
+     * @param index
+     *              Index of the local.
+     * @param local
+     *              Local to put at the index, or {@code null} to remove the local at the index.
+     *
+     * @return Local previously at the index.
+     */
+    @Nullable
+    L putLocal(int index, @Nullable L local) {
+        if (index < 0)
+            throw new IndexOutOfBoundsException("Negative local index: " + index);
+        L previous = local(index);
+        if (previous == local)
+            return previous;
+        if (local != null) {
+            ownLocals(index + 1);
+            if (previous == null)
+                localCount++;
+        } else {
+            ownLocals(0);
+            localCount--;
+        }
+        locals[index] = local;
+        return previous;
+    }
+
+    /**
+     * @return Length of the locals array, all locals are below it.
+     */
+    int localsLength() {
+        return locals.length;
+    }
+
+    /**
+     * @return Amount of locals.
+     */
+    int localCount() {
+        return localCount;
+    }
+
+    /**
+     * @return Stream of the locals, in order of their index.
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    Stream<L> localStream() {
+        return Arrays.stream(locals).filter(Objects::nonNull).map(local -> (L) local);
+    }
+
+    /**
+     * @param value
+     *              Value to push onto the stack.
+     */
+    void pushValue(@NotNull S value) {
+        ownStack(stackSize + 1);
+        stack[stackSize++] = value;
+    }
+
+    /**
+     * @return Value removed from the top of the stack.
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    S popValue() {
+        if (stackSize == 0)
+            throw new IllegalStateException("Cannot pop from empty stack");
+        S value = (S) stack[--stackSize];
+        // a shared array is left as is, the other frames may still see the value
+        if (!stackShared)
+            stack[stackSize] = null;
+        return value;
+    }
+
+    /**
+     * @return Value on the top of the stack.
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    S peekValue() {
+        if (stackSize == 0)
+            throw new IllegalStateException("Cannot peek from empty stack");
+        return (S) stack[stackSize - 1];
+    }
+
+    /**
+     * @param index
+     *              Index from the bottom of the stack.
+     *
+     * @return Value at the index.
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    S stackValue(int index) {
+        Objects.checkIndex(index, stackSize);
+        return (S) stack[index];
+    }
+
+    /**
+     * @param index
+     *              Index from the bottom of the stack.
+     * @param value
+     *              Value to replace the value at the index with.
+     */
+    void setStackValue(int index, @NotNull S value) {
+        Objects.checkIndex(index, stackSize);
+        if (stack[index] == value)
+            return;
+        ownStack(0);
+        stack[index] = value;
+    }
+
+    /**
+     * @return Size of the stack.
+     */
+    int stackSize() {
+        return stackSize;
+    }
+
+    /**
+     * Remove all values from the stack.
+     */
+    void clearStack() {
+        if (stackShared) {
+            stack = EMPTY;
+            stackShared = false;
+        } else {
+            Arrays.fill(stack, 0, stackSize, null);
+        }
+        stackSize = 0;
+    }
+
+    /**
+     * @return Live view of the locals, keyed by index.
+     */
+    @NotNull
+    Map<Integer, L> localsView() {
+        LocalsView view = localsView;
+        if (view == null)
+            localsView = view = new LocalsView();
+        return view;
+    }
+
+    /**
+     * @return Live view of the stack, with the top of the stack first like a {@link Deque} used as stack.
+     */
+    @NotNull
+    Deque<S> stackView() {
+        StackView view = stackView;
+        if (view == null)
+            stackView = view = new StackView();
+        return view;
+    }
+
+    /**
+     * @param other
+     *              Frame to compare with.
+     *
+     * @return {@code true} when both frames hold equal locals and stack values.
+     */
+    boolean sameState(@NotNull ArrayFrame<?, ?> other) {
+        if (stackSize != other.stackSize || localCount != other.localCount)
+            return false;
+        if (!Arrays.equals(stack, 0, stackSize, other.stack, 0, stackSize))
+            return false;
+        int length = Math.min(locals.length, other.locals.length);
+        // locals beyond the shared length are all null, the local counts are equal
+        return Arrays.equals(locals, 0, length, other.locals, 0, length);
+    }
+
+    /**
+     * @return Hash of the locals and stack values.
+     */
+    int stateHash() {
+        int result = 1;
+        for (int i = 0; i < stackSize; i++)
+            result = 31 * result + stack[i].hashCode();
+        for (Object local : locals) {
+            if (local != null)
+                result = 31 * result + local.hashCode();
+        }
+        return result;
+    }
+
+    /**
+     * @param frame
+     *               Frame to get the locals of.
+     * @param locals
+     *               Locals of the frame, used when the frame does not store them in an array.
+     *
+     * @return Locals of the frame, indexed by their index with {@code null} for missing locals. Must not be modified.
+     */
+    static Object[] localsArray(@NotNull Object frame, @NotNull Map<Integer, ? extends Local> locals) {
+        if (frame instanceof ArrayFrame<?, ?> arrayFrame)
+            return arrayFrame.locals;
+        int length = 0;
+        for (int index : locals.keySet())
+            length = Math.max(length, index + 1);
+        Object[] array = new Object[length];
+        locals.forEach((index, local) -> array[index] = local);
+        return array;
+    }
+
+    /**
+     * @param frame
+     *               Frame to get the stack of.
+     * @param stack
+     *               Stack of the frame, used when the frame does not store it in an array.
+     *
+     * @return Stack of the frame with the bottom of the stack first, the array may be longer than the stack. Must not
+     *         be modified.
+     */
+    static Object[] stackArray(@NotNull Object frame, @NotNull Deque<?> stack) {
+        if (frame instanceof ArrayFrame<?, ?> arrayFrame)
+            return arrayFrame.stack;
+        Object[] array = stack.toArray();
+        // deques used as stacks have their top first
+        Collections.reverse(Arrays.asList(array));
+        return array;
+    }
+
+    private void ownLocals(int length) {
+        if (length > locals.length) {
+            locals = Arrays.copyOf(locals, Math.max(length, locals.length << 1));
+            localsShared = false;
+        } else if (localsShared) {
+            locals = locals.clone();
+            localsShared = false;
+        }
+    }
+
+    private void ownStack(int length) {
+        if (length > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(MIN_STACK, Math.max(length, stack.length << 1)));
+            stackShared = false;
+        } else if (stackShared) {
+            stack = stack.clone();
+            stackShared = false;
+        }
+    }
+
+    private void insertStackValue(int index, @NotNull S value) {
+        ownStack(stackSize + 1);
+        System.arraycopy(stack, index, stack, index + 1, stackSize - index);
+        stack[index] = value;
+        stackSize++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private S removeStackValue(int index) {
+        Objects.checkIndex(index, stackSize);
+        ownStack(0);
+        S value = (S) stack[index];
+        System.arraycopy(stack, index + 1, stack, index, stackSize - index - 1);
+        stack[--stackSize] = null;
+        return value;
+    }
+
+    /**
+     * Map view of the locals array.
+     */
+    private final class LocalsView extends AbstractMap<Integer, L> {
+        @Override
+        public int size() {
+            return localCount;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer index && local(index) != null;
+        }
+
+        @Override
+        public L get(Object key) {
+            return key instanceof Integer index ? local(index) : null;
+        }
+
+        @Override
+        public L put(@NotNull Integer key, @NotNull L value) {
+            return putLocal(key, Objects.requireNonNull(value));
+        }
+
+        @Override
+        public L remove(Object key) {
+            return key instanceof Integer index && local(index) != null ? putLocal(index, null) : null;
+        }
+
+        @Override
+        public void clear() {
+            locals = EMPTY;
+            localCount = 0;
+            localsShared = false;
+        }
+
+        @Override
+        public @NotNull Set<Entry<Integer, L>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return localCount;
+                }
+
+                @Override
+                public @NotNull Iterator<Entry<Integer, L>> iterator() {
+                    return new Iterator<>() {
+                        private int next = advance(0);
+                        private int last = -1;
+
+                        private int advance(int from) {
+                            Object[] array = locals;
+                            while (from < array.length && array[from] == null)
+                                from++;
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < locals.length;
+                        }
+
+                        @Override
+                        public Entry<Integer, L> next() {
+                            if (!hasNext())
+                                throw new NoSuchElementException();
+                            int index = last = next;
+                            next = advance(index + 1);
+                            return new SimpleEntry<>(index, local(index)) {
+                                @Override
+                                public L setValue(L value) {
+                                    super.setValue(value);
+                                    return putLocal(index, Objects.requireNonNull(value));
+                                }
+                            };
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (last < 0)
+                                throw new IllegalStateException();
+                            putLocal(last, null);
+                            last = -1;
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /**
+     * Deque view of the stack array, the first element being the top of the stack.
+     */
+    private final class StackView extends AbstractCollection<S> implements Deque<S> {
+        @Override
+        public int size() {
+            return stackSize;
+        }
+
+        @Override
+        public void clear() {
+            clearStack();
+        }
+
+        @Override
+        public @NotNull Iterator<S> iterator() {
+            return new StackIterator(false);
+        }
+
+        @Override
+        public @NotNull Iterator<S> descendingIterator() {
+            return new StackIterator(true);
+        }
+
+        @Override
+        public void addFirst(@NotNull S value) {
+            pushValue(Objects.requireNonNull(value));
+        }
+
+        @Override
+        public void addLast(@NotNull S value) {
+            insertStackValue(0, Objects.requireNonNull(value));
+        }
+
+        @Override
+        public boolean offerFirst(@NotNull S value) {
+            addFirst(value);
+            return true;
+        }
+
+        @Override
+        public boolean offerLast(@NotNull S value) {
+            addLast(value);
+            return true;
+        }
+
+        @Override
+        public S removeFirst() {
+            if (stackSize == 0)
+                throw new NoSuchElementException();
+            return popValue();
+        }
+
+        @Override
+        public S removeLast() {
+            if (stackSize == 0)
+                throw new NoSuchElementException();
+            return removeStackValue(0);
+        }
+
+        @Override
+        public S pollFirst() {
+            return stackSize == 0 ? null : popValue();
+        }
+
+        @Override
+        public S pollLast() {
+            return stackSize == 0 ? null : removeStackValue(0);
+        }
+
+        @Override
+        public S getFirst() {
+            if (stackSize == 0)
+                throw new NoSuchElementException();
+            return peekValue();
+        }
+
+        @Override
+        public S getLast() {
+            if (stackSize == 0)
+                throw new NoSuchElementException();
+            return stackValue(0);
+        }
+
+        @Override
+        public S peekFirst() {
+            return stackSize == 0 ? null : peekValue();
+        }
+
+        @Override
+        public S peekLast() {
+            return stackSize == 0 ? null : stackValue(0);
+        }
+
+        @Override
+        public boolean removeFirstOccurrence(Object o) {
+            for (int i = stackSize - 1; i >= 0; i--) {
+                if (Objects.equals(stack[i], o)) {
+                    removeStackValue(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean removeLastOccurrence(Object o) {
+            for (int i = 0; i < stackSize; i++) {
+                if (Objects.equals(stack[i], o)) {
+                    removeStackValue(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean add(@NotNull S value) {
+            addLast(value);
+            return true;
+        }
+
+        @Override
+        public boolean offer(@NotNull S value) {
+            return offerLast(value);
+        }
+
+        @Override
+        public S remove() {
+            return removeFirst();
+        }
+
+        @Override
+        public S poll() {
+            return pollFirst();
+        }
+
+        @Override
+        public S element() {
+            return getFirst();
+        }
+
+        @Override
+        public S peek() {
+            return peekFirst();
+        }
+
+        @Override
+        public void push(@NotNull S value) {
+            addFirst(value);
+        }
+
+        @Override
+        public S pop() {
+            return removeFirst();
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return removeFirstOccurrence(o);
+        }
+
+        private final class StackIterator implements Iterator<S> {
+            private final boolean bottomUp;
+            private int next;
+            private int last = -1;
+
+            private StackIterator(boolean bottomUp) {
+                this.bottomUp = bottomUp;
+                this.next = bottomUp ? 0 : stackSize - 1;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return bottomUp ? next < stackSize : next >= 0;
+            }
+
+            @Override
+            public S next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                last = next;
+                next += bottomUp ? 1 : -1;
+                return stackValue(last);
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0)
+                    throw new IllegalStateException();
+                removeStackValue(last);
+                // values above the removed one moved down by one
+                if (bottomUp)
+                    next--;
+                last = -1;
+            }
+        }
+    }
+}
@@ -10,6 +10,19 @@
     @NotNull
     F newEmptyFrame();
 
+    /**
+     * @param maxLocals
+     *         Expected number of local variable slots.
+     * @param maxStack
+     *         Expected maximum stack size.
+     *
+     * @return New empty frame, sized for the given locals and stack where the implementation supports it.
+     */
+    @NotNull
+    default F newEmptyFrame(int maxLocals, int maxStack) {
+        return newEmptyFrame();
+    }
+
     /**
      * @param frame
      *         Frame to set local value within.
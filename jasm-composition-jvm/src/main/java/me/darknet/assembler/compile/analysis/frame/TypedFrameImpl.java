@@ -9,24 +9,25 @@
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.stream.Stream;
 
-public class TypedFrameImpl implements TypedFrame {
+public class TypedFrameImpl extends ArrayFrame<Local, ClassType> implements TypedFrame {
 	/** Do not use the {@link Types#OBJECT} - We want a new instance for identity comparison */
 	private static final ClassType NULL = Types.instanceTypeFromInternalName("java/lang/Object");
-	private final Deque<ClassType> stack;
-	private final Map<Integer, Local> locals;
 
 	/**
 	 * New frame with a given stack/variable table.
 	 *
 	 * @param stack
-	 * 		Stack state.
+	 * 		Stack state to copy.
 	 * @param locals
-	 * 		Variable table.
+	 * 		Variable table to copy.
 	 */
 	public TypedFrameImpl(@NotNull Deque<ClassType> stack, @NotNull Map<Integer, Local> locals) {
-		this.stack = stack;
-		this.locals = locals;
+		this(locals);
+		Iterator<ClassType> it = stack.descendingIterator();
+		while (it.hasNext())
+			pushValue(it.next());
 	}
 
 	/**
@@ -36,14 +37,27 @@ public TypedFrameImpl(@NotNull Deque<ClassType> stack, @NotNull Map<Integer, Loc
 	 * 		Variable map to copy.
 	 */
 	public TypedFrameImpl(@NotNull Map<Integer, Local> locals) {
-		this(new ArrayDeque<>(), new TreeMap<>(locals));
+		this();
+		locals.forEach(this::putLocal);
 	}
 
 	/**
 	 * New frame with an empty stack and no variables.
 	 */
 	public TypedFrameImpl() {
-		this(new ArrayDeque<>(), new TreeMap<>());
+		this(0, 0);
+	}
+
+	/**
+	 * New frame with an empty stack and no variables.
+	 *
+	 * @param maxLocals
+	 * 		Expected number of variable slots.
+	 * @param maxStack
+	 * 		Expected maximum stack size.
+	 */
+	public TypedFrameImpl(int maxLocals, int maxStack) {
+		super(maxLocals, maxStack);
 	}
 
 	@Override
@@ -69,95 +83,115 @@ public boolean merge(@NotNull InheritanceChecker checker, @NotNull Frame other)
 	 */
 	public boolean merge(@NotNull InheritanceChecker checker, @NotNull TypedFrame other) throws FrameMergeException {
 		boolean changed = false;
-		for (Map.Entry<Integer, Local> entry : other.getLocals().entrySet()) {
-			int index = entry.getKey();
-			Local otherLocal = entry.getValue();
+		Object[] otherLocals = localsArray(other, other.getLocals());
+		for (int index = 0; index < otherLocals.length; index++) {
+			Local otherLocal = (Local) otherLocals[index];
+			if (otherLocal == null)
+				continue;
 			ClassType otherType = otherLocal.type();
-			ClassType ourType = getLocalType(index);
+			Local ourLocal = local(index);
+			ClassType ourType = ourLocal == null ? null : ourLocal.type();
 
 			// Skip top-type entries
 			if (otherType == Types.VOID || ourType == Types.VOID)
 				continue;
 
-			if (!hasLocal(index)) {
+			if (ourLocal == null) {
 				// If we don't have the local, copy it from the other frame.
 				// We do not set 'changed' since expanding local variable scope is not going to change
 				// behavior of frames that previously passed analysis.
-				setLocal(index, otherLocal);
+				putLocal(index, otherLocal);
 			} else {
 				ClassType merged = AnalysisUtils.commonType(checker, ourType, otherType);
 				if (!Objects.equals(merged, ourType)) {
 					if (merged == null) {
 						// Value is explicitly 'null'
-						setLocal(index, new Local(index, otherLocal.name(), null));
+						putLocal(index, new Local(index, otherLocal.name(), null));
 					} else {
 						// Value is some known type (we don't care if it *can* be null or not,
 						// just not provably null)
-						setLocal(index, otherLocal.adaptType(merged));
+						putLocal(index, otherLocal.adaptType(merged));
 					}
 					changed = true;
 				}
 			}
 		}
 
-		Deque<ClassType> otherStack = other.getStack();
-		int stackSize = stack.size();
-		if (stackSize != otherStack.size())
+		int stackSize = stackSize();
+		int otherStackSize = other.getStack().size();
+		if (stackSize != otherStackSize)
 			throw new FrameMergeException(this, other,
-					"Stack size mismatch, " + stackSize + " != " + otherStack.size());
-
-		Deque<ClassType> newStack = new ArrayDeque<>(stackSize);
-		Iterator<ClassType> it1 = stack.iterator();
-		Iterator<ClassType> it2 = otherStack.iterator();
-		while (it1.hasNext() && it2.hasNext()) {
-			ClassType type1 = it1.next();
-			ClassType type2 = it2.next();
+					"Stack size mismatch, " + stackSize + " != " + otherStackSize);
+
+		Object[] otherStack = stackArray(other, other.getStack());
+		for (int i = 0; i < stackSize; i++) {
+			ClassType type1 = stackValue(i);
+			ClassType type2 = (ClassType) otherStack[i];
 			if (Objects.equals(type1, type2)) {
-				newStack.add(type1);
 				continue;
 			} else if (type1 == Types.VOID || type2 == Types.VOID) {
-				newStack.add(Types.VOID);
+				setStackValue(i, Types.VOID);
 				continue;
 			}
 			ClassType merged = AnalysisUtils.commonType(checker, type1, type2);
 			if (!Objects.equals(merged, type1)) {
 				changed = true;
-				it1.remove();
-				newStack.add(merged);
-			} else {
-				newStack.add(type1);
+				setStackValue(i, merged == null ? NULL : merged);
 			}
 		}
-		stack.clear();
-		stack.addAll(newStack);
 		return changed;
 	}
 
 	@NotNull
 	@Override
 	public Deque<ClassType> getStack() {
-		return stack;
+		return stackView();
 	}
 
 	@NotNull
 	@Override
 	public Map<Integer, Local> getLocals() {
-		return locals;
+		return localsView();
+	}
+
+	@Override
+	public @NotNull Stream<Local> locals() {
+		return localStream();
+	}
+
+	@Nullable
+	@Override
+	public Local getLocal(int index) {
+		return local(index);
+	}
+
+	@Override
+	public boolean hasLocal(int index) {
+		return local(index) != null;
+	}
+
+	@Nullable
+	@Override
+	public ClassType getLocalType(int index) {
+		Local local = local(index);
+		if (local == null)
+			return null;
+		return local.type();
 	}
 
 	@Override
 	public void setLocal(int index, @NotNull Local local) {
-		locals.put(index, local);
+		putLocal(index, Objects.requireNonNull(local));
 	}
 
 	@Override
 	public void pushType(@Nullable ClassType type) {
 		if (type == null)
-			stack.push(NULL);
+			pushValue(NULL);
 		else
-			stack.push(type);
+			pushValue(type);
 		if (type == Types.LONG || type == Types.DOUBLE)
-			stack.push(Types.VOID);
+			pushValue(Types.VOID);
 	}
 
 	@Override
@@ -168,9 +202,7 @@ public void pushNull() {
 	@Nullable
 	@Override
 	public ClassType peek() {
-		if (stack.isEmpty())
-			throw new IllegalStateException("Cannot peek from empty stack");
-		ClassType type = stack.peek();
+		ClassType type = peekValue();
 		if (type == NULL)
 			return null;
 		return type;
@@ -179,39 +211,23 @@ public ClassType peek() {
 	@Nullable
 	@Override
 	public ClassType pop() {
-		try {
-			ClassType type = stack.pop();
-			if (type == NULL)
-				return null;
-			return type;
-		} catch (NoSuchElementException e) {
-			throw new IllegalStateException("Cannot pop from empty stack");
-		}
+		ClassType type = popValue();
+		if (type == NULL)
+			return null;
+		return type;
 	}
 
 	@Override
 	public void pop(int n) {
 		for (int i = 0; i < n; i++) {
-			pop();
+			popValue();
 		}
 	}
 
-	/**
-	 * @param frame
-	 * 		Frame to copy stack/locals from.
-	 *
-	 * @return Self.
-	 */
-	private TypedFrameImpl copyFrom(@NotNull TypedFrameImpl frame) {
-		locals.putAll(frame.locals);
-		stack.addAll(frame.stack);
-		return this;
-	}
-
 	@NotNull
 	@Override
 	public TypedFrameImpl copy() {
-		return new TypedFrameImpl().copyFrom(this);
+		return copyInto(new TypedFrameImpl());
 	}
 
 	@Override
@@ -222,21 +238,16 @@ public boolean equals(Object o) {
 			return false;
 
 		TypedFrameImpl frame = (TypedFrameImpl) o;
-
-		if (!stack.equals(frame.stack))
-			return false;
-		return locals.equals(frame.locals);
+		return sameState(frame);
 	}
 
 	@Override
 	public int hashCode() {
-		int result = stack.hashCode();
-		result = 31 * result + locals.hashCode();
-		return result;
+		return stateHash();
 	}
 
 	@Override
 	public String toString() {
-		return "Stack:" + stack.size() + ", Locals:" + locals.size();
+		return "Stack:" + stackSize() + ", Locals:" + localCount();
 	}
 }
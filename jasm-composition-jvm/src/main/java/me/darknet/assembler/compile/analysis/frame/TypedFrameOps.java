@@ -10,6 +10,11 @@ public class TypedFrameOps implements FrameOps<TypedFrame> {
         return new TypedFrameImpl();
     }
 
+    @Override
+    public @NotNull TypedFrame newEmptyFrame(int maxLocals, int maxStack) {
+        return new TypedFrameImpl(maxLocals, maxStack);
+    }
+
     @Override
     public void setFrameLocal(@NotNull TypedFrame frame, int idx, @NotNull Local local) {
         frame.setLocal(idx, local);
@@ -9,22 +9,23 @@
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.stream.Stream;
 
-public class ValuedFrameImpl implements ValuedFrame {
-    private final Deque<Value> stack;
-    private final Map<Integer, ValuedLocal> locals;
+public class ValuedFrameImpl extends ArrayFrame<ValuedLocal, Value> implements ValuedFrame {
 
     /**
      * New frame with a given stack/variable table.
      *
      * @param stack
-     *               Stack state.
+     *               Stack state to copy.
      * @param locals
-     *               Variable table.
+     *               Variable table to copy.
      */
     public ValuedFrameImpl(@NotNull Deque<Value> stack, @NotNull Map<Integer, ValuedLocal> locals) {
-        this.stack = stack;
-        this.locals = locals;
+        this(locals);
+        Iterator<Value> it = stack.descendingIterator();
+        while (it.hasNext())
+            pushValue(it.next());
     }
 
     /**
@@ -34,14 +35,27 @@ public ValuedFrameImpl(@NotNull Deque<Value> stack, @NotNull Map<Integer, Valued
      *               Variable map to copy.
      */
     public ValuedFrameImpl(@NotNull Map<Integer, ValuedLocal> locals) {
-        this(new ArrayDeque<>(), new TreeMap<>(locals));
+        this();
+        locals.forEach(this::putLocal);
     }
 
     /**
      * New frame with an empty stack and no variables.
      */
     public ValuedFrameImpl() {
-        this(new ArrayDeque<>(), new TreeMap<>());
+        this(0, 0);
+    }
+
+    /**
+     * New frame with an empty stack and no variables.
+     *
+     * @param maxLocals
+     *                  Expected number of variable slots.
+     * @param maxStack
+     *                  Expected maximum stack size.
+     */
+    public ValuedFrameImpl(int maxLocals, int maxStack) {
+        super(maxLocals, maxStack);
     }
 
     @Override
@@ -67,16 +81,18 @@ public boolean merge(@NotNull InheritanceChecker checker, @NotNull Frame other)
      */
     public boolean merge(@NotNull InheritanceChecker checker, @NotNull ValuedFrame other) throws FrameMergeException {
         boolean changed = false;
-        for (Map.Entry<Integer, ValuedLocal> entry : other.getLocals().entrySet()) {
-            int index = entry.getKey();
-            ValuedLocal local = getLocal(index);
-            ValuedLocal otherLocal = entry.getValue();
+        Object[] otherLocals = localsArray(other, other.getLocals());
+        for (int index = 0; index < otherLocals.length; index++) {
+            ValuedLocal otherLocal = (ValuedLocal) otherLocals[index];
+            if (otherLocal == null)
+                continue;
+            ValuedLocal local = local(index);
 
             // If we don't have the local, copy it from the other frame.
             if (local == null) {
                 // We do not set 'changed' since expanding local variable scope is not going to change
                 // behavior of frames that previously passed analysis.
-                setLocal(index, otherLocal);
+                putLocal(index, otherLocal);
                 continue;
             }
 
@@ -84,7 +100,7 @@ public boolean merge(@NotNull InheritanceChecker checker, @NotNull ValuedFrame o
             try {
                 ValuedLocal mergedLocal = local.mergeWith(checker, otherLocal);
                 if (!Objects.equals(local, mergedLocal)) {
-                    setLocal(index, mergedLocal);
+                    putLocal(index, mergedLocal);
                     changed = true;
                 }
             } catch (ValueMergeException ex) {
@@ -92,24 +108,20 @@ public boolean merge(@NotNull InheritanceChecker checker, @NotNull ValuedFrame o
             }
         }
 
-        Deque<Value> otherStack = other.getStack();
-        Deque<Value> thisStack = stack;
-        int stackSize = thisStack.size();
-        if (stackSize != otherStack.size())
+        int stackSize = stackSize();
+        int otherStackSize = other.getStack().size();
+        if (stackSize != otherStackSize)
             throw new FrameMergeException(this, other,
-                    "Stack size mismatch, " + stackSize + " != " + otherStack.size());
-
-        Deque<Value> newStack = new ArrayDeque<>(stackSize);
-        Iterator<Value> it1 = thisStack.iterator();
-        Iterator<Value> it2 = otherStack.iterator();
-        while (it1.hasNext() && it2.hasNext()) {
-            Value value1 = it1.next();
-            Value value2 = it2.next();
+                    "Stack size mismatch, " + stackSize + " != " + otherStackSize);
+
+        Object[] otherStack = stackArray(other, other.getStack());
+        for (int i = 0; i < stackSize; i++) {
+            Value value1 = stackValue(i);
+            Value value2 = (Value) otherStack[i];
             if (value1 == value2) {
-                newStack.add(value1);
                 continue;
             } else if (value1 == Values.VOID_VALUE || value2 == Values.VOID_VALUE) {
-                newStack.add(Values.VOID_VALUE);
+                setStackValue(i, Values.VOID_VALUE);
                 continue;
             }
             Value merged;
@@ -120,104 +132,106 @@ public boolean merge(@NotNull InheritanceChecker checker, @NotNull ValuedFrame o
             }
             if (!Objects.equals(merged, value1)) {
                 changed = true;
-                it1.remove();
-                newStack.add(merged);
-            } else {
-                newStack.add(value1);
+                setStackValue(i, merged);
             }
         }
-        thisStack.clear();
-        thisStack.addAll(newStack);
         return changed;
     }
 
     @NotNull
     @Override
     public Deque<Value> getStack() {
-        return stack;
+        return stackView();
     }
 
     @NotNull
     @Override
     public Map<Integer, ValuedLocal> getLocals() {
-        return locals;
+        return localsView();
+    }
+
+    @Override
+    public @NotNull Stream<ValuedLocal> locals() {
+        return localStream();
+    }
+
+    @Nullable
+    @Override
+    public ValuedLocal getLocal(int index) {
+        return local(index);
+    }
+
+    @Override
+    public boolean hasLocal(int index) {
+        return local(index) != null;
+    }
+
+    @Nullable
+    @Override
+    public ClassType getLocalType(int index) {
+        Local local = local(index);
+        if (local == null)
+            return null;
+        return local.type();
     }
 
     @Override
     public void setLocal(int index, @NotNull ValuedLocal local) {
-        locals.put(index, local);
+        putLocal(index, Objects.requireNonNull(local));
     }
 
     @Override
     public void pushType(@Nullable ClassType type) {
         if (type == null) {
-            stack.push(Values.NULL_VALUE);
+            pushValue(Values.NULL_VALUE);
         } else {
-            stack.push(Values.valueOf(type));
+            pushValue(Values.valueOf(type));
             if (type == Types.LONG || type == Types.DOUBLE)
-                stack.push(Values.VOID_VALUE);
+                pushValue(Values.VOID_VALUE);
         }
     }
 
     @Override
     public void pushNull() {
-        stack.push(Values.NULL_VALUE);
+        pushValue(Values.NULL_VALUE);
     }
 
     @Override
     public void push(@NotNull Value value) {
-        stack.push(value);
+        pushValue(value);
         ClassType type = value.type();
         if (type == Types.LONG || type == Types.DOUBLE)
-            stack.push(Values.VOID_VALUE);
+            pushValue(Values.VOID_VALUE);
     }
 
     @Override
     public void pushRaw(@NotNull Value value) {
-        stack.push(value);
+        pushValue(value);
     }
 
     @NotNull
     @Override
     public Value peek() {
-        if (stack.isEmpty())
-            throw new IllegalStateException("Cannot peek from empty stack");
-        return stack.peek();
+        return peekValue();
     }
 
     @NotNull
     @Override
     public Value pop() {
-        try {
-            return stack.pop();
-        } catch (NoSuchElementException e) {
-            throw new IllegalStateException("Cannot pop from empty stack");
-        }
+        return popValue();
     }
 
     @Override
     public void pop(int n) {
         for (int i = 0; i < n; i++) {
-            pop();
+            popValue();
         }
     }
 
-    /**
-     * @param frame
-     *              Frame to copy stack/locals from.
-     *
-     * @return Self.
-     */
-    private ValuedFrameImpl copyFrom(@NotNull ValuedFrameImpl frame) {
-        locals.putAll(frame.locals);
-        stack.addAll(frame.stack);
-        return this;
-    }
-
     @NotNull
     @Override
     public ValuedFrameImpl copy() {
-        return new ValuedFrameImpl().copyFrom(this);
+        return copyInto(new ValuedFrameImpl());
     }
 
     @Override
@@ -228,21 +242,16 @@ public boolean equals(Object o) {
             return false;
 
         ValuedFrameImpl frame = (ValuedFrameImpl) o;
-
-        if (!stack.equals(frame.stack))
-            return false;
-        return locals.equals(frame.locals);
+        return sameState(frame);
     }
 
     @Override
     public int hashCode() {
-        int result = stack.hashCode();
-        result = 31 * result + locals.hashCode();
-        return result;
+        return stateHash();
     }
 
     @Override
     public String toString() {
-        return "Stack:" + stack.size() + ", Locals:" + locals.size();
+        return "Stack:" + stackSize() + ", Locals:" + localCount();
     }
 }
@@ -13,6 +13,11 @@ public class ValuedFrameOps implements FrameOps<ValuedFrame> {
         return new ValuedFrameImpl();
     }
 
+    @Override
+    public @NotNull ValuedFrame newEmptyFrame(int maxLocals, int maxStack) {
+        return new ValuedFrameImpl(maxLocals, maxStack);
+    }
+
     @Override
     public void setFrameLocal(@NotNull ValuedFrame frame, int idx, @NotNull Local local) {
         // Adapt to valued locals
@@ -3,6 +3,8 @@
 import dev.xdark.blw.code.*;
 import dev.xdark.blw.code.instruction.BranchInstruction;
 import dev.xdark.blw.code.instruction.SimpleInstruction;
+import dev.xdark.blw.code.instruction.VarInstruction;
+import dev.xdark.blw.code.instruction.VariableIncrementInstruction;
 import dev.xdark.blw.simulation.ExecutionEngines;
 import dev.xdark.blw.simulation.Simulation;
 import dev.xdark.blw.type.InstanceType;
@@ -21,6 +23,7 @@
 
 public class AnalysisSimulation implements Simulation<JvmAnalysisEngine<Frame>, AnalysisSimulation.Info>, JavaOpcodes {
     private static final int MAX_QUEUE = 2048;
+    private static final int INITIAL_STACK = 8;
 
     private final FrameOps<Frame> frameOps;
 
@@ -38,7 +41,7 @@ public void execute(JvmAnalysisEngine<Frame> engine, AnalysisSimulation.Info met
         // We'll queue up the first instruction as a fork-point.
         final Frame initialFrame;
         {
-            initialFrame = frameOps.newEmptyFrame();
+            initialFrame = frameOps.newEmptyFrame(maxLocals(method), INITIAL_STACK);
             int index = 0;
             for (Local param : method.params()) {
                 int idx = index++;
@@ -226,6 +229,24 @@ public void execute(JvmAnalysisEngine<Frame> engine, AnalysisSimulation.Info met
         }
     }
 
+    /**
+     * @param method
+     *               Method to analyze.
+     *
+     * @return Number of local variable slots the method uses, so frames are allocated at their final size.
+     */
+    private static int maxLocals(@NotNull Info method) {
+        int max = method.params().size();
+        for (CodeElement element : method.codeElements()) {
+            // Leave room for the upper half of wide variables
+            if (element instanceof VarInstruction insn)
+                max = Math.max(max, insn.variableIndex() + 2);
+            else if (element instanceof VariableIncrementInstruction insn)
+                max = Math.max(max, insn.variableIndex() + 1);
+        }
+        return max;
+    }
+
     /**
      * Queue for control flow visitation.
      */
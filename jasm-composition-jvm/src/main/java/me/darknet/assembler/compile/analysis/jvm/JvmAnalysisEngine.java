@@ -93,7 +93,7 @@ public void clearErrorsAt(@NotNull CodeElement element) {
             return;
         ASTInstruction ast = getCodeToAstMap().get(element);
         if (ast != null)
-            errorCollector.removeAt(ast.location());
+            errorCollector.removeAt(ast.position());
     }
 
     /**
@@ -104,7 +104,7 @@ public ASTFieldVisitor visitField(@NotNull Modifiers modifiers, @NotNull ASTIden
     @Override
     public ASTMethodVisitor visitMethod(@NotNull Modifiers modifiers, @NotNull ASTIdentifier name, @NotNull ASTIdentifier descriptor) {
         int accessFlags = BlwModifiers.getMethodModifiers(modifiers);
-        MethodType type = Types.methodType(descriptor.literal());
+        MethodType type = options.typeCache().methodType(descriptor.literal());
         return new BlwMethodVisitor(
                 options, builder.type(), type, (accessFlags & AccessFlag.ACC_STATIC) == AccessFlag.ACC_STATIC,
                 CastUtil.cast(builder.putMethod(accessFlags, name.literal(), type).child()),
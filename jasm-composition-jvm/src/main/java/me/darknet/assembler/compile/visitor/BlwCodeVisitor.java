@@ -3,6 +3,7 @@
 import me.darknet.assembler.ast.ASTElement;
 import me.darknet.assembler.ast.primitive.*;
 import me.darknet.assembler.compile.JvmCompilerOptions;
+import me.darknet.assembler.compile.TypeCache;
 import me.darknet.assembler.compile.analysis.*;
 import me.darknet.assembler.compile.analysis.frame.Frame;
 import me.darknet.assembler.compile.analysis.jvm.AnalysisSimulation;
@@ -30,9 +31,19 @@
 import java.util.*;
 
 public class BlwCodeVisitor implements ASTJvmInstructionVisitor, JavaOpcodes {
+    // source and target types of the primitive conversions, indexed by opcode - I2L
+    private static final PrimitiveType[] CONVERSION_FROM = {
+            Types.INT, Types.INT, Types.INT, Types.LONG, Types.LONG, Types.LONG, Types.FLOAT, Types.FLOAT,
+            Types.FLOAT, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.INT, Types.INT, Types.INT
+    };
+    private static final PrimitiveType[] CONVERSION_TO = {
+            Types.LONG, Types.FLOAT, Types.DOUBLE, Types.INT, Types.FLOAT, Types.DOUBLE, Types.INT, Types.LONG,
+            Types.DOUBLE, Types.INT, Types.LONG, Types.FLOAT, Types.BYTE, Types.CHAR, Types.SHORT
+    };
     private final CodeBuilder<?> codeBuilder;
     private final CodeListBuilder codeBuilderList;
     private final InheritanceChecker checker;
+    private final TypeCache typeCache;
     private final ErrorCollector errorCollector;
     private final Map<String, GenericLabel> nameToLabel = new HashMap<>();
     private final List<Local> parameters;
@@ -43,6 +54,7 @@ public class BlwCodeVisitor implements ASTJvmInstructionVisitor, JavaOpcodes {
     private final boolean writeVariables;
     private ASTInstruction currentInstructionAst;
     private int opcode = 0;
+    private boolean interfaceCall;
 
     /**
      * @param options
@@ -61,6 +73,7 @@ public BlwCodeVisitor(JvmCompilerOptions options, ErrorCollector errorCollector,
         this.codeBuilder = builder;
         this.codeBuilderList = builder.codeList().child();
         this.checker = options.inheritanceChecker();
+        this.typeCache = options.typeCache();
         this.errorCollector = errorCollector;
         this.analysisEngine = (JvmAnalysisEngine<Frame>) options.createEngine(varCache);
         this.parameters = parameters;
@@ -96,7 +109,15 @@ public void visitInstruction(@NotNull ASTInstruction instruction) {
         currentInstructionAst = instruction;
         if (instruction instanceof ASTLabel)
             return;
-        opcode = BlwOpcodes.opcode(instruction.identifier().content());
+        int instructionId = instruction.instructionId();
+        if (instructionId < 0) {
+            // not processed, resolve the mnemonic now
+            opcode = BlwOpcodes.opcode(instruction.identifier().content());
+            interfaceCall = instruction.identifier().content().endsWith("interface");
+        } else {
+            opcode = BlwOpcodes.opcode(instructionId);
+            interfaceCall = BlwOpcodes.isInterface(instructionId);
+        }
         visitedInstructions.add(instruction);
     }
 
@@ -113,43 +134,14 @@ public void visitException(@NotNull ASTIdentifier start, @NotNull ASTIdentifier
 
     @Override
     public void visitInsn() {
-        String content = currentInstructionAst.identifier().content();
-        Instruction instruction = switch (content) {
-            case "iconst_m1" -> new ConstantInstruction.Int(new OfInt(-1));
-            case "iconst_0", "iconst_1", "iconst_2", "iconst_3", "iconst_4", "iconst_5", "lconst_0", "lconst_1", "fconst_0", "fconst_1", "fconst_2", "dconst_0", "dconst_1" -> {
-                int value = content.charAt(content.length() - 1) - '0';
-                yield switch (content.charAt(0)) {
-                    case 'i' -> new ConstantInstruction.Int(new OfInt(value));
-                    case 'l' -> new ConstantInstruction.Long(new OfLong(value));
-                    case 'f' -> new ConstantInstruction.Float(new OfFloat(value));
-                    case 'd' -> new ConstantInstruction.Double(new OfDouble(value));
-                    default -> throw new IllegalStateException("Unexpected value: " + content.charAt(0));
-                };
-            }
-            case "i2l", "i2f", "i2d", "l2i", "l2f", "l2d", "f2i", "f2l", "f2d", "d2i", "d2l", "d2f", "i2b", "i2c", "i2s" -> {
-                char fromChar = content.charAt(0);
-                PrimitiveType from = switch (fromChar) {
-                    case 'i' -> Types.INT;
-                    case 'l' -> Types.LONG;
-                    case 'f' -> Types.FLOAT;
-                    case 'd' -> Types.DOUBLE;
-                    default -> throw new IllegalStateException(
-                            "Unknown from type for primitive conversion: " + fromChar
-                    );
-                };
-                char toChar = content.charAt(2);
-                PrimitiveType to = switch (toChar) {
-                    case 'i' -> Types.INT;
-                    case 'l' -> Types.LONG;
-                    case 'f' -> Types.FLOAT;
-                    case 'd' -> Types.DOUBLE;
-                    case 'c' -> Types.CHAR;
-                    case 's' -> Types.SHORT;
-                    case 'b' -> Types.BYTE;
-                    default -> throw new IllegalStateException("Unknown to type for primitive conversion: " + toChar);
-                };
-                yield new PrimitiveConversionInstruction(from, to);
-            }
+        Instruction instruction = switch (opcode) {
+            case ICONST_M1, ICONST_0, ICONST_1, ICONST_2, ICONST_3, ICONST_4, ICONST_5 ->
+                    new ConstantInstruction.Int(new OfInt(opcode - ICONST_0));
+            case LCONST_0, LCONST_1 -> new ConstantInstruction.Long(new OfLong(opcode - LCONST_0));
+            case FCONST_0, FCONST_1, FCONST_2 -> new ConstantInstruction.Float(new OfFloat(opcode - FCONST_0));
+            case DCONST_0, DCONST_1 -> new ConstantInstruction.Double(new OfDouble(opcode - DCONST_0));
+            case I2L, I2F, I2D, L2I, L2F, L2D, F2I, F2L, F2D, D2I, D2L, D2F, I2B, I2C, I2S ->
+                    new PrimitiveConversionInstruction(CONVERSION_FROM[opcode - I2L], CONVERSION_TO[opcode - I2L]);
             default -> new SimpleInstruction(opcode);
         };
         add(instruction);
@@ -210,11 +202,11 @@ public void visitTypeInsn(ASTIdentifier type) {
         String literal = type.literal();
         if (opcode == NEW) {
             literal = adaptDescToInternalName("new", literal);
-            ObjectType objectType = Types.instanceTypeFromInternalName(literal);
+            ObjectType objectType = typeCache.instanceType(literal);
             add(new AllocateInstruction(objectType));
         } else if (opcode == CHECKCAST || opcode == INSTANCEOF) {
             literal = adaptDescToInternalNameOrArray(literal);
-            ObjectType objectType = Types.objectTypeFromInternalName(literal);
+            ObjectType objectType = typeCache.objectType(literal);
             Instruction instruction = switch (opcode) {
                 case CHECKCAST -> new CheckCastInstruction(objectType);
                 case INSTANCEOF -> new InstanceofInstruction(objectType);
@@ -223,7 +215,7 @@ public void visitTypeInsn(ASTIdentifier type) {
             add(instruction);
         } else if (opcode == ANEWARRAY) {
             literal = adaptDescToInternalNameOrArray(literal);
-            ObjectType componentType = Types.objectTypeFromInternalName(literal);
+            ObjectType componentType = typeCache.objectType(literal);
             add(new AllocateInstruction(Types.arrayType(componentType)));
         } else {
             throw new IllegalStateException("Unexpected value: " + opcode);
@@ -276,20 +268,20 @@ public void visitFieldInsn(ASTIdentifier path, ASTIdentifier descriptor) {
         int index = literal.lastIndexOf('.');
         String owner = literal.substring(0, index);
         String name = literal.substring(index + 1);
-        InstanceType objectType = Types.instanceTypeFromInternalName(owner);
-        ClassType type = new TypeReader(descriptor.literal()).requireClassType();
+        InstanceType objectType = typeCache.instanceType(owner);
+        ClassType type = typeCache.fieldType(descriptor.literal());
         add(new FieldInstruction(opcode, objectType, name, type));
     }
 
     @Override
     public void visitMethodInsn(ASTIdentifier path, ASTIdentifier descriptor) {
-        boolean itf = currentInstructionAst.identifier().content().endsWith("interface");
+        boolean itf = interfaceCall;
         String literal = path.literal();
         int index = literal.lastIndexOf('.');
         String owner = literal.substring(0, index);
         String name = literal.substring(index + 1);
-        InstanceType objectType = Types.instanceTypeFromInternalName(owner);
-        MethodType type = Types.methodType(descriptor.literal());
+        InstanceType objectType = typeCache.instanceType(owner);
+        MethodType type = typeCache.methodType(descriptor.literal());
         add(new MethodInstruction(opcode, objectType, name, type, itf));
     }
 
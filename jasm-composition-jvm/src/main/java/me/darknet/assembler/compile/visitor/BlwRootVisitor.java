@@ -77,7 +77,7 @@ public ASTFieldVisitor visitField(Modifiers modifiers, ASTIdentifier name, ASTId
     @Override
     public ASTMethodVisitor visitMethod(Modifiers modifiers, ASTIdentifier name, ASTIdentifier descriptor) {
         int accessFlags = BlwModifiers.getMethodModifiers(modifiers);
-        MethodType type = Types.methodType(descriptor.literal());
+        MethodType type = options.typeCache().methodType(descriptor.literal());
         return new BlwMethodVisitor(
                 options, builder.type(), type, (accessFlags & AccessFlag.ACC_STATIC) == AccessFlag.ACC_STATIC,
                 CastUtil.cast(builder.putMethod(accessFlags, name.literal(), type).child()),
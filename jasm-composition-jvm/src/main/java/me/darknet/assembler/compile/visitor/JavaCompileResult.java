@@ -1,6 +1,7 @@
 package me.darknet.assembler.compile.visitor;
 
 import me.darknet.assembler.compile.JavaClassRepresentation;
+import me.darknet.assembler.compile.MemberFingerprints;
 import me.darknet.assembler.compile.analysis.MethodAnalysisLookup;
 import me.darknet.assembler.compiler.ClassResult;
 import org.jetbrains.annotations.NotNull;
@@ -11,8 +12,25 @@
  *                       The created class.
  * @param analysisLookup
  *                       Lookup to get method stack analysis information for
- *                       declared methods.
+ *                       declared methods. It is the class builder of the
+ *                       compilation, which holds the overlay and the
+ *                       members compiled from the source. With
+ *                       {@link me.darknet.assembler.compile.JvmCompilerOptions#overlayHeaderOnly(boolean)}
+ *                       it only holds the header of the overlay, its other
+ *                       members are merged into the written class and are
+ *                       only present in the representation.
+ * @param fingerprints
+ *                       Fingerprints of the compiled members, for compiling
+ *                       the next version of the class incrementally. Only
+ *                       present for results of
+ *                       {@link me.darknet.assembler.compile.JvmCompiler#recompile}.
  */
 public record JavaCompileResult(@Nullable JavaClassRepresentation representation,
-                                @NotNull MethodAnalysisLookup analysisLookup) implements ClassResult {
+                                @NotNull MethodAnalysisLookup analysisLookup,
+                                @Nullable MemberFingerprints fingerprints) implements ClassResult {
+
+    public JavaCompileResult(@Nullable JavaClassRepresentation representation,
+                             @NotNull MethodAnalysisLookup analysisLookup) {
+        this(representation, analysisLookup, null);
+    }
 }
@@ -1,5 +1,8 @@
 package me.darknet.assembler.util;
 
+import me.darknet.assembler.instructions.Instructions;
+import me.darknet.assembler.instructions.jvm.JvmInstructions;
+
 import dev.xdark.blw.code.JavaOpcodes;
 import org.jetbrains.annotations.NotNull;
 
@@ -11,6 +14,9 @@ public class BlwOpcodes {
 
     private static final Map<String, Integer> opcodes = new HashMap<>();
     private static final Map<String, Integer> filteredOpcodes = new HashMap<>();
+    // indexed by the ids of the JvmInstructions
+    private static final int[] idOpcodes;
+    private static final boolean[] idInterfaces;
 
     public static boolean isVarStore(int opcode) {
         return switch (opcode) {
@@ -34,6 +40,26 @@ public static int opcode(String name) {
         return opcodes.get(name);
     }
 
+    /**
+     * @param instructionId
+     *                      the id of a {@link JvmInstructions} instruction
+     *
+     * @return the opcode of the instruction, or {@code -1} for intrinsics.
+     */
+    public static int opcode(int instructionId) {
+        return idOpcodes[instructionId];
+    }
+
+    /**
+     * @param instructionId
+     *                      the id of a {@link JvmInstructions} instruction
+     *
+     * @return {@code true} if the instruction invokes an interface method.
+     */
+    public static boolean isInterface(int instructionId) {
+        return idInterfaces[instructionId];
+    }
+
     public static @NotNull Map<String, Integer> getOpcodes() {
         return opcodes;
     }
@@ -62,5 +88,16 @@ public static int opcode(String name) {
         filteredOpcodes.put("invokestaticinterface", JavaOpcodes.INVOKESTATIC);
         filteredOpcodes.put("invokevirtualinterface", JavaOpcodes.INVOKEINTERFACE);
         filteredOpcodes.put("invokespecialinterface", JavaOpcodes.INVOKESPECIAL);
+
+        // Resolved once, so instructions are dispatched by id instead of by name
+        Instructions<?> instructions = JvmInstructions.INSTANCE;
+        idOpcodes = new int[instructions.size()];
+        idInterfaces = new boolean[instructions.size()];
+        for (int id = 0; id < idOpcodes.length; id++) {
+            String name = instructions.get(id).name();
+            Integer opcode = name.endsWith("interface") ? Integer.valueOf(opcode(name)) : opcodes.get(name);
+            idOpcodes[id] = opcode == null ? -1 : opcode;
+            idInterfaces[id] = name.endsWith("interface");
+        }
     }
 }
@@ -1,29 +1,53 @@
 package me.darknet.assembler;
 
+import dev.xdark.blw.classfile.MemberIdentifier;
+import dev.xdark.blw.classfile.Method;
+import dev.xdark.blw.code.CodeElement;
 import dev.xdark.blw.code.instruction.MethodInstruction;
 import dev.xdark.blw.type.ClassType;
 import dev.xdark.blw.type.Types;
+import me.darknet.assembler.ast.ASTElement;
 import me.darknet.assembler.ast.primitive.ASTInstruction;
+import me.darknet.assembler.ast.specific.ASTClass;
+import me.darknet.assembler.ast.specific.ASTMethod;
+import me.darknet.assembler.compile.JavaClassRepresentation;
+import me.darknet.assembler.compile.JvmBatchCompiler;
+import me.darknet.assembler.compile.JvmCompiler;
+import me.darknet.assembler.compile.OverlayCache;
 import me.darknet.assembler.compile.analysis.AnalysisResults;
 import me.darknet.assembler.compile.analysis.Local;
 import me.darknet.assembler.compile.analysis.Value;
 import me.darknet.assembler.compile.analysis.Values;
 import me.darknet.assembler.compile.analysis.frame.Frame;
+import me.darknet.assembler.compile.analysis.frame.FrameMergeException;
+import me.darknet.assembler.compile.analysis.frame.TypedFrameImpl;
 import me.darknet.assembler.compile.analysis.frame.ValuedFrame;
+import me.darknet.assembler.compile.analysis.frame.ValuedFrameImpl;
 import me.darknet.assembler.compile.analysis.BasicMethodValueLookup;
 import me.darknet.assembler.compile.analysis.jvm.MethodValueLookup;
 import me.darknet.assembler.compile.analysis.jvm.TypedJvmAnalysisEngine;
 import me.darknet.assembler.compile.analysis.jvm.ValuedJvmAnalysisEngine;
+import me.darknet.assembler.compile.builder.BlwReplaceClassBuilder;
+import me.darknet.assembler.compile.visitor.JavaCompileResult;
+import me.darknet.assembler.compiler.ClassBuffer;
+import me.darknet.assembler.compiler.ClassOutput;
+import me.darknet.assembler.error.Result;
+import me.darknet.assembler.parser.BytecodeFormat;
+import me.darknet.assembler.parser.DeclarationParser;
+import me.darknet.assembler.parser.Tokenizer;
+import me.darknet.assembler.parser.processor.ASTProcessor;
 import me.darknet.assembler.compiler.ReflectiveInheritanceChecker;
 import me.darknet.assembler.printer.JvmClassPrinter;
 import me.darknet.assembler.printer.PrintContext;
 
 import me.darknet.assembler.util.Location;
+import me.darknet.assembler.util.StringPool;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 import org.junit.jupiter.api.function.ThrowingSupplier;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -36,16 +60,30 @@
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.runtime.SwitchBootstraps;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiPredicate;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
@@ -1064,6 +1102,391 @@ private static void roundTrip(String source, BinaryTestArgument arg) {
         }
     }
 
+    /**
+     * Compiling on many threads at once, with the pipeline or the caches shared between them.
+     */
+    @Nested
+    class Concurrency {
+        @Test
+        @Timeout(value = 5, unit = TimeUnit.MINUTES)
+        void sharedPipeline() throws Throwable {
+            // Expected output of every sample, compiled one at a time with a fresh pipeline. Samples which do not
+            // compile on their own are left out, their output could not tell a failure on the shared pipeline apart
+            List<String> names = new ArrayList<>();
+            List<String> sources = new ArrayList<>();
+            List<byte[]> expected = new ArrayList<>();
+            for (TestArgument arg : RoundTrip.getValidSources()) {
+                String source = arg.source.get();
+                byte[] classFile = compile(new Tokenizer(), new DeclarationParser(true),
+                        new ASTProcessor(BytecodeFormat.JVM), new JvmCompiler(), source);
+                if (classFile == null)
+                    continue;
+                names.add(arg.name);
+                sources.add(source);
+                expected.add(classFile);
+            }
+            assertFalse(sources.isEmpty(), "No sample compiles sequentially");
+
+            Tokenizer tokenizer = new Tokenizer(new StringPool());
+            DeclarationParser parser = new DeclarationParser(true);
+            ASTProcessor processor = new ASTProcessor(BytecodeFormat.JVM);
+            JvmCompiler compiler = new JvmCompiler();
+            ExecutorService executor = Executors.newFixedThreadPool(16);
+            try {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<byte[]>> results = new ArrayList<>();
+                for (int round = 0; round < 4; round++) {
+                    for (String source : sources) {
+                        results.add(executor.submit(() -> {
+                            start.await();
+                            return compile(tokenizer, parser, processor, compiler, source);
+                        }));
+                    }
+                }
+                start.countDown();
+                for (int i = 0; i < results.size(); i++) {
+                    int index = i % sources.size();
+                    assertArrayEquals(expected.get(index), results.get(i).get(),
+                            "Output differs when compiled concurrently: " + names.get(index));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        @Test
+        @Timeout(value = 5, unit = TimeUnit.MINUTES)
+        void batch() throws Throwable {
+            List<TestArgument> args = RoundTrip.getValidSources();
+            List<JvmBatchCompiler.Unit> units = new ArrayList<>();
+            List<byte[]> expected = new ArrayList<>();
+            for (TestArgument arg : args) {
+                String source = arg.source.get();
+                Result<List<ASTElement>> ast = parse(source);
+                if (ast.hasErr())
+                    continue;
+                TestJvmCompilerOptions options = new TestJvmCompilerOptions();
+                options.version(21);
+                Result<JavaCompileResult> result = new JvmCompiler().compile(ast.get(), options);
+                // Samples which do not compile on their own cannot tell a failing batch unit apart
+                if (result.hasErr())
+                    continue;
+                expected.add(result.get().representation().classFile());
+
+                // Two units of every class, so the caches of the batch are hit
+                for (int copy = 0; copy < 2; copy++) {
+                    TestJvmCompilerOptions batchOptions = new TestJvmCompilerOptions();
+                    batchOptions.version(21);
+                    units.add(new JvmBatchCompiler.Unit(parse(source).get(), batchOptions));
+                }
+            }
+
+            assertFalse(expected.isEmpty(), "No sample compiles sequentially");
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                JvmBatchCompiler compiler = new JvmBatchCompiler(new TestJvmCompilerOptions().inheritanceChecker(),
+                        executor);
+                List<CompletableFuture<Result<JavaCompileResult>>> results = compiler.compile(units);
+                assertEquals(units.size(), results.size());
+                for (int i = 0; i < results.size(); i++) {
+                    Result<JavaCompileResult> result = results.get(i).get();
+                    assertFalse(result.hasErr(), () -> "Batch unit failed: " + result.errors());
+                    assertArrayEquals(expected.get(i / 2), result.get().representation().classFile());
+                    // the options of the units are copied, not changed
+                    assertNotSame(compiler.typeCache(), units.get(i).options().typeCache());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private static Result<List<ASTElement>> parse(String source) {
+            return new DeclarationParser().parseDeclarations(new Tokenizer().tokenize("<test>", source).get())
+                    .flatMap(new ASTProcessor(BytecodeFormat.JVM)::processAST);
+        }
+
+        private static byte @Nullable [] compile(Tokenizer tokenizer, DeclarationParser parser,
+                                                 ASTProcessor processor, JvmCompiler compiler, String source) {
+            TestJvmCompilerOptions options = new TestJvmCompilerOptions();
+            options.version(21);
+            Result<List<ASTElement>> ast = parser.parseDeclarations(tokenizer.tokenize("<test>", source).get())
+                    .flatMap(processor::processAST);
+            if (ast.hasErr())
+                return null;
+            Result<JavaCompileResult> result = compiler.compile(ast.get(), options);
+            if (result.hasErr())
+                return null;
+            return result.get().representation().classFile();
+        }
+    }
+
+    /**
+     * Compiling parts of a class, reusing what was compiled before.
+     */
+    @Nested
+    class Incremental {
+        private static final String SOURCE = """
+                .super java/lang/Object
+                .class public super Counter {
+                    .field public static count I
+                    .method public static next ()I {
+                        code: {
+                        A:
+                            getstatic Counter.count I
+                            iconst_1
+                            iadd
+                            dup
+                            putstatic Counter.count I
+                            ireturn
+                        B:
+                        }
+                    }
+                    .method public static twice (I)I {
+                        parameters: { n },
+                        code: {
+                        A:
+                            iload n
+                            iconst_2
+                            imul
+                            ireturn
+                        B:
+                        }
+                    }
+                }
+                """;
+
+        @Test
+        void unchangedMembersAreReused() throws Throwable {
+            JvmCompiler compiler = new JvmCompiler();
+            Result<JavaCompileResult> first = compiler.recompile(null, Concurrency.parse(SOURCE).get(), options());
+            assertTrue(first.isOk());
+            assertNotNull(first.get().fingerprints());
+
+            // Only 'twice' changes, the comment moves everything else
+            String edited = "// next version\n" + SOURCE.replace("iconst_2", "iconst_3");
+            Result<JavaCompileResult> second = compiler.recompile(first.get(), Concurrency.parse(edited).get(),
+                    options());
+            assertTrue(second.isOk());
+            Result<JavaCompileResult> full = new JvmCompiler().compile(Concurrency.parse(edited).get(), options());
+            assertTrue(full.isOk());
+
+            byte[] classFile = second.get().representation().classFile();
+            assertEquals(dissassemble(full.get().representation().classFile()), dissassemble(classFile));
+            assertSame(first.get().analysisLookup().results("next", "()I"),
+                    second.get().analysisLookup().results("next", "()I"), "Analysis of 'next' was not reused");
+            assertNotSame(first.get().analysisLookup().results("twice", "(I)I"),
+                    second.get().analysisLookup().results("twice", "(I)I"), "Analysis of 'twice' was reused");
+
+            Class<?> counter = defineClass(classFile);
+            assertEquals(1, counter.getMethod("next").invoke(null));
+            assertEquals(2, counter.getMethod("next").invoke(null));
+            assertEquals(12, counter.getMethod("twice", int.class).invoke(null, 4));
+        }
+
+        @Test
+        void lazyCodeMapsToItsInstructions() throws Throwable {
+            JvmCompiler compiler = new JvmCompiler();
+            Result<JavaCompileResult> first = compiler.recompile(null, parseLazily(SOURCE).get(), options());
+            assertTrue(first.isOk());
+
+            List<ASTElement> ast = parseLazily(SOURCE.replace("iconst_2", "iconst_3")).get();
+            Result<JavaCompileResult> second = compiler.recompile(first.get(), ast, options());
+            assertTrue(second.isOk());
+
+            // code is not streamed unless asked for, the analysis refers to the instructions of the parsed code
+            ASTMethod twice = (ASTMethod) ((ASTClass) ast.getFirst()).contents().stream()
+                    .filter(member -> member instanceof ASTMethod method && method.getName().content().equals("twice"))
+                    .findFirst().orElseThrow();
+            assertTrue(twice.code().isParsed());
+            Set<ASTInstruction> instructions = Collections.newSetFromMap(new IdentityHashMap<>());
+            instructions.addAll(twice.code().instructions());
+            Map<CodeElement, ASTInstruction> codeToAst = second.get().analysisLookup().results("twice", "(I)I")
+                    .getCodeToAstMap();
+            assertFalse(codeToAst.isEmpty());
+            for (ASTInstruction instruction : codeToAst.values())
+                assertTrue(instructions.contains(instruction), instruction + " is not an instruction of the code");
+        }
+
+        @Test
+        void changedHeaderCompilesEverything() throws Throwable {
+            JvmCompiler compiler = new JvmCompiler();
+            Result<JavaCompileResult> first = compiler.recompile(null, Concurrency.parse(SOURCE).get(), options());
+            assertTrue(first.isOk());
+
+            String edited = SOURCE.replace(".class public super", ".class public final super");
+            Result<JavaCompileResult> second = compiler.recompile(first.get(), Concurrency.parse(edited).get(),
+                    options());
+            assertTrue(second.isOk());
+            assertNotSame(first.get().analysisLookup().results("next", "()I"),
+                    second.get().analysisLookup().results("next", "()I"));
+            Result<JavaCompileResult> full = new JvmCompiler().compile(Concurrency.parse(edited).get(), options());
+            assertArrayEquals(full.get().representation().classFile(), second.get().representation().classFile());
+        }
+
+        @Test
+        void memberAgainstCachedOverlay() throws Throwable {
+            Result<JavaCompileResult> base = new JvmCompiler().compile(Concurrency.parse(SOURCE).get(), options());
+            assertTrue(base.isOk());
+            JavaClassRepresentation overlay = base.get().representation();
+
+            OverlayCache cache = new OverlayCache();
+            for (int factor = 3; factor <= 4; factor++) {
+                String method = """
+                        .method public static twice (I)I {
+                            parameters: { n },
+                            code: {
+                            A:
+                                iload n
+                                ldc %d
+                                imul
+                                ireturn
+                            B:
+                            }
+                        }
+                        """.formatted(factor);
+                for (boolean headerOnly : new boolean[] { false, true }) {
+                    TestJvmCompilerOptions options = options();
+                    options.overlay(new JavaClassRepresentation(overlay.classFile().clone()));
+                    options.overlayCache(cache);
+                    options.overlayHeaderOnly(headerOnly);
+                    Result<JavaCompileResult> result = new JvmCompiler().compile(Concurrency.parse(method).get(),
+                            options);
+                    assertTrue(result.isOk());
+
+                    byte[] classFile = result.get().representation().classFile();
+                    ClassNode node = new ClassNode();
+                    new ClassReader(classFile).accept(node, 0);
+                    assertEquals(List.of("next", "twice"), node.methods.stream().map(m -> m.name).toList());
+                    assertEquals(1, node.fields.size());
+
+                    // only seeded with the header, the rest of the overlay is only in the class
+                    BlwReplaceClassBuilder builder = (BlwReplaceClassBuilder) result.get().analysisLookup();
+                    assertEquals(headerOnly ? List.of("twice") : List.of("next", "twice"),
+                            builder.build().methods().stream().map(Method::name).toList());
+                    assertEquals(headerOnly ? 0 : 1, builder.build().fields().size());
+                    assertTrue(builder.allResults().containsKey(new MemberIdentifier("twice", "(I)I")));
+
+                    Class<?> counter = defineClass(classFile);
+                    assertEquals(1, counter.getMethod("next").invoke(null));
+                    assertEquals(4 * factor, counter.getMethod("twice", int.class).invoke(null, 4));
+                }
+            }
+        }
+
+        private static TestJvmCompilerOptions options() {
+            TestJvmCompilerOptions options = new TestJvmCompilerOptions();
+            options.version(21);
+            return options;
+        }
+
+        private static Result<List<ASTElement>> parseLazily(String source) {
+            return new DeclarationParser(true).parseDeclarations(new Tokenizer().tokenize("<test>", source).get())
+                    .flatMap(new ASTProcessor(BytecodeFormat.JVM)::processAST);
+        }
+    }
+
+    /**
+     * Writing compiled classes to sinks.
+     */
+    @Nested
+    class Output {
+        @Test
+        void sinks() throws Throwable {
+            List<TestArgument> args = RoundTrip.getValidSources().subList(0, 8);
+            JvmCompiler compiler = new JvmCompiler();
+            ClassBuffer buffer = new ClassBuffer();
+            for (TestArgument arg : args) {
+                Result<List<ASTElement>> ast = Concurrency.parse(arg.source.get());
+                if (ast.hasErr())
+                    continue;
+                TestJvmCompilerOptions options = new TestJvmCompilerOptions();
+                options.version(21);
+                Result<JavaCompileResult> result = compiler.compile(ast.get(), options);
+                if (result.hasErr())
+                    continue;
+                JavaClassRepresentation representation = result.get().representation();
+                byte[] expected = representation.classFile();
+
+                ByteBuffer view = representation.asByteBuffer();
+                assertTrue(view.isReadOnly());
+                assertEquals(ByteBuffer.wrap(expected), view);
+
+                ByteBuffer target = ByteBuffer.allocateDirect(expected.length + 4);
+                target.putInt(0xCAFEBABE);
+                representation.writeTo(ClassOutput.of(target));
+                assertEquals(target.capacity(), target.position());
+                assertEquals(ByteBuffer.wrap(expected), target.flip().position(4));
+                assertThrows(IOException.class, () -> representation.writeTo(ClassOutput.of(target.clear().position(8))));
+
+                ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                try (WritableByteChannel channel = Channels.newChannel(stream)) {
+                    representation.writeTo(ClassOutput.of(channel));
+                }
+                assertArrayEquals(expected, stream.toByteArray());
+
+                // The buffer is reused for all classes
+                buffer.reset();
+                compiler.compile(ast.get(), options, buffer);
+                assertEquals(expected.length, buffer.size());
+                assertEquals(ByteBuffer.wrap(expected), buffer.asByteBuffer());
+                assertArrayEquals(expected, buffer.toByteArray());
+            }
+        }
+    }
+
+    /**
+     * Array backed analysis frames.
+     */
+    @Nested
+    class Frames {
+        @Test
+        void copiesAreIndependent() {
+            ClassType string = Types.instanceType(String.class);
+            TypedFrameImpl frame = new TypedFrameImpl(1, 2);
+            frame.setLocal(0, new Local(0, "this", string));
+            frame.pushType(Types.INT);
+            frame.pushType(Types.LONG);
+
+            TypedFrameImpl copy = frame.copy();
+            assertEquals(frame, copy);
+            copy.pop(2);
+            copy.pushType(string);
+            copy.setLocal(4, new Local(4, "value", Types.INT));
+
+            // The original keeps its state, the stack view lists the top first
+            assertEquals(List.of(Types.VOID, Types.LONG, Types.INT), List.copyOf(frame.getStack()));
+            assertEquals(List.of(string, Types.INT), List.copyOf(copy.getStack()));
+            assertFalse(frame.hasLocal(4));
+            assertEquals(List.of(0, 4), List.copyOf(copy.getLocals().keySet()));
+            assertNotEquals(frame, copy);
+
+            TypedFrameImpl merged = new TypedFrameImpl(Map.of(0, new Local(0, "this", string)));
+            merged.pushType(Types.INT);
+            merged.pushType(Types.instanceType(Integer.class));
+            assertTrue(merged.merge(ReflectiveInheritanceChecker.INSTANCE, copy));
+            assertEquals(Types.OBJECT, merged.peek());
+            assertEquals(Types.INT, merged.getLocalType(4));
+            assertFalse(merged.merge(ReflectiveInheritanceChecker.INSTANCE, copy));
+            assertThrows(FrameMergeException.class, () -> merged.merge(ReflectiveInheritanceChecker.INSTANCE, frame));
+        }
+
+        @Test
+        void valuedCopiesAreIndependent() {
+            ValuedFrameImpl frame = new ValuedFrameImpl();
+            frame.push(Values.valueOf(Types.DOUBLE));
+            frame.pushNull();
+
+            ValuedFrameImpl copy = frame.copy();
+            copy.pop();
+            copy.getStack().clear();
+            assertEquals(3, frame.getStack().size());
+            assertSame(Values.NULL_VALUE, frame.pop());
+            assertSame(Values.VOID_VALUE, frame.pop());
+            assertTrue(copy.getStack().isEmpty());
+        }
+    }
+
     private static String dissassemble(byte[] raw) throws IOException {
         return dissassemble(raw, null);
     }
@@ -166,4 +166,20 @@ public static String normalize(String input) {
         input = DUPLICATE_NEWLINES.matcher(input).replaceAll("\n");
         return input.trim();
     }
+
+    /**
+     * Loading a class has the JVM verify it, including its stack map frames.
+     *
+     * @param classFile
+     *                  the class to load, in a loader of its own so that a class of the same name can be loaded again
+     *
+     * @return the loaded class.
+     */
+    public static Class<?> defineClass(byte @NotNull [] classFile) {
+        return new ClassLoader(TestUtils.class.getClassLoader()) {
+            Class<?> define() {
+                return defineClass(null, classFile, 0, classFile.length);
+            }
+        }.define();
+    }
 }
@@ -5,6 +5,7 @@
 import me.darknet.assembler.parser.Token;
 import me.darknet.assembler.parser.processor.ProcessorAttributes;
 import me.darknet.assembler.util.Location;
+import me.darknet.assembler.util.Position;
 import me.darknet.assembler.util.Range;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -12,14 +13,9 @@
 
 import java.util.*;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 public class ASTElement {
-    private static final Comparator<ASTElement> SORT_POS = (o1, o2) -> {
-        Location l1 = o1.location();
-        Location l2 = o2.location();
-        return (l1 != null && l2 != null) ? l1.compareTo(l2) : 0;
-    };
+    private static final Comparator<ASTElement> SORT_POS = (o1, o2) -> Position.compare(o1.position(), o2.position());
     protected final List<ASTElement> children;
     protected ElementType type;
     protected ASTElement parent;
@@ -35,25 +31,80 @@ public ASTElement(ElementType type, ASTElement... children) {
     }
 
     public ASTElement(ElementType type, @NotNull List<? extends ASTElement> children) {
-        this.children = children.stream().filter(Objects::nonNull).sorted(SORT_POS)
-                .collect(Collectors.toCollection(ArrayList::new));
-        for (ASTElement child : this.children) {
+        List<ASTElement> list = new ArrayList<>(children.size());
+        for (ASTElement child : children) {
+            if (child != null)
+                list.add(child);
+        }
+        // children are almost always given in source order already
+        if (!isOrdered(list))
+            list.sort(SORT_POS);
+        for (ASTElement child : list) {
             child.parent = this;
         }
+        this.children = list;
         this.type = type;
     }
 
     protected void addChild(@NotNull ASTElement element) {
         element.parent = this;
-        children.add(element);
-        children.sort(SORT_POS);
+        int size = children.size();
+        if (size == 0 || SORT_POS.compare(element, children.get(size - 1)) >= 0)
+            children.add(element);
+        else
+            children.add(insertionPoint(element), element);
     }
 
     protected void addChildren(@NotNull Collection<? extends ASTElement> elements) {
-        Collection<ASTElement> filtered = elements.stream().filter(Objects::nonNull).collect(Collectors.toList());
-        filtered.forEach(element -> element.parent = this);
-        children.addAll(filtered);
-        children.sort(SORT_POS);
+        List<ASTElement> added = new ArrayList<>(elements.size());
+        for (ASTElement element : elements) {
+            if (element != null) {
+                element.parent = this;
+                added.add(element);
+            }
+        }
+        if (added.isEmpty())
+            return;
+        if (!isOrdered(added))
+            added.sort(SORT_POS);
+        int size = children.size();
+        if (size == 0 || SORT_POS.compare(added.getFirst(), children.get(size - 1)) >= 0) {
+            children.addAll(added);
+            return;
+        }
+
+        // merge both sorted runs from the back, existing children stay in front of equally placed new ones
+        children.addAll(added);
+        int i = size - 1;
+        int j = added.size() - 1;
+        for (int k = children.size() - 1; j >= 0; k--) {
+            if (i >= 0 && SORT_POS.compare(added.get(j), children.get(i)) < 0)
+                children.set(k, children.get(i--));
+            else
+                children.set(k, added.get(j--));
+        }
+    }
+
+    private int insertionPoint(@NotNull ASTElement element) {
+        // after the last child which is not placed after the element, like a stable sort would
+        int low = 0;
+        int high = children.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (SORT_POS.compare(children.get(middle), element) > 0)
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        return low;
+    }
+
+    private static boolean isOrdered(@NotNull List<ASTElement> elements) {
+        for (int i = 1; i < elements.size(); i++) {
+            if (SORT_POS.compare(elements.get(i - 1), elements.get(i)) > 0)
+                return false;
+        }
+        return true;
     }
 
     protected void removeChild(@NotNull ASTElement element) {
@@ -135,6 +186,16 @@ public ASTElement pick(int position) {
         return cachedRange = createRange(range.start(), range.end());
     }
 
+    /**
+     * Forget the cached ranges of this element and its children, after the tokens they are built from moved.
+     */
+    public void invalidateRange() {
+        cachedRange = null;
+        for (ASTElement child : children) {
+            child.invalidateRange();
+        }
+    }
+
     /**
      * Child types will override this if they need to adjust the range slightly.
      * Consider {@link ASTLabel} which normally would not include the ':' without
@@ -177,6 +238,22 @@ public ASTElement parent() {
         return null;
     }
 
+    /**
+     * @return the packed position of {@link #location()}, or {@link Position#NONE} if there is none.
+     */
+    public long position() {
+        if (value == null) {
+            for (ASTElement child : children) {
+                long position = child.position();
+                if (position != Position.NONE)
+                    return position;
+            }
+        } else {
+            return value.position();
+        }
+        return Position.NONE;
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends ASTElement> T accept(ProcessorAttributes attributes) {
         attributes.fill(this);
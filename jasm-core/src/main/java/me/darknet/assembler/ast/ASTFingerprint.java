@@ -0,0 +1,167 @@
+package me.darknet.assembler.ast;
+
+import me.darknet.assembler.ast.primitive.ASTCode;
+import me.darknet.assembler.ast.primitive.ASTIdentifier;
+import me.darknet.assembler.ast.primitive.ASTInstruction;
+import me.darknet.assembler.ast.primitive.ASTObject;
+import me.darknet.assembler.ast.specific.*;
+import me.darknet.assembler.util.Pair;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fingerprint of the contents of declarations, equal for declarations which are written the same. Only the text of
+ * the elements goes into a fingerprint, not their positions, so a declaration keeps its fingerprint when the code
+ * around it is edited. Code which is parsed on first access is parsed.
+ */
+public final class ASTFingerprint {
+
+    private final MessageDigest digest;
+
+    private ASTFingerprint() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @param member
+     *               the field or method
+     *
+     * @return hex encoded fingerprint of everything declared by the member.
+     */
+    public static @NotNull String of(@NotNull ASTMember member) {
+        ASTFingerprint fingerprint = new ASTFingerprint();
+        fingerprint.member(member);
+        switch (member) {
+            case ASTMethod method -> fingerprint.method(method);
+            case ASTField field -> fingerprint.element(field.getFieldValue());
+            default -> {
+            }
+        }
+        return fingerprint.finish();
+    }
+
+    /**
+     * @param declaration
+     *                    the class
+     *
+     * @return hex encoded fingerprint of the modifiers, name and supertypes of the class, which the code of its
+     *         members is compiled against.
+     */
+    public static @NotNull String ofHeader(@NotNull ASTClass declaration) {
+        ASTFingerprint fingerprint = new ASTFingerprint();
+        fingerprint.elements(declaration.getModifiers().modifiers());
+        fingerprint.element(declaration.getName());
+        fingerprint.element(declaration.getSuperName());
+        fingerprint.elements(declaration.getInterfaces());
+        return fingerprint.finish();
+    }
+
+    private void member(ASTMember member) {
+        tag(member.type().ordinal());
+        elements(member.getModifiers().modifiers());
+        element(member.getName());
+        element(member.getDescriptor());
+        element(member.getSignature());
+        elements(member.getVisibleAnnotations());
+        elements(member.getInvisibleAnnotations());
+        elements(member.getVisibleTypeAnnotations());
+        elements(member.getInvisibleTypeAnnotations());
+    }
+
+    private void method(ASTMethod method) {
+        elements(method.parameters());
+        // the annotations are keyed by identity, order them by parameter name
+        List<Map.Entry<ASTIdentifier, List<ASTAnnotation>>> parameterAnnotations = new ArrayList<>(
+                method.parameterAnnotations().entrySet());
+        parameterAnnotations.sort(Comparator.comparing(entry -> entry.getKey().content()));
+        tag(parameterAnnotations.size());
+        for (Map.Entry<ASTIdentifier, List<ASTAnnotation>> entry : parameterAnnotations) {
+            element(entry.getKey());
+            elements(entry.getValue());
+        }
+        elements(method.exceptions());
+        element(method.getAnnotationDefaultValue());
+        element(method.code());
+    }
+
+    private void elements(@Nullable List<? extends @Nullable ASTElement> elements) {
+        if (elements == null) {
+            tag(-1);
+            return;
+        }
+        tag(elements.size());
+        for (ASTElement element : elements) {
+            element(element);
+        }
+    }
+
+    private void element(@Nullable ASTElement element) {
+        if (element == null) {
+            tag(-1);
+            return;
+        }
+        tag(element.type().ordinal());
+        text(element.content());
+        switch (element) {
+            case ASTCode code -> elements(code.instructions());
+            case ASTInstruction instruction -> {
+                element(instruction.identifier());
+                elements(instruction.arguments());
+            }
+            case ASTAnnotation annotation -> {
+                tag(annotation.isVisible() ? 1 : 0);
+                element(annotation.classType());
+                element(annotation.typeRef());
+                element(annotation.typePath());
+                pairs(annotation.values().pairs());
+            }
+            // keys of objects are not children
+            case ASTObject object -> pairs(object.values().pairs());
+            default -> elements(element.children());
+        }
+    }
+
+    private void pairs(Collection<? extends Pair<? extends ASTElement, ? extends ASTElement>> pairs) {
+        tag(pairs.size());
+        for (Pair<? extends ASTElement, ? extends ASTElement> pair : pairs) {
+            element(pair.first());
+            element(pair.second());
+        }
+    }
+
+    private void text(@Nullable String text) {
+        if (text == null) {
+            tag(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        tag(bytes.length);
+        digest.update(bytes);
+    }
+
+    private void tag(int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    private String finish() {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
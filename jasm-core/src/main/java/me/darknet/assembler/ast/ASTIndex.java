@@ -0,0 +1,269 @@
+package me.darknet.assembler.ast;
+
+import me.darknet.assembler.ast.primitive.ASTCode;
+import me.darknet.assembler.ast.primitive.ASTIdentifier;
+import me.darknet.assembler.ast.primitive.ASTInstruction;
+import me.darknet.assembler.ast.primitive.ASTLabel;
+import me.darknet.assembler.instructions.DefaultOperands;
+import me.darknet.assembler.instructions.Instruction;
+import me.darknet.assembler.instructions.Instructions;
+import me.darknet.assembler.instructions.Operand;
+import me.darknet.assembler.instructions.jvm.JvmOperands;
+import me.darknet.assembler.parser.BytecodeFormat;
+import me.darknet.assembler.util.Range;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Position index over a tree of elements, built once after parsing to answer which element is at an offset without
+ * walking the tree.
+ * <p>
+ * Element ranges nest like the tree itself, so the index keeps the elements in breadth first order where the children
+ * of every element are adjacent and sorted by their start. Each sibling group is augmented with the running maximum
+ * of the range ends, which turns finding the first child containing an offset into a binary search. Lookups take
+ * {@code O(d log n)} for a nesting depth {@code d}, which is bounded by the grammar, and give the same element as
+ * {@link ASTElement#pick(int)}.
+ * <p>
+ * The index also records the labels of every {@link ASTCode}. Label operands and the targets of switch operands of
+ * the instructions are taken as uses of the label of the same code they name. Instructions are resolved by
+ * {@link ASTInstruction#instructionId()} once processed and by their name before that.
+ */
+public final class ASTIndex {
+
+    private final ASTElement[] elements;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] maxEnds;
+    private final int[] firstChildren;
+    private final int[] childCounts;
+    private final int rootCount;
+    private final Map<ASTCode, Labels> labels = new IdentityHashMap<>();
+
+    /**
+     * Index elements and all of their children, code blocks which are parsed on first access are parsed.
+     *
+     * @param roots
+     *              the top level elements, in source order
+     */
+    public ASTIndex(@NotNull List<? extends @Nullable ASTElement> roots) {
+        this(roots, BytecodeFormat.DEFAULT);
+    }
+
+    /**
+     * Index elements and all of their children, code blocks which are parsed on first access are parsed.
+     *
+     * @param roots
+     *               the top level elements, in source order
+     * @param format
+     *               the format of the code, which tells the label operands of the instructions apart
+     */
+    public ASTIndex(@NotNull List<? extends @Nullable ASTElement> roots, @NotNull BytecodeFormat format) {
+        Instructions<?> instructions = format.getInstructions();
+        List<ASTElement> order = new ArrayList<>();
+        for (ASTElement root : roots) {
+            if (root != null)
+                order.add(root);
+        }
+        rootCount = order.size();
+        // children of the elements at the front of the queue are appended as one group
+        List<int[]> groups = new ArrayList<>();
+        for (int i = 0; i < order.size(); i++) {
+            ASTElement element = order.get(i);
+            List<ASTElement> children = element.children();
+            groups.add(new int[] { order.size(), children.size() });
+            order.addAll(children);
+            if (element instanceof ASTCode code)
+                labels.put(code, new Labels(code, instructions));
+        }
+
+        int size = order.size();
+        elements = order.toArray(new ASTElement[0]);
+        starts = new int[size];
+        ends = new int[size];
+        maxEnds = new int[size];
+        firstChildren = new int[size];
+        childCounts = new int[size];
+        for (int i = 0; i < size; i++) {
+            Range range = elements[i].range();
+            starts[i] = range.start();
+            ends[i] = range.end();
+            int[] group = groups.get(i);
+            firstChildren[i] = group[0];
+            childCounts[i] = group[1];
+        }
+        accumulateEnds(0, rootCount);
+        for (int i = 0; i < size; i++) {
+            accumulateEnds(firstChildren[i], childCounts[i]);
+        }
+    }
+
+    private void accumulateEnds(int from, int count) {
+        int max = Integer.MIN_VALUE;
+        for (int i = from; i < from + count; i++) {
+            max = Math.max(max, ends[i]);
+            maxEnds[i] = max;
+        }
+    }
+
+    /**
+     * @param offset
+     *               the offset in the source
+     *
+     * @return the innermost element whose range contains the offset, or {@code null} if no element does.
+     */
+    public @Nullable ASTElement at(int offset) {
+        return enclosing(offset, offset);
+    }
+
+    /**
+     * @param start
+     *              the start offset in the source, inclusive
+     * @param end
+     *              the end offset in the source, inclusive
+     *
+     * @return the innermost element whose range contains the whole range, or {@code null} if no element does.
+     */
+    public @Nullable ASTElement enclosing(int start, int end) {
+        if (end < start)
+            return null;
+        ASTElement found = null;
+        int from = 0;
+        int count = rootCount;
+        while (count > 0) {
+            int index = firstContaining(from, count, start, end);
+            if (index < 0)
+                break;
+            found = elements[index];
+            from = firstChildren[index];
+            count = childCounts[index];
+        }
+        return found;
+    }
+
+    private int firstContaining(int from, int count, int start, int end) {
+        // siblings in front of the first one reaching the end all end before it
+        int low = from;
+        int high = from + count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (maxEnds[middle] < end)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        // siblings after it start at or after its start
+        if (low == from + count || starts[low] > start || ends[low] < end)
+            return -1;
+        return low;
+    }
+
+    /**
+     * @param code
+     *             the code holding the label
+     * @param name
+     *             the name of the label
+     *
+     * @return the first definition of the label in the code, or {@code null} if it is not defined or the code is not
+     *         indexed.
+     */
+    public @Nullable ASTLabel definition(@NotNull ASTCode code, @NotNull String name) {
+        Labels table = labels.get(code);
+        return table == null ? null : table.definitions.get(name);
+    }
+
+    /**
+     * @param code
+     *             the code holding the label
+     * @param name
+     *             the name of the label
+     *
+     * @return the identifiers referring to the label in the code, in source order.
+     */
+    public @NotNull List<ASTIdentifier> uses(@NotNull ASTCode code, @NotNull String name) {
+        Labels table = labels.get(code);
+        if (table == null)
+            return Collections.emptyList();
+        return table.uses.getOrDefault(name, Collections.emptyList());
+    }
+
+    /**
+     * @param code
+     *             the code holding the labels
+     *
+     * @return the names of the labels defined in the code, in source order.
+     */
+    public @NotNull Set<String> labels(@NotNull ASTCode code) {
+        Labels table = labels.get(code);
+        return table == null ? Collections.emptySet() : Collections.unmodifiableSet(table.definitions.keySet());
+    }
+
+    /**
+     * @return the amount of indexed elements.
+     */
+    public int size() {
+        return elements.length;
+    }
+
+    private static final class Labels {
+
+        private final Map<String, ASTLabel> definitions = new LinkedHashMap<>();
+        private final Map<String, List<ASTIdentifier>> uses = new HashMap<>();
+
+        private Labels(ASTCode code, @Nullable Instructions<?> instructions) {
+            List<ASTIdentifier> candidates = new ArrayList<>();
+            for (ASTInstruction instruction : code.instructions()) {
+                if (instruction instanceof ASTLabel label) {
+                    definitions.putIfAbsent(label.identifier().content(), label);
+                    continue;
+                }
+                Instruction<?> resolved = resolve(instruction, instructions);
+                if (resolved == null)
+                    continue;
+                List<Operand> operands = resolved.operands();
+                List<ASTElement> arguments = instruction.arguments();
+                for (int i = 0; i < Math.min(operands.size(), arguments.size()); i++) {
+                    ASTElement argument = arguments.get(i);
+                    Operand operand = operands.get(i);
+                    if (argument == null)
+                        continue;
+                    if (operand == DefaultOperands.LABEL.getOperand()) {
+                        if (argument instanceof ASTIdentifier identifier)
+                            candidates.add(identifier);
+                    } else if (operand == JvmOperands.TABLE_SWITCH.getOperand()
+                            || operand == JvmOperands.LOOKUP_SWITCH.getOperand()) {
+                        collectIdentifiers(argument, candidates);
+                    }
+                }
+            }
+            for (ASTIdentifier identifier : candidates) {
+                String name = identifier.content();
+                if (definitions.containsKey(name))
+                    uses.computeIfAbsent(name, k -> new ArrayList<>()).add(identifier);
+            }
+        }
+
+        private static @Nullable Instruction<?> resolve(ASTInstruction instruction,
+                @Nullable Instructions<?> instructions) {
+            if (instructions == null)
+                return null;
+            int id = instruction.instructionId();
+            if (id >= 0 && id < instructions.size())
+                return instructions.get(id);
+            return instructions.get(instruction.identifier().content());
+        }
+
+        private static void collectIdentifiers(ASTElement element, List<ASTIdentifier> identifiers) {
+            if (element instanceof ASTIdentifier identifier) {
+                identifiers.add(identifier);
+                return;
+            }
+            // object keys are not children, only their values can name labels, switch bounds are numbers
+            for (ASTElement child : element.children()) {
+                collectIdentifiers(child, identifiers);
+            }
+        }
+    }
+}
@@ -2,22 +2,166 @@
 
 import me.darknet.assembler.ast.ASTElement;
 import me.darknet.assembler.ast.ElementType;
+import me.darknet.assembler.error.Error;
+import me.darknet.assembler.error.Result;
+import me.darknet.assembler.parser.Token;
+import me.darknet.assembler.util.Location;
+import me.darknet.assembler.util.Position;
+import me.darknet.assembler.util.Range;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class ASTCode extends ASTElement {
 
-    private final List<@NotNull ASTInstruction> instructions;
+    private List<@NotNull ASTInstruction> instructions;
+    private List<Error> errors = Collections.emptyList();
+    private volatile Supplier<Result<List<@NotNull ASTInstruction>>> parser;
+    private InstructionSource source;
+    private Token first;
 
     public ASTCode(List<@NotNull ASTInstruction> instructions) {
         super(ElementType.CODE, instructions);
         this.instructions = instructions;
     }
 
+    /**
+     * Code which is only parsed when its instructions are first accessed.
+     *
+     * @param first
+     *               the first token of the first instruction, or {@code null} if the code is empty
+     * @param parser
+     *               parser of the instructions
+     */
+    public ASTCode(@Nullable Token first, @NotNull Supplier<Result<List<@NotNull ASTInstruction>>> parser) {
+        super(ElementType.CODE, new ArrayList<>());
+        this.first = first;
+        this.parser = parser;
+    }
+
+    /**
+     * Code which is only parsed when its instructions are first accessed, by a parser which can also pass the
+     * instructions on one at a time, see {@link #stream(Consumer)}.
+     *
+     * @param first
+     *               the first token of the first instruction, or {@code null} if the code is empty
+     * @param source
+     *               parser of the instructions
+     */
+    public ASTCode(@Nullable Token first, @NotNull InstructionSource source) {
+        this(first, () -> {
+            List<@NotNull ASTInstruction> instructions = new ArrayList<>();
+            List<Error> errors = source.parse(instructions::add);
+            return new Result<>(errors.isEmpty() ? instructions : null, errors, List.of());
+        });
+        this.source = source;
+    }
+
     public List<@NotNull ASTInstruction> instructions() {
+        parse();
         return instructions;
     }
 
+    /**
+     * @return {@code true} if the instructions have been parsed, {@code false} if they are parsed on first access.
+     */
+    public boolean isParsed() {
+        return parser == null;
+    }
+
+    /**
+     * @return errors found while parsing the instructions on first access.
+     */
+    public List<Error> errors() {
+        parse();
+        return errors;
+    }
+
+    /**
+     * Pass the instructions to a consumer. Code which was not parsed yet and has an {@link InstructionSource} is
+     * parsed one instruction at a time without keeping the instructions, the code stays unparsed. Otherwise the
+     * instructions are parsed, if needed, and passed on from {@link #instructions()}.
+     *
+     * @param consumer
+     *                 receives the instructions in code order
+     *
+     * @return errors found while parsing. When streaming, the instructions preceding the first error have already
+     *         been passed on.
+     */
+    public List<Error> stream(@NotNull Consumer<@NotNull ASTInstruction> consumer) {
+        InstructionSource source = this.source;
+        if (parser != null && source != null)
+            return source.parse(consumer);
+        for (ASTInstruction instruction : instructions()) {
+            consumer.accept(instruction);
+        }
+        return errors;
+    }
+
+    @Override
+    public @NotNull List<ASTElement> children() {
+        parse();
+        return super.children();
+    }
+
+    @Override
+    public @NotNull Range range() {
+        parse();
+        return super.range();
+    }
+
+    @Override
+    public @Nullable Location location() {
+        // the location is known without parsing, it is needed to place the code among its siblings
+        if (parser != null)
+            return first == null ? null : first.location();
+        return super.location();
+    }
+
+    @Override
+    public long position() {
+        if (parser != null)
+            return first == null ? Position.NONE : first.position();
+        return super.position();
+    }
+
+    private void parse() {
+        if (parser == null)
+            return;
+        // code shared between threads may be accessed for the first time by several of them at once
+        synchronized (this) {
+            Supplier<Result<List<@NotNull ASTInstruction>>> parser = this.parser;
+            if (parser == null)
+                return;
+            Result<List<@NotNull ASTInstruction>> result = parser.get();
+            List<@NotNull ASTInstruction> instructions = result.get() == null ? new ArrayList<>() : result.get();
+            this.instructions = instructions;
+            this.errors = result.errors();
+            this.source = null;
+            addChildren(instructions);
+            // cleared last, a thread which sees the code as parsed also sees its instructions
+            this.parser = null;
+        }
+    }
+
+    /**
+     * Parser of code which passes every instruction on as soon as it is parsed.
+     */
+    @FunctionalInterface
+    public interface InstructionSource {
+
+        /**
+         * @param consumer
+         *                 receives the instructions in code order
+         *
+         * @return errors found while parsing, the instructions preceding the first error have been passed on.
+         */
+        List<Error> parse(@NotNull Consumer<@NotNull ASTInstruction> consumer);
+    }
 }
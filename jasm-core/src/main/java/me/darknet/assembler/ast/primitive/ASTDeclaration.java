@@ -42,4 +42,16 @@ public ASTIdentifier keyword() {
         return elements.get(index);
     }
 
+    /**
+     * Replace an element of the declaration.
+     *
+     * @param index
+     *                the index of the element
+     * @param element
+     *                the new element
+     */
+    public void replaceElement(int index, @Nullable ASTElement element) {
+        replaceChild(elements.set(index, element), element);
+    }
+
 }
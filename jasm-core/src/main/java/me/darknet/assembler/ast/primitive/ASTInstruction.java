@@ -15,6 +15,7 @@ public class ASTInstruction extends ASTElement {
 
     private final ASTIdentifier identifier;
     private final List<@Nullable ASTElement> arguments;
+    private int instructionId = -1;
 
     public ASTInstruction(ASTIdentifier identifier, List<@Nullable ASTElement> arguments) {
         super(ElementType.CODE_INSTRUCTION, CollectionUtil.mergeNonNull(arguments, identifier));
@@ -39,6 +40,20 @@ public ASTIdentifier identifier() {
         return arguments;
     }
 
+    /**
+     * @return the id of the instruction in the instruction set of the bytecode format, resolved once when the
+     *         instruction is processed. {@code -1} for labels and instructions which were not processed.
+     *
+     * @see me.darknet.assembler.instructions.Instructions#get(int)
+     */
+    public int instructionId() {
+        return instructionId;
+    }
+
+    public void setInstructionId(int instructionId) {
+        this.instructionId = instructionId;
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends ASTElement> T argument(int index, Class<T> type) {
         ASTElement element = arguments.get(index);
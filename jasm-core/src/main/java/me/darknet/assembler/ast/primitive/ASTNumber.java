@@ -2,58 +2,56 @@
 
 import me.darknet.assembler.ast.ElementType;
 import me.darknet.assembler.ast.specific.ASTValue;
+import me.darknet.assembler.parser.NumberLiteral;
 import me.darknet.assembler.parser.Token;
 
+import org.jetbrains.annotations.Nullable;
+
 public class ASTNumber extends ASTValue {
 
+    private Number number;
+
     public ASTNumber(Token number) {
         super(ElementType.NUMBER, number);
     }
 
     public Number number() {
-        String value = content().toLowerCase();
-        int radix = 10;
-        if (value.startsWith("0x")) {
-            radix = 16;
-            value = value.substring(2);
-        } else if (value.startsWith("0b")) {
-            radix = 2;
-            value = value.substring(2);
-        } else if (value.startsWith("nan")) {
-            if (value.endsWith("f"))
-                return Float.NaN;
-            return Double.NaN;
-        } else if (value.contains("infinity")) {
-            if (value.startsWith("-")) {
-                if (value.endsWith("f")) return Float.NEGATIVE_INFINITY;
-                return Double.NEGATIVE_INFINITY;
-            }
-            if (value.endsWith("f"))
-                return Float.POSITIVE_INFINITY;
-            return Double.POSITIVE_INFINITY;
-        }
-        if (value.endsWith("f")) {
-            return Float.parseFloat(value.substring(0, value.length() - 1));
-        } else if (value.endsWith("d")) {
-            return Double.parseDouble(value.substring(0, value.length() - 1));
-        } else if (value.contains(".")) {
-            return Double.parseDouble(value);
-        } else {
-            if (value.endsWith("l")) {
-                return Long.parseLong(value.substring(0, value.length() - 1), radix);
+        if (number != null)
+            return number;
+        // the tokenizer already parsed the literal
+        Number parsed = value.number();
+        if (parsed == null) {
+            String value = content().toLowerCase();
+            if (value.startsWith("nan")) {
+                if (value.endsWith("f"))
+                    return Float.NaN;
+                return Double.NaN;
+            } else if (value.contains("infinity")) {
+                if (value.startsWith("-")) {
+                    if (value.endsWith("f")) return Float.NEGATIVE_INFINITY;
+                    return Double.NEGATIVE_INFINITY;
+                }
+                if (value.endsWith("f"))
+                    return Float.POSITIVE_INFINITY;
+                return Double.POSITIVE_INFINITY;
             }
-            return Integer.parseInt(value, radix);
+            parsed = NumberLiteral.parse(content());
         }
+        number = parsed;
+        return parsed;
     }
 
     public boolean isWide() {
-        String value = content().toLowerCase();
-        if (value.contains(".")) {
-            return !value.endsWith("f");
-        } else {
-            return value.endsWith("l") || value.endsWith("d") ||
-                    isNaN() || isInfinity();
+        if (isNaN() || isInfinity())
+            return true;
+        Number number = parsedOrNull();
+        if (number == null) {
+            String value = content().toLowerCase();
+            if (value.contains("."))
+                return !value.endsWith("f");
+            return value.endsWith("l") || value.endsWith("d");
         }
+        return number instanceof Long || number instanceof Double;
     }
 
     public int asInt() {
@@ -76,9 +74,23 @@ public double asDouble() {
      * @return {@code true} when this number is a {@code float} or {@code double}.
      */
     public boolean isFloatingPoint() {
-        String value = content();
-        return value.contains(".") || value.endsWith("f") || value.endsWith("F")
-                || value.endsWith("d") || value.endsWith("D")  || isNaN() || isInfinity();
+        if (isNaN() || isInfinity())
+            return true;
+        Number number = parsedOrNull();
+        if (number == null) {
+            String value = content();
+            return value.contains(".") || value.endsWith("f") || value.endsWith("F")
+                    || value.endsWith("d") || value.endsWith("D");
+        }
+        return number instanceof Float || number instanceof Double;
+    }
+
+    private @Nullable Number parsedOrNull() {
+        try {
+            return number();
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     public boolean isNaN() {
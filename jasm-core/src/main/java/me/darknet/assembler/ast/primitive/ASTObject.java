@@ -27,4 +27,18 @@ public ElementMap<ASTIdentifier, ASTElement> values() {
     public <T extends @Nullable ASTElement> T value(String name) {
         return values.get(name);
     }
+
+    /**
+     * Replace the value of an entry of the object.
+     *
+     * @param index
+     *              the index of the entry
+     * @param value
+     *              the new value
+     */
+    public void replaceValue(int index, @Nullable ASTElement value) {
+        ASTElement previous = values.get(index);
+        values.replace(index, value);
+        replaceChild(previous, value);
+    }
 }
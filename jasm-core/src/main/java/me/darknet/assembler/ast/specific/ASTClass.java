@@ -14,6 +14,7 @@
 
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 
 public class ASTClass extends ASTMember {
     private final @NotNull List<ASTElement> contents;
@@ -130,7 +131,52 @@ public List<ASTElement> contents() {
         return contents.get(index);
     }
 
+    /**
+     * Replace a member of the class.
+     *
+     * @param index
+     *                    the index of the member in the {@link #contents()}
+     * @param replacement
+     *                    the new member
+     */
+    public void replaceContent(int index, @NotNull ASTElement replacement) {
+        replaceChild(contents.set(index, replacement), replacement);
+    }
+
     public void accept(ErrorCollector collector, ASTClassVisitor visitor) {
+        accept(collector, visitor, false);
+    }
+
+    /**
+     * Visit the class.
+     *
+     * @param collector
+     *                   collects errors of the class
+     * @param visitor
+     *                   the visitor
+     * @param streamCode
+     *                   whether unparsed method code is streamed to the visitor, see
+     *                   {@link ASTMethod#accept(ErrorCollector, me.darknet.assembler.visitor.ASTMethodVisitor, boolean)}
+     */
+    public void accept(ErrorCollector collector, ASTClassVisitor visitor, boolean streamCode) {
+        accept(collector, visitor, streamCode, null);
+    }
+
+    /**
+     * Visit the class, with only some of its members.
+     *
+     * @param collector
+     *                     collects errors of the class
+     * @param visitor
+     *                     the visitor
+     * @param streamCode
+     *                     whether unparsed method code is streamed to the visitor, see
+     *                     {@link ASTMethod#accept(ErrorCollector, me.darknet.assembler.visitor.ASTMethodVisitor, boolean)}
+     * @param memberFilter
+     *                     the fields and methods to visit, or {@code null} to visit all of them
+     */
+    public void accept(ErrorCollector collector, ASTClassVisitor visitor, boolean streamCode,
+            @Nullable Predicate<ASTElement> memberFilter) {
         super.accept(collector, visitor);
         if (visitor == null)
             return;
@@ -173,13 +219,16 @@ public void accept(ErrorCollector collector, ASTClassVisitor visitor) {
         }
 
         for (ASTElement declaration : contents) {
+            if (memberFilter != null && !memberFilter.test(declaration))
+                continue;
             if (declaration instanceof ASTField field) {
                 field.accept(
                         collector, visitor.visitField(field.getModifiers(), field.getName(), field.getDescriptor())
                 );
             } else if (declaration instanceof ASTMethod method) {
                 method.accept(
-                        collector, visitor.visitMethod(method.getModifiers(), method.getName(), method.getDescriptor())
+                        collector, visitor.visitMethod(method.getModifiers(), method.getName(), method.getDescriptor()),
+                        streamCode
                 );
             } else {
                 collector.addError("Don't know how to process: " + declaration.type(), declaration.location());
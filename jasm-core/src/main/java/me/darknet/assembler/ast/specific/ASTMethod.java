@@ -6,16 +6,21 @@
 import me.darknet.assembler.ast.primitive.ASTIdentifier;
 import me.darknet.assembler.ast.primitive.ASTInstruction;
 import me.darknet.assembler.ast.primitive.ASTLabel;
+import me.darknet.assembler.error.Error;
 import me.darknet.assembler.error.ErrorCollector;
+import me.darknet.assembler.error.Result;
 import me.darknet.assembler.instructions.Instruction;
 import me.darknet.assembler.parser.BytecodeFormat;
+import me.darknet.assembler.parser.processor.ASTProcessor;
 import me.darknet.assembler.visitor.ASTInstructionVisitor;
 import me.darknet.assembler.visitor.ASTMethodVisitor;
 import me.darknet.assembler.visitor.Modifiers;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 public class ASTMethod extends ASTMember {
 
@@ -24,20 +29,37 @@ public class ASTMethod extends ASTMember {
     private final List<ASTException> exceptions;
     private final ASTElement defaultValue;
     private final ASTCode code;
-    private final List<Instruction<?>> instructions;
     private final BytecodeFormat format;
+    private List<Instruction<?>> instructions;
+    private List<Error> codeErrors = Collections.emptyList();
+    private volatile Supplier<Result<List<Instruction<?>>>> verifier;
 
     public ASTMethod(Modifiers modifiers, ASTIdentifier name, ASTIdentifier descriptor, List<ASTIdentifier> parameters,
                      Map<ASTIdentifier, List<ASTAnnotation>> parameterAnnotations,
                      ASTElement defaultValue, List<ASTException> exceptions, ASTCode code,
                      List<Instruction<?>> instructions, BytecodeFormat format) {
+        this(modifiers, name, descriptor, parameters, parameterAnnotations, defaultValue, exceptions, code,
+                (Supplier<Result<List<Instruction<?>>>>) null, format);
+        this.instructions = instructions;
+    }
+
+    /**
+     * Method whose code is only verified when its instructions are first accessed.
+     *
+     * @param verifier
+     *                 parses the code, if not parsed yet, and verifies its instructions
+     */
+    public ASTMethod(Modifiers modifiers, ASTIdentifier name, ASTIdentifier descriptor, List<ASTIdentifier> parameters,
+                     Map<ASTIdentifier, List<ASTAnnotation>> parameterAnnotations,
+                     ASTElement defaultValue, List<ASTException> exceptions, ASTCode code,
+                     Supplier<Result<List<Instruction<?>>>> verifier, BytecodeFormat format) {
         super(ElementType.METHOD, modifiers, name, descriptor);
         this.parameters = parameters;
         this.parameterAnnotations = parameterAnnotations;
         this.exceptions = exceptions;
         this.defaultValue = defaultValue;
         this.code = code;
-        this.instructions = instructions;
+        this.verifier = verifier;
         this.format = format;
         addChildren(parameters);
         addChildren(exceptions);
@@ -66,11 +88,54 @@ public ASTCode code() {
     }
 
     public List<Instruction<?>> instructions() {
+        verify();
         return instructions;
     }
 
-    @SuppressWarnings("UnnecessaryLocalVariable")
+    /**
+     * @return errors found while parsing and verifying the code when it was first accessed. Empty when the code was
+     *         verified while processing the method, those errors are reported by the processor.
+     */
+    public List<Error> codeErrors() {
+        verify();
+        return codeErrors;
+    }
+
+    private void verify() {
+        if (verifier == null)
+            return;
+        // methods shared between threads may be accessed for the first time by several of them at once
+        synchronized (this) {
+            Supplier<Result<List<Instruction<?>>>> verifier = this.verifier;
+            if (verifier == null)
+                return;
+            Result<List<Instruction<?>>> result = verifier.get();
+            this.instructions = result.get();
+            this.codeErrors = result.errors();
+            // cleared last, a thread which sees the method as verified also sees its instructions
+            this.verifier = null;
+        }
+    }
+
     public void accept(ErrorCollector collector, ASTMethodVisitor visitor) {
+        accept(collector, visitor, false);
+    }
+
+    /**
+     * Visit the method.
+     *
+     * @param collector
+     *                   collects errors of the method
+     * @param visitor
+     *                   the visitor
+     * @param streamCode
+     *                   whether code which was neither parsed nor verified yet is passed to the visitor straight from
+     *                   its tokens. Every instruction is parsed, verified and visited on its own, so the code never
+     *                   exists as a list of instructions and stays unparsed. Instructions after the first error are
+     *                   still verified but no longer visited, and the code visitor is not ended.
+     */
+    @SuppressWarnings("UnnecessaryLocalVariable")
+    public void accept(ErrorCollector collector, ASTMethodVisitor visitor, boolean streamCode) {
         super.accept(collector, visitor);
         List<ASTIdentifier> localParams = parameters;
         for (int i = 0; i < localParams.size(); i++) {
@@ -100,6 +165,18 @@ public void accept(ErrorCollector collector, ASTMethodVisitor visitor) {
             visitor.visitEnd();
             return;
         }
+        if (streamCode && verifier != null && !code.isParsed()) {
+            streamCode(collector, visitor);
+            visitor.visitEnd();
+            return;
+        }
+        List<Error> localCodeErrors = codeErrors();
+        if (!localCodeErrors.isEmpty()) {
+            // the instructions do not line up with the code
+            collector.addErrors(localCodeErrors);
+            visitor.visitEnd();
+            return;
+        }
 
         ASTInstructionVisitor instructionVisitor = switch (format) {
             case JVM -> visitor.visitJvmCode(collector);
@@ -113,9 +190,10 @@ public void accept(ErrorCollector collector, ASTMethodVisitor visitor) {
                 if (instruction instanceof ASTLabel lab) {
                     instructionVisitor.visitLabel(lab.identifier());
                 } else {
-                    if (!instruction.identifier().content().equals("line"))
+                    Instruction<?> irInstruction = localIrInstructions.get(instructionIndex++);
+                    if (!irInstruction.isIntrinsic())
                         instructionVisitor.visitInstruction(instruction);
-                    localIrInstructions.get(instructionIndex++).transform(instruction, instructionVisitor);
+                    irInstruction.transform(instruction, instructionVisitor);
                 }
             }
 
@@ -131,6 +209,40 @@ public void accept(ErrorCollector collector, ASTMethodVisitor visitor) {
         visitor.visitEnd();
     }
 
+    private void streamCode(ErrorCollector collector, ASTMethodVisitor visitor) {
+        ASTInstructionVisitor instructionVisitor = switch (format) {
+            case JVM -> visitor.visitJvmCode(collector);
+            case DALVIK -> null;
+        };
+        ErrorCollector codeCollector = new ErrorCollector();
+        ASTProcessor.ParserContext ctx = new ASTProcessor.ParserContext(format, codeCollector);
+        List<Error> parseErrors = code.stream(instruction -> {
+            if (instruction instanceof ASTLabel lab) {
+                if (instructionVisitor != null && !codeCollector.hasErr())
+                    instructionVisitor.visitLabel(lab.identifier());
+                return;
+            }
+            Instruction<?> irInstruction = ASTProcessor.verifyInstruction(ctx, instruction);
+            if (irInstruction == null || instructionVisitor == null || codeCollector.hasErr())
+                return;
+            if (!irInstruction.isIntrinsic())
+                instructionVisitor.visitInstruction(instruction);
+            irInstruction.transform(instruction, instructionVisitor);
+        });
+        collector.addErrors(parseErrors);
+        collector.addErrors(codeCollector.getErrors());
+        collector.addWarnings(codeCollector.getWarns());
+        // the visitor only saw the instructions up to the first error, the code is not finished
+        if (instructionVisitor == null || !parseErrors.isEmpty() || codeCollector.hasErr())
+            return;
+        for (ASTException exception : exceptions) {
+            instructionVisitor.visitException(
+                    exception.start(), exception.end(), exception.handler(), exception.exceptionType()
+            );
+        }
+        instructionVisitor.visitEnd();
+    }
+
     protected int findParameterIndex(String name) {
         for (int i = 0; i < parameters.size(); i++) {
             ASTIdentifier parameter = parameters.get(i);
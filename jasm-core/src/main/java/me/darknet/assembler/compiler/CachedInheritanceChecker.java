@@ -0,0 +1,78 @@
+package me.darknet.assembler.compiler;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inheritance checker remembering the answers of another checker, so compilations sharing it only resolve the
+ * hierarchy of a pair of types once. The cache is thread safe, the wrapped checker must be as well when the cache is
+ * used by multiple threads. Lookups which fail with an exception are not cached.
+ * <p>
+ * Once a table holds {@link #MAX_SIZE} pairs, new pairs are no longer added and are asked from the wrapped checker on
+ * every lookup.
+ */
+public class CachedInheritanceChecker implements InheritanceChecker {
+
+    /**
+     * Maximum amount of pairs held by each table of the cache.
+     */
+    public static final int MAX_SIZE = 1 << 16;
+
+    private final InheritanceChecker delegate;
+    private final Map<Key, Boolean> subclasses = new ConcurrentHashMap<>();
+    private final Map<Key, String> superclasses = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate
+     *                 the checker to ask for types which are not cached yet
+     */
+    public CachedInheritanceChecker(@NotNull InheritanceChecker delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return the checker to ask for types which are not cached yet.
+     */
+    public @NotNull InheritanceChecker getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public boolean isSubclassOf(String child, String parent) {
+        // not computed under the lock of the map, resolving a type can take long
+        Key key = new Key(child, parent);
+        Boolean subclass = subclasses.get(key);
+        if (subclass == null) {
+            subclass = delegate.isSubclassOf(child, parent);
+            if (subclasses.size() < MAX_SIZE)
+                subclasses.putIfAbsent(key, subclass);
+        }
+        return subclass;
+    }
+
+    @Override
+    public String getCommonSuperclass(String type1, String type2) {
+        Key key = new Key(type1, type2);
+        String superclass = superclasses.get(key);
+        if (superclass == null) {
+            // the delegate may answer null, which is not cached
+            superclass = delegate.getCommonSuperclass(type1, type2);
+            if (superclass != null && superclasses.size() < MAX_SIZE)
+                superclasses.putIfAbsent(key, superclass);
+        }
+        return superclass;
+    }
+
+    /**
+     * Forget all answers, for when the types known to the wrapped checker change.
+     */
+    public void clear() {
+        subclasses.clear();
+        superclasses.clear();
+    }
+
+    private record Key(String first, String second) {
+    }
+}
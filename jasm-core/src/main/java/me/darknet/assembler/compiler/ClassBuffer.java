@@ -0,0 +1,118 @@
+package me.darknet.assembler.compiler;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Growable buffer of class bytes, to be {@link #reset() reset} and reused for class after class. Unlike a
+ * {@link java.io.ByteArrayOutputStream} its contents can be viewed without copying them, see {@link #asByteBuffer()}.
+ * It is both a {@link ClassOutput} and an {@link OutputStream}, so it takes classes from representations as well as
+ * from libraries writing to streams.
+ * <p>
+ * A buffer is not thread safe.
+ */
+public class ClassBuffer extends OutputStream implements ClassOutput {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] buffer;
+    private int size;
+
+    /**
+     * Buffer which allocates on its first write, with the exact size of that write.
+     */
+    public ClassBuffer() {
+        this.buffer = EMPTY;
+    }
+
+    /**
+     * @param capacity
+     *                 the initial capacity of the buffer
+     */
+    public ClassBuffer(int capacity) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + capacity);
+        this.buffer = capacity == 0 ? EMPTY : new byte[capacity];
+    }
+
+    @Override
+    public void write(@NotNull ByteBuffer bytes) {
+        int length = bytes.remaining();
+        ensureCapacity(length);
+        bytes.get(buffer, size, length);
+        size += length;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte @NotNull [] bytes, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+    }
+
+    /**
+     * @return the amount of bytes in the buffer.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empty the buffer, keeping its capacity for the next class.
+     */
+    public void reset() {
+        size = 0;
+    }
+
+    /**
+     * @return read-only view of the bytes in the buffer. The view sees the contents of the buffer until it is reset
+     *         or grows.
+     */
+    public @NotNull ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(buffer, 0, size).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the bytes in the buffer.
+     */
+    public byte @NotNull [] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Take the bytes out of the buffer, leaving it empty. When the buffer is filled up exactly, as after a single write
+     * into a buffer without initial capacity, its array is handed out as it is instead of being copied.
+     *
+     * @return the bytes which were in the buffer.
+     */
+    public byte @NotNull [] detach() {
+        byte[] bytes = size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+        buffer = EMPTY;
+        size = 0;
+        return bytes;
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = size + additional;
+        if (required < 0)
+            throw new OutOfMemoryError("Class is too large");
+        if (required <= buffer.length)
+            return;
+        // grow exactly for the first write, so a class written at once fills the buffer
+        int capacity = buffer.length == 0 ? required : Math.max(required, buffer.length << 1);
+        if (capacity < 0)
+            capacity = required;
+        buffer = Arrays.copyOf(buffer, capacity);
+    }
+}
@@ -0,0 +1,82 @@
+package me.darknet.assembler.compiler;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Destination of the bytes of compiled classes, see {@link ClassRepresentation#writeTo(ClassOutput)}. Sinks take the
+ * bytes from a buffer, so classes are written where they go without being copied into intermediate arrays first.
+ */
+@FunctionalInterface
+public interface ClassOutput {
+
+    /**
+     * @param bytes
+     *              the bytes of a class, from its position to its limit. The position is advanced past the written
+     *              bytes.
+     *
+     * @throws IOException
+     *                     when the bytes cannot be written
+     */
+    void write(@NotNull ByteBuffer bytes) throws IOException;
+
+    /**
+     * @param target
+     *               the buffer to put the bytes into, at its position
+     *
+     * @return output into the buffer. Writing more bytes than remain in the buffer fails with an
+     *         {@link IOException} and leaves the buffer unchanged.
+     */
+    static @NotNull ClassOutput of(@NotNull ByteBuffer target) {
+        return bytes -> {
+            try {
+                target.put(bytes);
+            } catch (BufferOverflowException e) {
+                throw new IOException("Buffer has " + target.remaining() + " bytes left, the class has "
+                        + bytes.remaining(), e);
+            }
+        };
+    }
+
+    /**
+     * @param channel
+     *                the channel to write the bytes to
+     *
+     * @return output into the channel.
+     */
+    static @NotNull ClassOutput of(@NotNull WritableByteChannel channel) {
+        return bytes -> {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        };
+    }
+
+    /**
+     * @param stream
+     *               the stream to write the bytes to, such as the entry of a jar
+     *
+     * @return output into the stream. Bytes backed by an array are written from that array as they are.
+     */
+    static @NotNull ClassOutput of(@NotNull OutputStream stream) {
+        return bytes -> {
+            if (bytes.hasArray()) {
+                stream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                bytes.position(bytes.limit());
+                return;
+            }
+            // read-only and direct buffers do not expose their array
+            byte[] chunk = new byte[Math.min(bytes.remaining(), 8192)];
+            while (bytes.hasRemaining()) {
+                int length = Math.min(bytes.remaining(), chunk.length);
+                bytes.get(chunk, 0, length);
+                stream.write(chunk, 0, length);
+            }
+        };
+    }
+}
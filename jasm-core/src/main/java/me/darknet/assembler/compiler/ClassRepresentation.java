@@ -1,7 +1,36 @@
 package me.darknet.assembler.compiler;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * A representation of a class
  */
 public interface ClassRepresentation {
+
+    /**
+     * @return Read-only view of the bytes of the class, or {@code null} if the representation has no binary form.
+     */
+    default @Nullable ByteBuffer asByteBuffer() {
+        return null;
+    }
+
+    /**
+     * Write the bytes of the class to a sink, without copying them first.
+     *
+     * @param output
+     *               The sink to write to
+     *
+     * @throws IOException
+     *                     When the sink fails, or the representation has no binary form
+     */
+    default void writeTo(@NotNull ClassOutput output) throws IOException {
+        ByteBuffer bytes = asByteBuffer();
+        if (bytes == null)
+            throw new IOException(getClass().getSimpleName() + " has no binary form");
+        output.write(bytes);
+    }
 }
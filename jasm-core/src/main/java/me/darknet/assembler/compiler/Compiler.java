@@ -4,6 +4,7 @@
 import me.darknet.assembler.error.Result;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
 import java.util.List;
 
 public interface Compiler {
@@ -18,4 +19,32 @@ public interface Compiler {
      */
     @NotNull
     Result<? extends ClassResult> compile(List<ASTElement> ast, CompilerOptions<?> options);
+
+    /**
+     * Compile the given AST and write the class to a sink, see {@link ClassRepresentation#writeTo(ClassOutput)}.
+     * Nothing is written if the compilation fails.
+     *
+     * @param ast
+     *               The AST to compile
+     * @param options
+     *               The options of the compilation
+     * @param output
+     *               The sink to write the class to
+     *
+     * @return The result of the compilation process
+     *
+     * @throws IOException
+     *                     When the class cannot be written to the sink
+     */
+    @NotNull
+    default Result<? extends ClassResult> compile(List<ASTElement> ast, CompilerOptions<?> options,
+            @NotNull ClassOutput output) throws IOException {
+        Result<? extends ClassResult> result = compile(ast, options);
+        if (!result.hasErr() && result.get() != null) {
+            ClassRepresentation representation = result.get().representation();
+            if (representation != null)
+                representation.writeTo(output);
+        }
+        return result;
+    }
 }
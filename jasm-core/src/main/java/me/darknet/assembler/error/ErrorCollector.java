@@ -1,6 +1,7 @@
 package me.darknet.assembler.error;
 
 import me.darknet.assembler.util.Location;
+import me.darknet.assembler.util.Position;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -39,8 +40,23 @@ public void addWarnings(Collection<Warn> warns) {
     }
 
     public void removeAt(Location location) {
-        errors.removeIf(e -> e.getLocation().line() == location.line());
-        warns.removeIf(e -> e.getLocation().line() == location.line());
+        removeAtLine(location.line());
+    }
+
+    /**
+     * Remove the errors and warnings on the line of a position.
+     *
+     * @param position
+     *                 the packed position, see {@link Position}
+     */
+    public void removeAt(long position) {
+        if (Position.isKnown(position))
+            removeAtLine(Position.line(position));
+    }
+
+    private void removeAtLine(int line) {
+        errors.removeIf(e -> e.getLocation().line() == line);
+        warns.removeIf(e -> e.getLocation().line() == line);
     }
 
     public boolean hasErr() {
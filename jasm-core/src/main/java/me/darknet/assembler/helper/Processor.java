@@ -2,11 +2,19 @@
 
 import me.darknet.assembler.ast.ASTElement;
 import me.darknet.assembler.error.Error;
+import me.darknet.assembler.error.Result;
+import me.darknet.assembler.error.Warn;
 import me.darknet.assembler.parser.BytecodeFormat;
 import me.darknet.assembler.parser.DeclarationParser;
+import me.darknet.assembler.parser.ParsingResult;
+import me.darknet.assembler.parser.Token;
 import me.darknet.assembler.parser.Tokenizer;
 import me.darknet.assembler.parser.processor.ASTProcessor;
+import me.darknet.assembler.transformer.Transformer;
+import me.darknet.assembler.visitor.ASTRootVisitor;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -24,4 +32,41 @@ public static void processSource(String code, String source, Consumer<List<ASTEl
         processSource(code, source, consumer, (unused, errors) -> error.accept(errors), format);
     }
 
+    /**
+     * Assemble a source straight into a visitor, for pipelines which only want the output of the visitor. Code
+     * blocks are only delimited while parsing, and each is parsed, verified and visited one instruction at a time
+     * while transforming, so the instructions of a method never exist as a list and are only alive while the method
+     * is visited.
+     *
+     * @param code
+     *               the source text
+     * @param source
+     *               the name of the source
+     * @param visitor
+     *               the visitor to pass the declarations to
+     * @param format
+     *               the bytecode format
+     *
+     * @return the errors and warnings of every stage. The visitor is not called when the declarations have errors,
+     *         and has seen incomplete code when the code has errors.
+     *
+     * @see Transformer#Transformer(ASTRootVisitor, boolean)
+     */
+    public static Result<Void> transformSource(String code, String source, ASTRootVisitor visitor,
+            BytecodeFormat format) {
+        Result<List<Token>> tokens = new Tokenizer().tokenize(source, code);
+        if (tokens.hasErr())
+            return new Result<>(null, tokens.errors(), tokens.getWarns());
+        ParsingResult<List<ASTElement>> declarations = new DeclarationParser(true).parseDeclarations(tokens.get());
+        if (declarations.hasErr())
+            return new Result<>(null, declarations.errors(), Collections.emptyList());
+        Result<List<ASTElement>> processed = new ASTProcessor(format).processAST(declarations.get());
+        if (processed.hasErr())
+            return new Result<>(null, processed.errors(), processed.getWarns());
+        Result<Void> result = new Transformer(visitor, true).transform(processed.get());
+        List<Warn> warns = new ArrayList<>(processed.getWarns());
+        warns.addAll(result.getWarns());
+        return new Result<>(null, result.errors(), warns);
+    }
+
 }
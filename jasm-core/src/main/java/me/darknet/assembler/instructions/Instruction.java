@@ -7,16 +7,71 @@
 
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
 import java.util.function.BiConsumer;
 
 public class Instruction<V extends ASTInstructionVisitor> {
 
     final Operand[] operands;
     final BiConsumer<ASTInstruction, V> translator;
+    private final int id;
+    private final String name;
+    private final boolean intrinsic;
 
     public Instruction(Operand[] operands, BiConsumer<ASTInstruction, V> translator) {
+        this(-1, null, operands, translator, false);
+    }
+
+    /**
+     * @param id
+     *                   the index of the instruction in its instruction set
+     * @param name
+     *                   the mnemonic of the instruction
+     * @param operands
+     *                   the operands of the instruction
+     * @param translator
+     *                   passes the instruction to a visitor
+     * @param intrinsic
+     *                   whether the instruction is an intrinsic of the assembler, which is not visited as an
+     *                   instruction of the format
+     */
+    public Instruction(int id, String name, Operand[] operands, BiConsumer<ASTInstruction, V> translator,
+            boolean intrinsic) {
+        this.id = id;
+        this.name = name;
         this.operands = operands;
         this.translator = translator;
+        this.intrinsic = intrinsic;
+    }
+
+    /**
+     * @return the index of the instruction in its instruction set, or {@code -1} if it is not part of one.
+     *
+     * @see Instructions#get(int)
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * @return the mnemonic of the instruction, or {@code null} if it is not part of an instruction set.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return {@code true} if the instruction is an intrinsic of the assembler, like line numbers.
+     */
+    public boolean isIntrinsic() {
+        return intrinsic;
+    }
+
+    /**
+     * @return the operands of the instruction, in the order of its arguments.
+     */
+    public List<Operand> operands() {
+        return List.of(operands);
     }
 
     public void verify(ASTInstruction instruction, ASTProcessor.ParserContext context) {
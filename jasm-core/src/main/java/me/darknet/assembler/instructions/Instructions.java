@@ -3,15 +3,19 @@
 import me.darknet.assembler.ast.primitive.ASTInstruction;
 import me.darknet.assembler.visitor.ASTInstructionVisitor;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
 
 public abstract class Instructions<V extends ASTInstructionVisitor> {
 
     private final Map<String, Instruction<V>> instructions = new HashMap<>();
+    private final List<Instruction<V>> ids = new ArrayList<>();
     protected BiConsumer<ASTInstruction, V> defaultTranslator;
 
     public Instructions() {
@@ -32,7 +36,21 @@ protected static Operand[] ops(Operands... operands) {
     protected abstract void registerInstructions();
 
     public void register(String name, Operand[] operands, BiConsumer<ASTInstruction, V> translator) {
-        instructions.put(name, new Instruction<>(operands, translator));
+        register(name, operands, translator, false);
+    }
+
+    /**
+     * Register an intrinsic of the assembler, which is passed to its translator but not visited as an instruction.
+     */
+    public void registerIntrinsic(String name, Operand[] operands, BiConsumer<ASTInstruction, V> translator) {
+        register(name, operands, translator, true);
+    }
+
+    private void register(String name, Operand[] operands, BiConsumer<ASTInstruction, V> translator,
+            boolean intrinsic) {
+        Instruction<V> instruction = new Instruction<>(ids.size(), name, operands, translator, intrinsic);
+        ids.add(instruction);
+        instructions.put(name, instruction);
     }
 
     public void register(String name, BiConsumer<ASTInstruction, V> translator) {
@@ -54,4 +72,21 @@ public void register(String... names) {
         return instructions.get(name);
     }
 
+    /**
+     * @param id
+     *           the id of the instruction, see {@link Instruction#id()}
+     *
+     * @return the instruction with the given id.
+     */
+    public @NotNull Instruction<V> get(int id) {
+        return ids.get(id);
+    }
+
+    /**
+     * @return the amount of ids assigned to instructions, ids range from {@code 0} up to this amount.
+     */
+    public int size() {
+        return ids.size();
+    }
+
 }
@@ -42,7 +42,7 @@ public enum DalvikOperands implements Operands {
         // register array can be: register or array
         ASTArray array = context.validateEmptyableElement(element, ElementType.ARRAY, "register array", element);
         for (ASTElement value : array.values()) {
-            if (context.isNull(value, "register array element", array.location()))
+            if (context.isNull(value, "register array element", array))
                 return;
             assert value != null;
             if(value.type() != ElementType.NUMBER || value.type() != ElementType.IDENTIFIER)
@@ -53,7 +53,7 @@ public enum DalvikOperands implements Operands {
         // data array can be: number or array
         ASTArray array = context.validateEmptyableElement(element, ElementType.ARRAY, "data array", element);
         for (ASTElement value : array.values()) {
-            if (context.isNull(value, "data array element", array.location()))
+            if (context.isNull(value, "data array element", array))
                 return;
             assert value != null;
             if(value.type() != ElementType.NUMBER)
@@ -110,7 +110,7 @@ protected void registerInstructions() {
         );
 
         // intrinsics
-        register(
+        registerIntrinsic(
                 "line", ops(DefaultOperands.INTEGER),
                 (inst, visitor) -> visitor
                         .visitLineNumber(inst.argument(0, ASTNumber.class))
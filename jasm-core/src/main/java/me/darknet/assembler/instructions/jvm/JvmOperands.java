@@ -72,7 +72,7 @@ public enum JvmOperands implements Operands {
     ARGS((context, element) -> {
         ASTArray array = context.validateEmptyableElement(element, ElementType.ARRAY, "args", element);
         for (ASTElement value : array.values()) {
-            if (context.isNull(value, "args element", array.location()))
+            if (context.isNull(value, "args element", array))
                 return;
             assert value != null;
             JvmOperands.verifyConstant(context, value);
@@ -197,7 +197,7 @@ public static void verifyConstantDynamic(ASTProcessor.ParserContext context, AST
 
         ASTArray args = context.validateEmptyableElement(argsElement, ElementType.ARRAY, "args", array);
         for (ASTElement value : args.values()) {
-            if (context.isNull(value, "args element", args.location()))
+            if (context.isNull(value, "args element", args))
                 return;
             assert value != null;
             verifyConstant(context, value);
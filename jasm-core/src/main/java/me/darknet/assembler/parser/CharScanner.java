@@ -0,0 +1,93 @@
+package me.darknet.assembler.parser;
+
+/**
+ * Finds the end of runs of characters which the {@link Tokenizer} can consume in bulk, instead of stepping through
+ * them one character at a time. Every method returns the index of the first character in {@code [from, to)} which
+ * ends the run, or {@code to} when the run reaches the end of the range.
+ * <p>
+ * This is the scalar implementation, when the {@code jdk.incubator.vector} module is present {@link #get()} returns a
+ * vectorized implementation instead.
+ */
+class CharScanner {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_SCANNER = "me.darknet.assembler.parser.VectorCharScanner";
+
+    /**
+     * @return the fastest scanner available in the running VM.
+     */
+    static CharScanner get() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                // only referenced reflectively, it cannot be loaded without the incubator module
+                return (CharScanner) Class.forName(VECTOR_SCANNER).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // fall through to the scalar scanner
+            }
+        }
+        return new CharScanner();
+    }
+
+    /**
+     * Run ended by a newline, the content of a line comment.
+     */
+    int lineEnd(char[] input, int from, int to) {
+        int i = from;
+        while (i < to && input[i] != '\n')
+            i++;
+        return i;
+    }
+
+    /**
+     * Run ended by a newline or {@code *}, the content of a multi-line comment.
+     */
+    int commentEnd(char[] input, int from, int to) {
+        int i = from;
+        for (; i < to; i++) {
+            char c = input[i];
+            if (c == '\n' || c == '*')
+                break;
+        }
+        return i;
+    }
+
+    /**
+     * Run ended by a newline, backslash or the given quote, the content of a string or character literal.
+     */
+    int literalEnd(char[] input, int from, int to, char quote) {
+        int i = from;
+        for (; i < to; i++) {
+            char c = input[i];
+            if (c == '\n' || c == '\\' || c == quote)
+                break;
+        }
+        return i;
+    }
+
+    /**
+     * Run of spaces, tabs and carriage returns.
+     */
+    int blankEnd(char[] input, int from, int to) {
+        int i = from;
+        for (; i < to; i++) {
+            char c = input[i];
+            if (c != ' ' && c != '\t' && c != '\r')
+                break;
+        }
+        return i;
+    }
+
+    /**
+     * Run of plain identifier characters. Ended by any control or space character, operators, quotes, {@code /} and
+     * non-ASCII characters, which the tokenizer all inspects on its own.
+     */
+    int identifierEnd(char[] input, int from, int to) {
+        int i = from;
+        for (; i < to; i++) {
+            char c = input[i];
+            if (c <= ' ' || c >= 0x7F || Tokenizer.isOperator(c) || c == '/' || c == '"' || c == '\'')
+                break;
+        }
+        return i;
+    }
+}
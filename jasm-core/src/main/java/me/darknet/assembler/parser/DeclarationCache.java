@@ -0,0 +1,653 @@
+package me.darknet.assembler.parser;
+
+import me.darknet.assembler.ast.ASTElement;
+import me.darknet.assembler.ast.primitive.*;
+import me.darknet.assembler.error.Error;
+import me.darknet.assembler.error.Result;
+import me.darknet.assembler.util.ElementMap;
+import me.darknet.assembler.util.Pair;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Binary cache of parsed declarations. An entry holds the token streams of a source, with their interned contents
+ * and packed positions, the declaration tree built from them and the comments. Reading an entry rebuilds the tokens
+ * and declarations without tokenizing or parsing the source again, the result is the same as the one of
+ * {@link DeclarationParser#parseDeclarations(Tokenizer, String, String)} and can be passed on to the processor.
+ * <p>
+ * Entries are stored in a directory, keyed by a hash of the source text and the bytecode format. Only results
+ * without errors are cached.
+ */
+public class DeclarationCache {
+
+    private static final int MAGIC = 0x4A41534D;
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".jasmc";
+
+    private static final byte NULL = 0;
+    private static final byte IDENTIFIER = 1;
+    private static final byte NUMBER = 2;
+    private static final byte STRING = 3;
+    private static final byte CHARACTER = 4;
+    private static final byte BOOL = 5;
+    private static final byte EMPTY = 6;
+    private static final byte ARRAY = 7;
+    private static final byte OBJECT = 8;
+    private static final byte DECLARATION = 9;
+    private static final byte CODE = 10;
+    private static final byte INSTRUCTION = 11;
+    private static final byte LABEL = 12;
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final Path directory;
+    private final BytecodeFormat format;
+    private final Tokenizer tokenizer;
+    private final DeclarationParser parser;
+
+    /**
+     * @param directory
+     *                  the directory holding the cache entries, created when the first entry is stored
+     * @param format
+     *                  the bytecode format the sources are processed for
+     */
+    public DeclarationCache(@NotNull Path directory, @NotNull BytecodeFormat format) {
+        this(directory, format, new Tokenizer(), new DeclarationParser());
+    }
+
+    /**
+     * @param directory
+     *                  the directory holding the cache entries, created when the first entry is stored
+     * @param format
+     *                  the bytecode format the sources are processed for
+     * @param tokenizer
+     *                  tokenizes sources which are not cached, for example one interning into a shared pool
+     * @param parser
+     *                  parses sources which are not cached, for example one leaving code to be parsed lazily
+     */
+    public DeclarationCache(@NotNull Path directory, @NotNull BytecodeFormat format, @NotNull Tokenizer tokenizer,
+            @NotNull DeclarationParser parser) {
+        this.directory = directory;
+        this.format = format;
+        this.tokenizer = tokenizer;
+        this.parser = parser;
+    }
+
+    /**
+     * Parse the declarations of a source, or read them from the cache when it was parsed before.
+     *
+     * @param source
+     *               the name of the source
+     * @param input
+     *               the input to parse
+     *
+     * @return {@link ParsingResult} of the parsing
+     */
+    public ParsingResult<List<@Nullable ASTElement>> parse(@NotNull String source, @NotNull String input) {
+        ParsingResult<List<@Nullable ASTElement>> cached = load(source, input);
+        if (cached != null)
+            return cached;
+        ParsingResult<List<@Nullable ASTElement>> result = parser.parseDeclarations(tokenizer, source, input);
+        store(input, result);
+        return result;
+    }
+
+    /**
+     * @param source
+     *               the name of the source
+     * @param input
+     *               the input the entry was stored for
+     *
+     * @return the cached declarations, or {@code null} if there is no usable entry for the input.
+     */
+    public @Nullable ParsingResult<List<@Nullable ASTElement>> load(@NotNull String source, @NotNull String input) {
+        Path path = directory.resolve(key(input, format) + EXTENSION);
+        if (!Files.isRegularFile(path))
+            return null;
+        try {
+            return read(new ByteArrayInputStream(Files.readAllBytes(path)), source, input);
+        } catch (IOException | RuntimeException e) {
+            // unreadable entries are parsed again and replaced
+            return null;
+        }
+    }
+
+    /**
+     * @param input
+     *               the input the declarations were parsed from
+     * @param result
+     *               the parsed declarations
+     *
+     * @return {@code true} if the declarations were stored, {@code false} if they have errors, were not parsed from
+     *         the input, or the entry could not be written.
+     */
+    public boolean store(@NotNull String input, @NotNull ParsingResult<List<@Nullable ASTElement>> result) {
+        if (result.hasErr())
+            return false;
+        Path path = directory.resolve(key(input, format) + EXTENSION);
+        Path temporary = null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(bytes, input, result);
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, null, EXTENSION);
+            Files.write(temporary, bytes.toByteArray());
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // the entry is incomplete either way
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param input
+     *               the source text
+     * @param format
+     *               the bytecode format
+     *
+     * @return the key of the cache entry of the source, a hex encoded hash of the text and format.
+     */
+    public static @NotNull String key(@NotNull String input, @NotNull BytecodeFormat format) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(format.name().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(input.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Write parsed declarations.
+     *
+     * @param out
+     *               the stream to write to
+     * @param input
+     *               the input the declarations were parsed from
+     * @param result
+     *               the parsed declarations
+     *
+     * @throws IllegalArgumentException
+     *                                  if the declarations contain elements which are not produced by the parser, or
+     *                                  tokens which were not read from the input
+     */
+    public static void write(@NotNull OutputStream out, @NotNull String input,
+            @NotNull ParsingResult<List<@Nullable ASTElement>> result) throws IOException {
+        EntryWriter writer = new EntryWriter(input.length());
+        writer.varint(result.get().size());
+        for (ASTElement element : result.get()) {
+            writer.element(element);
+        }
+        writer.varint(result.comments().size());
+        for (ASTComment comment : result.comments()) {
+            writer.token(comment.value());
+        }
+        writer.writeTo(out);
+    }
+
+    /**
+     * Read parsed declarations.
+     *
+     * @param in
+     *               the stream to read from
+     * @param source
+     *               the name of the source
+     * @param input
+     *               the input the declarations were parsed from
+     *
+     * @return the declarations, tokens are views of streams over the input. Code blocks are decoded when their
+     *         instructions are first accessed, like code parsed lazily by {@link DeclarationParser}.
+     *
+     * @throws IOException
+     *                     if the data is not a cache entry of the input
+     */
+    public static @NotNull ParsingResult<List<@Nullable ASTElement>> read(@NotNull InputStream in,
+            @NotNull String source, @NotNull String input) throws IOException {
+        EntryReader reader = new EntryReader(in.readAllBytes(), source, input.toCharArray());
+        try {
+            reader.readHeader();
+            reader.readStreams();
+            int count = reader.varint();
+            List<@Nullable ASTElement> declarations = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                declarations.add(reader.element());
+            }
+            int commentCount = reader.varint();
+            List<ASTComment> comments = new ArrayList<>(commentCount);
+            for (int i = 0; i < commentCount; i++) {
+                comments.add(new ASTComment(reader.token()));
+            }
+            return new ParsingResult<>(declarations, Collections.emptyList(), comments);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated declaration cache entry", e);
+        }
+    }
+
+    /**
+     * Entries consist of a header, the table of token contents which are not slices of the input, the token streams
+     * and the element tree. Tokens are stored relative to the token before them, elements refer to tokens by their
+     * index in all streams, relative to the previously referenced token.
+     */
+    private static final class EntryWriter {
+
+        private final int length;
+        private final Map<TokenStream, Integer> streamBases = new IdentityHashMap<>();
+        private final List<TokenStream> streams = new ArrayList<>();
+        private ByteArrayOutputStream tree = new ByteArrayOutputStream();
+        private int tokenCount;
+        private int lastToken;
+
+        private EntryWriter(int length) {
+            this.length = length;
+        }
+
+        void element(@Nullable ASTElement element) {
+            if (element == null) {
+                tree.write(NULL);
+                return;
+            }
+            // exact classes, the parser does not create subclasses of its own elements
+            Class<?> type = element.getClass();
+            if (type == ASTIdentifier.class) {
+                leaf(IDENTIFIER, element);
+            } else if (type == ASTNumber.class) {
+                leaf(NUMBER, element);
+            } else if (type == ASTString.class) {
+                leaf(STRING, element);
+            } else if (type == ASTCharacter.class) {
+                leaf(CHARACTER, element);
+            } else if (type == ASTBool.class) {
+                leaf(BOOL, element);
+            } else if (type == ASTEmpty.class) {
+                leaf(EMPTY, element);
+            } else if (type == ASTArray.class) {
+                tree.write(ARRAY);
+                elements(((ASTArray) element).values());
+            } else if (type == ASTObject.class) {
+                ElementMap<ASTIdentifier, ASTElement> values = ((ASTObject) element).values();
+                tree.write(OBJECT);
+                varint(values.size());
+                for (Pair<ASTIdentifier, ASTElement> pair : values.pairs()) {
+                    token(pair.first().value());
+                    element(pair.second());
+                }
+            } else if (type == ASTDeclaration.class) {
+                ASTDeclaration declaration = (ASTDeclaration) element;
+                tree.write(DECLARATION);
+                element(declaration.keyword());
+                elements(declaration.elements());
+            } else if (type == ASTCode.class) {
+                ASTCode code = (ASTCode) element;
+                if (!code.errors().isEmpty())
+                    throw new IllegalArgumentException("Code with errors");
+                tree.write(CODE);
+                code(code.instructions());
+            } else if (type == ASTInstruction.class) {
+                ASTInstruction instruction = (ASTInstruction) element;
+                tree.write(INSTRUCTION);
+                token(instruction.identifier().value());
+                elements(instruction.arguments());
+            } else if (type == ASTLabel.class) {
+                tree.write(LABEL);
+                token(((ASTLabel) element).identifier().value());
+            } else {
+                throw new IllegalArgumentException("Unexpected element " + type.getSimpleName());
+            }
+        }
+
+        private void code(List<ASTInstruction> instructions) {
+            if (instructions.isEmpty()) {
+                varint(0);
+                return;
+            }
+            // the body is written ahead of its length so that readers can skip it and decode it on first access,
+            // its token references are relative to the first token of the code
+            Token first = instructions.get(0).identifier().value();
+            ByteArrayOutputStream outer = tree;
+            tree = new ByteArrayOutputStream();
+            int previous = lastToken;
+            token(first);
+            tree.reset();
+            elements(instructions);
+            byte[] body = tree.toByteArray();
+            tree = outer;
+            lastToken = previous;
+            varint(body.length);
+            token(first);
+            tree.writeBytes(body);
+        }
+
+        private void elements(List<? extends @Nullable ASTElement> elements) {
+            varint(elements.size());
+            for (ASTElement element : elements) {
+                element(element);
+            }
+        }
+
+        private void leaf(byte kind, ASTElement element) {
+            tree.write(kind);
+            token(element.value());
+        }
+
+        void token(@Nullable Token token) {
+            TokenStream stream = token == null ? null : token.stream();
+            if (stream == null || stream.input().length != length)
+                throw new IllegalArgumentException("Token not read from the input");
+            Integer base = streamBases.get(stream);
+            if (base == null) {
+                base = tokenCount;
+                streamBases.put(stream, base);
+                streams.add(stream);
+                tokenCount += stream.size();
+            }
+            int index = base + token.index();
+            writeVarint(tree, zigzag(index - lastToken));
+            lastToken = index;
+        }
+
+        void varint(int value) {
+            writeVarint(tree, value);
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            ByteArrayOutputStream data = new ByteArrayOutputStream(tree.size() + tokenCount * 6 + 64);
+            data.write(MAGIC >>> 24);
+            data.write(MAGIC >>> 16);
+            data.write(MAGIC >>> 8);
+            data.write(MAGIC);
+            data.write(VERSION);
+            writeVarint(data, length);
+
+            // contents which are not slices of the input are written once
+            Map<String, Integer> strings = new HashMap<>();
+            List<String> stringList = new ArrayList<>();
+            for (TokenStream stream : streams) {
+                for (int i = 0; i < stream.size(); i++) {
+                    String content = stream.storedContent(i);
+                    if (content != null && strings.putIfAbsent(content, stringList.size()) == null)
+                        stringList.add(content);
+                }
+            }
+            writeVarint(data, stringList.size());
+            for (String string : stringList) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                writeVarint(data, bytes.length);
+                data.write(bytes);
+            }
+
+            writeVarint(data, streams.size());
+            for (TokenStream stream : streams) {
+                int size = stream.size();
+                writeVarint(data, size);
+                int previousEnd = 0;
+                int previousStart = 0;
+                int previousLine = 0;
+                int previousColumn = 1;
+                for (int i = 0; i < size; i++) {
+                    TokenType type = stream.type(i);
+                    int start = stream.start(i);
+                    int end = stream.end(i);
+                    int line = stream.line(i);
+                    int column = stream.column(i);
+                    // on the same line the column usually moves along with the offset
+                    int predicted = line == previousLine ? previousColumn + start - previousStart : 1;
+                    data.write(type.ordinal());
+                    writeVarint(data, zigzag(start - previousEnd));
+                    writeVarint(data, end - start);
+                    writeVarint(data, line - previousLine);
+                    writeVarint(data, zigzag(column - predicted));
+                    if (type == TokenType.NUMBER) {
+                        data.write(stream.numberKind(i));
+                        writeVarlong(data, stream.numberBits(i));
+                    } else {
+                        String content = stream.storedContent(i);
+                        writeVarint(data, content == null ? 0 : strings.get(content) + 1);
+                    }
+                    previousEnd = end;
+                    previousStart = start;
+                    previousLine = line;
+                    previousColumn = column;
+                }
+            }
+            tree.writeTo(data);
+            data.writeTo(out);
+        }
+    }
+
+    private static final class EntryReader {
+
+        private final byte[] data;
+        private final String source;
+        private final char[] input;
+        private int position;
+        private String[] strings;
+        private TokenStream[] streams;
+        private int[] streamBases;
+        private int lastToken;
+
+        private EntryReader(byte[] data, String source, char[] input) {
+            this.data = data;
+            this.source = source;
+            this.input = input;
+        }
+
+        private EntryReader(EntryReader reader, int position, int lastToken) {
+            this(reader.data, reader.source, reader.input);
+            this.strings = reader.strings;
+            this.streams = reader.streams;
+            this.streamBases = reader.streamBases;
+            this.position = position;
+            this.lastToken = lastToken;
+        }
+
+        void readHeader() throws IOException {
+            int magic = (u8() << 24) | (u8() << 16) | (u8() << 8) | u8();
+            if (magic != MAGIC || u8() != VERSION || varint() != input.length)
+                throw new IOException("Not a declaration cache entry of the input");
+            strings = new String[varint()];
+            for (int i = 0; i < strings.length; i++) {
+                int length = varint();
+                strings[i] = new String(data, position, length, StandardCharsets.UTF_8);
+                position += length;
+            }
+        }
+
+        void readStreams() throws IOException {
+            streams = new TokenStream[varint()];
+            streamBases = new int[streams.length];
+            int base = 0;
+            for (int s = 0; s < streams.length; s++) {
+                int size = varint();
+                TokenStream stream = new TokenStream(source, input, Math.max(1, size), null);
+                int previousEnd = 0;
+                int previousStart = 0;
+                int previousLine = 0;
+                int previousColumn = 1;
+                for (int i = 0; i < size; i++) {
+                    int typeIndex = u8();
+                    if (typeIndex >= TYPES.length)
+                        throw new IOException("Invalid token type " + typeIndex);
+                    TokenType type = TYPES[typeIndex];
+                    int start = previousEnd + unzigzag(varint());
+                    int end = start + varint();
+                    int line = previousLine + varint();
+                    int predicted = line == previousLine ? previousColumn + start - previousStart : 1;
+                    int column = predicted + unzigzag(varint());
+                    if (start < 0 || end > input.length)
+                        throw new IOException("Token outside of the input");
+                    if (type == TokenType.NUMBER) {
+                        byte kind = (byte) u8();
+                        stream.addNumber(start, end, line, column, kind, varlong());
+                    } else {
+                        int content = varint();
+                        stream.add(type, start, end, line, column, content == 0 ? null : strings[content - 1]);
+                    }
+                    previousEnd = end;
+                    previousStart = start;
+                    previousLine = line;
+                    previousColumn = column;
+                }
+                streams[s] = stream;
+                streamBases[s] = base;
+                base += size;
+            }
+        }
+
+        @Nullable
+        ASTElement element() throws IOException {
+            int kind = u8();
+            return switch (kind) {
+                case NULL -> null;
+                case IDENTIFIER -> new ASTIdentifier(token());
+                case NUMBER -> new ASTNumber(token());
+                case STRING -> new ASTString(token());
+                case CHARACTER -> new ASTCharacter(token());
+                case BOOL -> new ASTBool(token());
+                case EMPTY -> new ASTEmpty(token());
+                case ARRAY -> new ASTArray(elements());
+                case OBJECT -> {
+                    int size = varint();
+                    ElementMap<ASTIdentifier, ASTElement> values = new ElementMap<>();
+                    for (int i = 0; i < size; i++) {
+                        ASTIdentifier key = new ASTIdentifier(token());
+                        values.put(key, element());
+                    }
+                    yield new ASTObject(values);
+                }
+                case DECLARATION -> {
+                    ASTElement keyword = element();
+                    if (keyword != null && !(keyword instanceof ASTIdentifier))
+                        throw new IOException("Invalid declaration keyword");
+                    yield new ASTDeclaration((ASTIdentifier) keyword, elements());
+                }
+                case CODE -> {
+                    int length = varint();
+                    if (length == 0)
+                        yield new ASTCode(new ArrayList<>());
+                    Token first = token();
+                    int start = position;
+                    int last = lastToken;
+                    position += length;
+                    // every decode gets its own reader, the code may be accessed from several threads at once
+                    yield new ASTCode(first, () -> new EntryReader(this, start, last).code());
+                }
+                case INSTRUCTION -> {
+                    ASTIdentifier identifier = new ASTIdentifier(token());
+                    yield new ASTInstruction(identifier, elements());
+                }
+                case LABEL -> new ASTLabel(new ASTIdentifier(token()));
+                default -> throw new IOException("Invalid element kind " + kind);
+            };
+        }
+
+        private Result<List<@NotNull ASTInstruction>> code() {
+            try {
+                List<@Nullable ASTElement> elements = elements();
+                List<@NotNull ASTInstruction> instructions = new ArrayList<>(elements.size());
+                for (ASTElement element : elements) {
+                    if (!(element instanceof ASTInstruction instruction))
+                        throw new IOException("Invalid code instruction");
+                    instructions.add(instruction);
+                }
+                return new Result<>(instructions, Collections.emptyList(), Collections.emptyList());
+            } catch (IOException | IndexOutOfBoundsException e) {
+                Error error = new Error("Corrupt declaration cache entry: " + e.getMessage(), null);
+                return new Result<>(null, List.of(error), Collections.emptyList());
+            }
+        }
+
+        private List<@Nullable ASTElement> elements() throws IOException {
+            int size = varint();
+            List<@Nullable ASTElement> elements = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                elements.add(element());
+            }
+            return elements;
+        }
+
+        Token token() throws IOException {
+            int index = lastToken + unzigzag(varint());
+            lastToken = index;
+            int stream = Arrays.binarySearch(streamBases, index);
+            if (stream < 0)
+                stream = -stream - 2;
+            if (index < 0 || stream < 0 || index - streamBases[stream] >= streams[stream].size())
+                throw new IOException("Invalid token reference");
+            return streams[stream].get(index - streamBases[stream]);
+        }
+
+        private int u8() {
+            return data[position++] & 0xFF;
+        }
+
+        int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = u8();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private long varlong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = u8();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("Malformed varint");
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeVarlong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
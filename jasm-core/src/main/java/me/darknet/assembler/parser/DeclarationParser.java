@@ -5,27 +5,58 @@
 import me.darknet.assembler.ast.primitive.*;
 import me.darknet.assembler.error.Error;
 import me.darknet.assembler.error.ErrorCollector;
+import me.darknet.assembler.error.Result;
 import me.darknet.assembler.util.ElementMap;
 import me.darknet.assembler.util.Location;
-import me.darknet.assembler.util.Pair;
+import me.darknet.assembler.util.StringPool;
 
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 /**
  * Parser for parsing generic structures from tokens to ast elements.
+ * <p>
+ * Every parse runs on state of its own, a parser can be shared by any amount of threads.
  *
  * @see me.darknet.assembler.ast.primitive
  */
 public class DeclarationParser {
 
+    /**
+     * Minimum length of the chunks of an input which are tokenized and parsed in parallel.
+     */
+    private static final int PARALLEL_CHUNK_LENGTH = 16 * 1024;
+
+    private final boolean lazyCode;
+    /**
+     * State of the current parse, only set on the parsers created by {@link #worker(Collection)}.
+     */
     private ParserContext ctx;
 
+    public DeclarationParser() {
+        this(false);
+    }
+
+    /**
+     * @param lazyCode
+     *                 whether the instructions of code blocks are only parsed when they are first accessed, see
+     *                 {@link ASTCode#isParsed()}
+     */
+    public DeclarationParser(boolean lazyCode) {
+        this.lazyCode = lazyCode;
+    }
+
     /**
      * Parse all declarations from the given tokens, this will only try to parse
      * declarations. Result for this method will always be a list of
      * {@link ASTDeclaration} or null if parsing that element failed.
+     * <p>
+     * Tokens of a {@link TokenStream} are parsed from the stream directly, views of its tokens are only created for
+     * the tokens the elements hold.
      *
      * @param tokens
      *               the tokens to parse
@@ -36,19 +67,82 @@ public class DeclarationParser {
         if (tokens.isEmpty()) {
             return new ParsingResult<>(Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
         }
-        Pair<List<ASTComment>, Collection<Token>> filtered = filterComments(tokens);
-        this.ctx = new ParserContext(this, new ArrayList<>(filtered.second()));
+        DeclarationParser parser = worker(tokens);
         List<ASTElement> declarations = new ArrayList<>();
-        while (!this.ctx.done()) {
-            declarations.add(parseDeclaration());
+        while (!parser.ctx.done()) {
+            declarations.add(parser.parseDeclaration());
         }
-        return new ParsingResult<>(declarations, ctx.errorCollector.getErrors(), filtered.first());
+        return new ParsingResult<>(declarations, parser.ctx.errorCollector.getErrors(), parser.ctx.comments);
+    }
+
+    /**
+     * Tokenize and parse all declarations of the given input, in parallel when the input consists of multiple top
+     * level declarations. A pre-scan splits the input between top level declarations, and each chunk is tokenized
+     * and parsed on its own on the given pool. Tokens, declarations, errors and comments keep their source order and
+     * absolute locations, the result is the same as tokenizing the whole input and passing the tokens to
+     * {@link #parseDeclarations(Collection)}, with the errors of the tokenizer preceding the errors of the parser.
+     * <p>
+     * Inputs which the pre-scan cannot split, or chunks with errors, are processed sequentially.
+     *
+     * @param tokenizer
+     *                  the tokenizer to use. When it interns token contents, every chunk uses a pool of its own
+     * @param source
+     *                  the name of the source
+     * @param input
+     *                  the input to parse
+     * @param pool
+     *                  the pool to process the chunks on
+     *
+     * @return {@link ParsingResult} of the parsing
+     */
+    public ParsingResult<List<@Nullable ASTElement>> parseDeclarations(Tokenizer tokenizer, String source,
+            String input, ForkJoinPool pool) {
+        char[] chars = input.toCharArray();
+        List<DeclarationSplitter.Chunk> chunks = DeclarationSplitter.split(chars, PARALLEL_CHUNK_LENGTH);
+        if (chunks != null && chunks.size() > 1) {
+            boolean interning = tokenizer.getPool() != null;
+            List<ParsingResult<List<@Nullable ASTElement>>> results = pool.submit(() -> chunks.parallelStream()
+                    .map(chunk -> {
+                        StringPool strings = interning ? new StringPool() : null;
+                        TokenStream tokens = tokenizer.tokenize(source, chars, chunk, strings);
+                        if (!tokens.errors.isEmpty())
+                            return null;
+                        return new DeclarationParser(lazyCode).parseDeclarations(tokens);
+                    }).toList()).join();
+            List<ASTElement> declarations = new ArrayList<>();
+            List<ASTComment> comments = new ArrayList<>();
+            for (ParsingResult<List<@Nullable ASTElement>> result : results) {
+                if (result == null || result.hasErr()) {
+                    declarations = null;
+                    break;
+                }
+                declarations.addAll(result.get());
+                comments.addAll(result.comments());
+            }
+            if (declarations != null)
+                return new ParsingResult<>(declarations, Collections.emptyList(), comments);
+        }
+
+        // irregular input, or errors which may depend on the surrounding declarations
+        Result<List<Token>> tokens = tokenizer.tokenize(source, input);
+        ParsingResult<List<@Nullable ASTElement>> result = parseDeclarations(tokens.get());
+        if (tokens.errors().isEmpty())
+            return result;
+        List<Error> errors = new ArrayList<>(tokens.errors());
+        errors.addAll(result.errors());
+        return new ParsingResult<>(result.get(), errors, result.comments());
+    }
+
+    /**
+     * @see #parseDeclarations(Tokenizer, String, String, ForkJoinPool)
+     */
+    public ParsingResult<List<@Nullable ASTElement>> parseDeclarations(Tokenizer tokenizer, String source,
+            String input) {
+        return parseDeclarations(tokenizer, source, input, ForkJoinPool.commonPool());
     }
 
     /**
      * Parse any element from the given tokens, this will try to parse any element.
-     * Results for this method can only include objects from
-     * {@link me.darknet.assembler.ast.primitive} and {@link ASTDeclaration}
      *
      * @param tokens
      *               the tokens to parse
@@ -59,67 +153,103 @@ public class DeclarationParser {
         if (tokens.isEmpty()) {
             return new ParsingResult<>(Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
         }
-        Pair<List<ASTComment>, Collection<Token>> filtered = filterComments(tokens);
-        this.ctx = new ParserContext(this, new ArrayList<>(filtered.second()));
+        DeclarationParser parser = worker(tokens);
         List<ASTElement> result = new ArrayList<>();
-        while (!this.ctx.done()) {
-            ASTElement element = parse();
+        while (!parser.ctx.done()) {
+            ASTElement element = parser.parse();
             result.add(element);
         }
-        return new ParsingResult<>(result, ctx.errorCollector.getErrors(), filtered.first());
+        return new ParsingResult<>(result, parser.ctx.errorCollector.getErrors(), parser.ctx.comments);
     }
 
-    private Pair<List<ASTComment>, Collection<Token>> filterComments(Collection<Token> tokens) {
-        List<Token> filtered = new ArrayList<>();
-        List<ASTComment> comments = new ArrayList<>();
-        for (Token token : tokens) {
-            if (token.type().equals(TokenType.COMMENT)) {
-                comments.add(new ASTComment(token));
-            } else {
-                filtered.add(token);
-            }
-        }
-        return new Pair<>(comments, filtered);
+    /**
+     * Parse a single code block, the tokens must start with the opening brace of the block and end with its closing
+     * brace.
+     *
+     * @param tokens
+     *               the tokens to parse
+     *
+     * @return {@link ParsingResult} of the parsing
+     */
+    ParsingResult<@Nullable ASTCode> parseCode(List<Token> tokens) {
+        DeclarationParser parser = worker(tokens);
+        ParserContext ctx = parser.ctx;
+        if (ctx.done())
+            return new ParsingResult<>(null, List.of(new Error("Expected code block", null)), ctx.comments);
+        ASTCode code = parser.parseCode();
+        if (!ctx.done())
+            ctx.throwUnexpectedError(ctx.content(ctx.peek()));
+        return new ParsingResult<>(code, ctx.errorCollector.getErrors(), ctx.comments);
+    }
+
+    /**
+     * Parse a single code block like {@link #parseCode(List)}, passing every instruction to the consumer as soon as
+     * it is parsed instead of collecting them.
+     *
+     * @param tokens
+     *                 the tokens to parse
+     * @param consumer
+     *                 receives the instructions in code order
+     *
+     * @return errors found while parsing, the instructions preceding the first error have been passed on.
+     */
+    List<Error> streamCode(List<Token> tokens, Consumer<@NotNull ASTInstruction> consumer) {
+        DeclarationParser parser = worker(tokens);
+        ParserContext ctx = parser.ctx;
+        if (ctx.done())
+            return List.of(new Error("Expected code block", null));
+        ctx.enterState(State.IN_CODE);
+        if (ctx.take("{") >= 0 && parser.parseInstructions(consumer) && !ctx.done())
+            ctx.throwUnexpectedError(ctx.content(ctx.peek()));
+        return ctx.errorCollector.getErrors();
     }
 
-    private @Nullable ASTElement parseOperator(Token token) {
-        char operator = token.content().charAt(0);
-        if (operator != '{') {
+    /**
+     * @return a parser of its own for one invocation, so the state of a parse is never shared between threads.
+     */
+    private DeclarationParser worker(Collection<Token> tokens) {
+        DeclarationParser parser = new DeclarationParser(lazyCode);
+        parser.ctx = new ParserContext(parser, tokens);
+        return parser;
+    }
+
+    private @Nullable ASTElement parseOperator(int token) {
+        if (!ctx.is(token, "{")) {
             ctx.takeAny();
-            ctx.throwUnexpectedError(token.content());
+            ctx.throwUnexpectedError(ctx.content(token));
             return null;
         }
         if (ctx.isCurrentState(State.IN_OBJECT)) {
-            Token objectKey = ctx.peek(-2);
-            if (objectKey != null && objectKey.content().equals("code")) {
+            int objectKey = ctx.peek(-2);
+            if (objectKey >= 0 && ctx.is(objectKey, "code")) {
                 // this is the only way I could easily sneak in the code format into the parser
                 return parseCode();
             }
         }
-        Token next = ctx.peek(1);
-        if (next == null) {
+        int next = ctx.peek(1);
+        if (next < 0) {
             ctx.take("{");
             ctx.throwEofError("identifier");
             return null;
         }
-        if (next.type().equals(TokenType.OPERATOR)) {
-            if (next.content().equals("}")) { // empty object
+        if (ctx.type(next) == TokenType.OPERATOR) {
+            if (ctx.is(next, "}")) { // empty object
                 return parseEmpty();
             }
         }
-        if (next.type().equals(TokenType.IDENTIFIER) && next.content().startsWith(".")) {
+        if (ctx.type(next) == TokenType.IDENTIFIER && ctx.startsWith(next, ".")) {
             return parseArrayOrNestedDeclaration();
         }
         // now we need to determine if it's an array or an object
         // it is an object if they there will be a : after the identifier
-        Token peek = ctx.peek(2);
-        if (peek == null) {
+        int peek = ctx.peek(2);
+        if (peek < 0) {
             ctx.takeAny();
             ctx.throwEofError(":, } or ,");
             return null;
         }
-        if (peek.type().equals(TokenType.OPERATOR)) {
-            if (peek.content().equals(":")) {
+        if (ctx.type(peek) == TokenType.OPERATOR) {
+            if (ctx.is(peek, ":")) {
                 return parseObject();
             }
         }
@@ -129,42 +259,42 @@ private Pair<List<ASTComment>, Collection<Token>> filterComments(Collection<Toke
     }
 
     private @Nullable ASTElement parse() {
-        Token token = ctx.peek();
+        int token = ctx.peek();
 
-        switch (token.type()) {
+        switch (ctx.type(token)) {
             case IDENTIFIER -> {
-                String content = token.content();
-                if (content.charAt(0) == '.') {
+                if (ctx.startsWith(token, ".")) {
                     // begin of declaration
                     return parseDeclaration();
                 } else
-                    return new ASTIdentifier(ctx.takeAny());
+                    return new ASTIdentifier(ctx.token(ctx.takeAny()));
             }
             case NUMBER -> {
-                return new ASTNumber(ctx.takeAny());
+                return new ASTNumber(ctx.token(ctx.takeAny()));
             }
             case STRING -> {
-                return new ASTString(ctx.takeAny());
+                return new ASTString(ctx.token(ctx.takeAny()));
             }
             case CHARACTER -> {
-                return new ASTCharacter(ctx.takeAny());
+                return new ASTCharacter(ctx.token(ctx.takeAny()));
             }
             case OPERATOR -> {
                 return parseOperator(token);
             }
-            default -> ctx.errorCollector.addError(new Error("Unexpected token " + token.content(), token.location()));
+            default -> ctx.errorCollector
+                    .addError(new Error("Unexpected token " + ctx.content(token), ctx.location(token)));
         }
         return null;
     }
 
     private ASTEmpty parseEmpty() {
-        Token begin = ctx.take("{");
+        int begin = ctx.take("{");
         ctx.take("}");
-        return new ASTEmpty(begin);
+        return new ASTEmpty(ctx.token(begin));
     }
 
     private @Nullable ASTArray parseArray() {
-        if (ctx.take("{") == null)
+        if (ctx.take("{") < 0)
             return null;
         List<ASTElement> elements = new ArrayList<>();
         return parseHalfArray(elements);
@@ -172,21 +302,21 @@ private ASTEmpty parseEmpty() {
 
     private @Nullable ASTArray parseHalfArray(List<ASTElement> elements) {
         ctx.enterState(State.IN_ARRAY);
-        Token peek = ctx.peek();
-        while (!peek.content().equals("}")) {
+        int peek = ctx.peek();
+        while (!ctx.is(peek, "}")) {
             elements.add(parse());
             peek = ctx.peek();
-            if (peek == null) {
+            if (peek < 0) {
                 ctx.throwEofError(", or {");
                 return null;
             }
-            if (!peek.content().equals("}")) {
-                if (ctx.take(",") == null)
+            if (!ctx.is(peek, "}")) {
+                if (ctx.take(",") < 0)
                     return null;
                 peek = ctx.peek();
             }
         }
-        if (ctx.take("}") == null)
+        if (ctx.take("}") < 0)
             return null;
         ctx.leaveState(State.IN_ARRAY);
         return new ASTArray(elements);
@@ -194,78 +324,78 @@ private ASTEmpty parseEmpty() {
 
     private @Nullable ASTObject parseObject() {
         ctx.enterState(State.IN_OBJECT);
-        if (ctx.take("{") == null)
+        if (ctx.take("{") < 0)
             return null;
         ElementMap<ASTIdentifier, ASTElement> elements = new ElementMap<>();
-        Token peek = ctx.peek();
-        while (!peek.content().equals("}")) {
+        int peek = ctx.peek();
+        while (!ctx.is(peek, "}")) {
             ASTIdentifier identifier = ctx.literal();
             if (identifier == null)
                 return null;
-            if (ctx.take(":") == null)
+            if (ctx.take(":") < 0)
                 return null;
             ASTElement element = parse();
             if (element == null) {
-                ctx.throwExpectedError("element", peek.content());
+                ctx.throwExpectedError("element", ctx.content(peek));
                 return null;
             }
             elements.put(identifier, element);
             peek = ctx.peek();
-            if (peek == null) {
+            if (peek < 0) {
                 ctx.throwEofError(", or }");
                 return null;
             }
-            if (!peek.content().equals("}")) {
-                if (ctx.take(",") == null)
+            if (!ctx.is(peek, "}")) {
+                if (ctx.take(",") < 0)
                     return null;
             }
         }
-        if (ctx.take("}") == null)
+        if (ctx.take("}") < 0)
             return null;
         ctx.leaveState(State.IN_OBJECT);
         return new ASTObject(elements);
     }
 
     private @Nullable ASTDeclaration parseDeclaration() {
-        ASTIdentifier identifier = new ASTIdentifier(ctx.takeAny());
+        ASTIdentifier identifier = new ASTIdentifier(ctx.token(ctx.takeAny()));
         if (identifier.content().charAt(0) != '.') {
             ctx.throwExpectedError("identifier starting with '.'", identifier.content());
             return null;
         }
         State state = ctx.getState();
-        Token peek = ctx.peek();
-        if (peek == null) {
+        int peek = ctx.peek();
+        if (peek < 0) {
             ctx.throwEofError("content");
             return null;
         }
         List<ASTElement> elements = new ArrayList<>();
-        while (!peek.content().startsWith(".")) {
+        while (!ctx.startsWith(peek, ".")) {
             elements.add(parse());
             peek = ctx.peek();
-            if (peek == null)
+            if (peek < 0)
                 break; // declarations are the top level elements, so we can just stop here
             if (state == State.IN_NESTED_DECLARATION_OR_ARRAY) {
-                if (peek.content().equals("}") || peek.content().equals(",")) {
+                if (ctx.is(peek, "}") || ctx.is(peek, ",")) {
                     break;
                 }
             }
-            if ((state == State.IN_NESTED_DECLARATION) && peek.content().equals("}")) {
+            if ((state == State.IN_NESTED_DECLARATION) && ctx.is(peek, "}")) {
                 break;
             } else if (state == State.IN_OBJECT) {
                 // detection is a bit hacky, but it works
                 // check if over next token is a : or next token is a }
-                if (peek.content().equals("}") || peek.content().equals(",")) {
+                if (ctx.is(peek, "}") || ctx.is(peek, ",")) {
                     break;
                 }
-                Token next = ctx.peek(1);
-                if (next == null) {
+                int next = ctx.peek(1);
+                if (next < 0) {
                     ctx.throwEofError("end of declaration");
                     return null;
                 }
-                if (next.content().equals(":")) {
+                if (ctx.is(next, ":")) {
                     break;
                 }
-            } else if ((state == State.IN_ARRAY) && (peek.content().equals(",") || peek.content().equals("}"))) { // arrays are a bit easier
+            } else if ((state == State.IN_ARRAY) && (ctx.is(peek, ",") || ctx.is(peek, "}"))) { // arrays are a bit easier
                 break;
             }
         }
@@ -273,25 +403,25 @@ private ASTEmpty parseEmpty() {
     }
 
     private @Nullable ASTElement parseArrayOrNestedDeclaration() {
-        if (ctx.take("{") == null)
+        if (ctx.take("{") < 0)
             return null;
         ctx.enterState(State.IN_NESTED_DECLARATION_OR_ARRAY);
         ASTElement element = parse();
         if (element == null)
             return null;
-        Token peek = ctx.peek();
-        if (peek == null) {
+        int peek = ctx.peek();
+        if (peek < 0) {
             ctx.throwEofError(", or } or element");
             return null;
         }
         List<ASTElement> elements = new ArrayList<>();
         elements.add(element);
-        if (peek.content().equals("}")) {
+        if (ctx.is(peek, "}")) {
             ctx.take("}");
             ctx.leaveState(State.IN_NESTED_DECLARATION_OR_ARRAY);
             return new ASTDeclaration(null, elements);
         }
-        if (peek.content().equals(",")) {
+        if (ctx.is(peek, ",")) {
             ctx.take(",");
             ctx.leaveState(State.IN_NESTED_DECLARATION_OR_ARRAY);
             return parseHalfArray(elements);
@@ -301,23 +431,23 @@ private ASTEmpty parseEmpty() {
     }
 
     private @Nullable ASTDeclaration parseNestedDeclaration() {
-        if (ctx.take("{") == null)
+        if (ctx.take("{") < 0)
             return null;
         return parseHalfNestedDeclaration(new ArrayList<>());
     }
 
     private @Nullable ASTDeclaration parseHalfNestedDeclaration(List<ASTElement> elements) {
         ctx.enterState(State.IN_NESTED_DECLARATION);
-        Token peek = ctx.peek();
-        while (!peek.content().equals("}")) {
+        int peek = ctx.peek();
+        while (!ctx.is(peek, "}")) {
             elements.add(parseDeclaration());
             peek = ctx.peek();
-            if (peek == null) {
+            if (peek < 0) {
                 ctx.throwEofError("} or declaration");
                 return null;
             }
         }
-        if (ctx.take("}") == null)
+        if (ctx.take("}") < 0)
             return null;
         ctx.leaveState();
         return new ASTDeclaration(null, elements);
@@ -325,53 +455,91 @@ private ASTEmpty parseEmpty() {
 
     private @Nullable ASTCode parseCode() {
         ctx.enterState(State.IN_CODE);
-        if (ctx.take("{") == null)
+        if (ctx.take("{") < 0)
             return null;
-        Token peek = ctx.peek();
+        if (lazyCode)
+            return parseLazyCode();
         List<ASTInstruction> instructions = new ArrayList<>();
-        while (!peek.content().equals("}")) {
+        if (!parseInstructions(instructions::add))
+            return null;
+        return new ASTCode(instructions);
+    }
+
+    private boolean parseInstructions(Consumer<@NotNull ASTInstruction> consumer) {
+        int peek = ctx.peek();
+        if (peek < 0) {
+            ctx.throwEofError("} or instruction");
+            return false;
+        }
+        while (!ctx.is(peek, "}")) {
             ASTInstruction instruction = parseInstruction();
             if (instruction == null)
-                return null;
-            instructions.add(instruction);
+                return false;
+            consumer.accept(instruction);
             peek = ctx.peek();
-            if (peek == null) {
+            if (peek < 0) {
+                ctx.throwEofError("} or instruction");
+                return false;
+            }
+        }
+        if (ctx.take("}") < 0)
+            return false;
+        ctx.leaveState(State.IN_CODE);
+        return true;
+    }
+
+    private @Nullable ASTCode parseLazyCode() {
+        // only find the end of the block, the instructions are parsed on first access
+        int open = ctx.idx - 1;
+        int depth = 1;
+        while (depth > 0) {
+            int token = ctx.peek();
+            if (token < 0) {
                 ctx.throwEofError("} or instruction");
                 return null;
             }
+            ctx.next();
+            if (ctx.type(token) == TokenType.OPERATOR) {
+                if (ctx.is(token, "{")) {
+                    depth++;
+                } else if (ctx.is(token, "}")) {
+                    depth--;
+                }
+            }
         }
-        if (ctx.take("}") == null)
-            return null;
         ctx.leaveState(State.IN_CODE);
-        return new ASTCode(instructions);
+        List<Token> tokens = ctx.slice(open, ctx.idx);
+        Token first = ctx.idx - open > 2 ? ctx.token(open + 1) : null;
+        return new ASTCode(first, consumer -> new DeclarationParser().streamCode(tokens, consumer));
     }
 
     private @Nullable ASTInstruction parseInstruction() {
         ctx.enterState(State.IN_INSTRUCTION);
-        Token instruction = ctx.takeAny();
-        if (instruction == null)
+        int instruction = ctx.takeAny();
+        if (instruction < 0)
             return null;
-        if (instruction.type() != TokenType.IDENTIFIER) {
-            ctx.throwExpectedError("instruction or label", instruction.content());
+        if (ctx.type(instruction) != TokenType.IDENTIFIER) {
+            ctx.throwExpectedError("instruction or label", ctx.content(instruction));
             return null;
         }
-        Token peek = ctx.peek();
-        if (peek == null) {
+        int peek = ctx.peek();
+        if (peek < 0) {
             ctx.throwEofError("instruction argument or label");
             return null;
         }
-        if (peek.type() == TokenType.OPERATOR && peek.content().equals(":")) {
+        if (ctx.type(peek) == TokenType.OPERATOR && ctx.is(peek, ":")) {
             ctx.leaveState(State.IN_INSTRUCTION);
             ctx.take(":");
-            return new ASTLabel(new ASTIdentifier(instruction));
+            return new ASTLabel(new ASTIdentifier(ctx.token(instruction)));
         }
-        ASTIdentifier identifier = new ASTIdentifier(instruction);
+        ASTIdentifier identifier = new ASTIdentifier(ctx.token(instruction));
         List<ASTElement> arguments = new ArrayList<>();
         // parse until peek is eof or on a different line
-        while (peek.location().line() == instruction.location().line()) {
+        int line = ctx.line(instruction);
+        while (ctx.line(peek) == line) {
             arguments.add(parse());
             peek = ctx.peek();
-            if (peek == null) {
+            if (peek < 0) {
                 ctx.throwEofError("instruction argument");
                 return null;
             }
@@ -391,79 +559,163 @@ private enum State {
         IN_INSTRUCTION
     }
 
+    /**
+     * State of one parse. Tokens are referred to by their position among the tokens being parsed, comments left
+     * out, with {@code -1} for no token. Tokens of a {@link TokenStream} are read from the stream by index, a
+     * {@link Token} view is only created by {@link #token(int)} for the tokens elements are built from.
+     */
     private static class ParserContext extends Stateful<State> {
 
         private final DeclarationParser parser;
+        private final @Nullable TokenStream stream;
         private final List<Token> tokens;
+        // indices of the tokens to parse in the stream or list, in order
+        private final int[] order;
+        private final int size;
+        private final List<ASTComment> comments = new ArrayList<>();
         private final ErrorCollector errorCollector = new ErrorCollector();
         private int idx = 0;
-        private Token latest;
+        private int latest;
 
-        private ParserContext(DeclarationParser parser, List<Token> tokens) {
+        private ParserContext(DeclarationParser parser, Collection<Token> tokens) {
             this.parser = parser;
-            this.tokens = Collections.unmodifiableList(tokens);
-            this.latest = tokens.getFirst();
+            int from = 0;
+            int to = tokens.size();
+            if (tokens instanceof TokenStream stream) {
+                this.stream = stream;
+                this.tokens = stream;
+            } else if (tokens instanceof TokenStream.Slice slice) {
+                this.stream = slice.tokens();
+                this.tokens = slice.tokens();
+                from = slice.from();
+                to = slice.to();
+            } else {
+                this.stream = null;
+                this.tokens = tokens instanceof List<Token> list ? list : new ArrayList<>(tokens);
+            }
+            int[] order = new int[to - from];
+            int size = 0;
+            for (int i = from; i < to; i++) {
+                TokenType type = stream != null ? stream.type(i) : this.tokens.get(i).type();
+                if (type == TokenType.COMMENT)
+                    comments.add(new ASTComment(this.tokens.get(i)));
+                else
+                    order[size++] = i;
+            }
+            this.order = size == order.length ? order : Arrays.copyOf(order, size);
+            this.size = size;
+            this.latest = size == 0 ? -1 : 0;
         }
 
         private boolean done() {
-            return idx >= tokens.size();
+            return idx >= size;
         }
 
-        private Token next() {
-            latest = tokens.get(idx++);
+        private int next() {
+            latest = idx++;
             return latest;
         }
 
-        private Token peek() {
+        private int peek() {
             return peek(0);
         }
 
-        private Token peek(int offset) {
-            int listIdx = idx + offset;
-            if (listIdx < 0 || listIdx >= tokens.size()) {
-                return null;
+        private int peek(int offset) {
+            int position = idx + offset;
+            if (position < 0 || position >= size) {
+                return -1;
             }
-            return tokens.get(listIdx);
+            return position;
         }
 
-        private Token take(String exact) {
-            if (tokens.isEmpty()) {
+        private int take(String exact) {
+            if (size == 0) {
                 throwEofError(exact);
-                return null;
+                return -1;
             }
-            Token token = next();
-            if (token.content().equals(exact)) {
+            int token = next();
+            if (is(token, exact)) {
                 return token;
             } else {
-                throwExpectedError(exact, token.content());
-                return null;
+                throwExpectedError(exact, content(token));
+                return -1;
             }
         }
 
-        private Token takeAny() {
-            if (tokens.isEmpty()) {
+        private int takeAny() {
+            if (size == 0) {
                 throwEofError("any token");
-                return null;
+                return -1;
             }
             return next();
         }
 
         private ASTIdentifier literal() {
-            if (tokens.isEmpty()) {
+            if (size == 0) {
                 throwEofError("literal");
                 return null;
             }
-            Token token = next();
-            switch (token.type()) {
+            int token = next();
+            switch (type(token)) {
                 case IDENTIFIER:
                 case NUMBER:
                 case STRING:
-                    return new ASTIdentifier(token);
+                    return new ASTIdentifier(token(token));
             }
-            throwExpectedError("literal", token.content());
+            throwExpectedError("literal", content(token));
             return null;
         }
 
+        /**
+         * @return the view of the token, held by an element.
+         */
+        private Token token(int position) {
+            return tokens.get(order[position]);
+        }
+
+        /**
+         * @return the tokens from the first position up to the second, comments included.
+         */
+        private List<Token> slice(int from, int to) {
+            return tokens.subList(order[from], order[to - 1] + 1);
+        }
+
+        private TokenType type(int position) {
+            if (stream != null)
+                return stream.type(order[position]);
+            return tokens.get(order[position]).type();
+        }
+
+        private boolean is(int position, String text) {
+            if (stream != null)
+                return stream.contentEquals(order[position], text);
+            return tokens.get(order[position]).contentEquals(text);
+        }
+
+        private boolean startsWith(int position, String prefix) {
+            if (stream != null)
+                return stream.startsWith(order[position], prefix);
+            return tokens.get(order[position]).startsWith(prefix);
+        }
+
+        private int line(int position) {
+            if (stream != null)
+                return stream.line(order[position]);
+            return tokens.get(order[position]).line();
+        }
+
+        private String content(int position) {
+            if (stream != null)
+                return stream.content(order[position]);
+            return tokens.get(order[position]).content();
+        }
+
+        private Location location(int position) {
+            if (stream != null)
+                return stream.location(order[position]);
+            return tokens.get(order[position]).location();
+        }
+
         @SuppressWarnings("unchecked")
         private <T extends ASTElement> T parseElement(ElementType... validTypes) {
             T element = (T) parser.parse();
@@ -497,27 +749,27 @@ public void throwError(Error error) {
         }
 
         public void throwEofError(String expected) {
-            if (latest == null) {
+            if (latest < 0) {
                 throwError(new Error("Expected '" + expected + "' but got EOF", new Location(-1, -1, 0, "")));
                 return;
             }
-            throwError(new Error("Expected '" + expected + "' but got EOF", latest.location()));
+            throwError(new Error("Expected '" + expected + "' but got EOF", location(latest)));
         }
 
         public void throwExpectedError(String expected, String got) {
-            if (latest == null) {
+            if (latest < 0) {
                 throwEofError(expected);
                 return;
             }
-            throwError(new Error("Expected '" + expected + "' but got '" + got + "'", latest.location()));
+            throwError(new Error("Expected '" + expected + "' but got '" + got + "'", location(latest)));
         }
 
         public void throwUnexpectedError(String got) {
-            if (latest == null) {
+            if (latest < 0) {
                 throwEofError("any token");
                 return;
             }
-            throwError(new Error("Unexpected token '" + got + "'", latest.location()));
+            throwError(new Error("Unexpected token '" + got + "'", location(latest)));
         }
 
     }
@@ -0,0 +1,128 @@
+package me.darknet.assembler.parser;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cheap pre-scan of a source which finds the boundaries of its top level declarations, without tokenizing it. A
+ * boundary is a {@code .} starting a token outside of any braces, strings, characters and comments. Tokenizing and
+ * parsing the chunks between boundaries on their own yields the same tokens and declarations as processing the whole
+ * source at once.
+ */
+final class DeclarationSplitter {
+
+    private static final int DEFAULT = 0;
+    private static final int LINE_COMMENT = 1;
+    private static final int BLOCK_COMMENT = 2;
+    private static final int STRING = 3;
+    private static final int CHARACTER = 4;
+
+    private DeclarationSplitter() {
+    }
+
+    /**
+     * Split the input into chunks of whole top level declarations.
+     *
+     * @param input
+     *                  the input to split
+     * @param minLength
+     *                  the minimum length of a chunk, consecutive declarations are grouped until they reach it
+     *
+     * @return the chunks in source order, or {@code null} when the input is irregular (unbalanced braces,
+     *         unterminated strings or comments) and has to be processed as a whole.
+     */
+    static @Nullable List<Chunk> split(char[] input, int minLength) {
+        minLength = Math.max(1, minLength);
+        List<Chunk> chunks = new ArrayList<>();
+        int state = DEFAULT;
+        int depth = 0;
+        int line = 1;
+        int lineStart = 0;
+        int chunkStart = 0;
+        int chunkLine = 1;
+        int chunkColumn = 1;
+        int length = input.length;
+        for (int i = 0; i < length; i++) {
+            char c = input[i];
+            if (c == '\n') {
+                if (state == STRING || state == CHARACTER)
+                    return null;
+                if (state == LINE_COMMENT)
+                    state = DEFAULT;
+                line++;
+                lineStart = i + 1;
+                continue;
+            }
+            switch (state) {
+                case DEFAULT -> {
+                    char next = i + 1 < length ? input[i + 1] : '\0';
+                    if (c == '/' && (next == '/' || next == '*')) {
+                        state = next == '/' ? LINE_COMMENT : BLOCK_COMMENT;
+                        i++;
+                    } else if (c == '"') {
+                        state = STRING;
+                    } else if (c == '\'') {
+                        state = CHARACTER;
+                    } else if (c == '{') {
+                        depth++;
+                    } else if (c == '}') {
+                        if (--depth < 0)
+                            return null;
+                    } else if (c == '.' && depth == 0 && i - chunkStart >= minLength && isTokenStart(input, i)) {
+                        chunks.add(new Chunk(chunkStart, i, chunkLine, chunkColumn));
+                        chunkStart = i;
+                        chunkLine = line;
+                        chunkColumn = i - lineStart + 1;
+                    }
+                }
+                case BLOCK_COMMENT -> {
+                    if (c == '*' && i + 1 < length && input[i + 1] == '/') {
+                        state = DEFAULT;
+                        i++;
+                    }
+                }
+                case STRING, CHARACTER -> {
+                    if (c == '\\') {
+                        // the escaped character never ends the literal, an escaped newline is a line break
+                        if (++i < length && input[i] == '\n') {
+                            line++;
+                            lineStart = i + 1;
+                        }
+                    } else if (c == (state == STRING ? '"' : '\'')) {
+                        state = DEFAULT;
+                    }
+                }
+                default -> {
+                    // line comments only end at a newline
+                }
+            }
+        }
+        if (depth != 0 || (state != DEFAULT && state != LINE_COMMENT))
+            return null;
+        chunks.add(new Chunk(chunkStart, length, chunkLine, chunkColumn));
+        return chunks;
+    }
+
+    private static boolean isTokenStart(char[] input, int index) {
+        // the tokenizer always starts a new token after whitespace and operators
+        char previous = input[index - 1];
+        return Character.isWhitespace(previous) || Tokenizer.isOperator(previous);
+    }
+
+    /**
+     * Range of the input holding whole top level declarations.
+     *
+     * @param start
+     *               start offset, inclusive
+     * @param end
+     *               end offset, exclusive
+     * @param line
+     *               line of the first character
+     * @param column
+     *               column of the first character
+     */
+    record Chunk(int start, int end, int line, int column) {
+    }
+}
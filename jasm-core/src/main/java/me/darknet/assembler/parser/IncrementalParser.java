@@ -0,0 +1,492 @@
+package me.darknet.assembler.parser;
+
+import me.darknet.assembler.ast.ASTElement;
+import me.darknet.assembler.ast.primitive.ASTCode;
+import me.darknet.assembler.ast.primitive.ASTComment;
+import me.darknet.assembler.ast.primitive.ASTDeclaration;
+import me.darknet.assembler.ast.primitive.ASTObject;
+import me.darknet.assembler.ast.specific.ASTClass;
+import me.darknet.assembler.error.Error;
+import me.darknet.assembler.error.Result;
+import me.darknet.assembler.error.Warn;
+import me.darknet.assembler.parser.processor.ASTProcessor;
+import me.darknet.assembler.util.Location;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Parser which keeps the tokens, declarations and processed elements of a source between edits. An edit only
+ * tokenizes the text around it again, and only parses the smallest code block, class member or top level declaration
+ * enclosing it. When the edit is inside a class, field or method, top level or in a class body, only that member is
+ * processed again along with the attributes preceding it. Every other element is reused as is and follows the edit,
+ * as the {@link Token}s it is built from are moved to the edited text.
+ * <p>
+ * Edits which cannot be confined to a single declaration, or sources with tokenizer or parser errors, are parsed and
+ * processed as a whole.
+ */
+public class IncrementalParser {
+
+    private final Tokenizer tokenizer;
+    private final ASTProcessor processor;
+    private TokenStream tokens;
+    private List<ASTElement> declarations = Collections.emptyList();
+    private List<ASTComment> comments = Collections.emptyList();
+    private List<ASTElement> elements = Collections.emptyList();
+    private List<Error> parseErrors = Collections.emptyList();
+    private List<Error> errors = Collections.emptyList();
+    private List<Warn> warns = Collections.emptyList();
+
+    public IncrementalParser(Tokenizer tokenizer, BytecodeFormat format) {
+        this.tokenizer = tokenizer;
+        this.processor = new ASTProcessor(format);
+    }
+
+    /**
+     * Parse and process a whole source, replacing anything parsed before.
+     *
+     * @param source
+     *               the name of the source
+     * @param input
+     *               the input to parse
+     *
+     * @return the processed elements, with the errors of the tokenizer, the parser or the processor
+     */
+    public Result<List<ASTElement>> parse(String source, String input) {
+        parseAll((TokenStream) tokenizer.tokenize(source, input).get());
+        return result();
+    }
+
+    /**
+     * Apply a text edit to the source parsed before.
+     *
+     * @param offset
+     *                 the offset of the edit in the current text
+     * @param removed
+     *                 the amount of characters removed at the offset
+     * @param inserted
+     *                 the text inserted at the offset
+     *
+     * @return the processed elements of the edited text, with the errors of the tokenizer, the parser or the
+     *         processor
+     */
+    public Result<List<ASTElement>> update(int offset, int removed, String inserted) {
+        if (tokens == null)
+            throw new IllegalStateException("No source parsed yet");
+        TokenStream previous = tokens;
+        TokenStream edited = tokenizer.retokenize(previous, offset, removed, inserted).get();
+        tokens = edited;
+        if (!parseErrors.isEmpty() || !edited.errors.isEmpty() || !updateDeclaration(previous, edited))
+            parseAll(edited);
+        return result();
+    }
+
+    /**
+     * @return the tokens of the current text, or {@code null} when nothing was parsed yet.
+     */
+    public @Nullable TokenStream tokens() {
+        return tokens;
+    }
+
+    /**
+     * @return the unprocessed declarations of the current text.
+     */
+    public List<ASTElement> declarations() {
+        return Collections.unmodifiableList(declarations);
+    }
+
+    /**
+     * @return the comments of the current text.
+     */
+    public List<ASTComment> comments() {
+        return Collections.unmodifiableList(comments);
+    }
+
+    private Result<List<ASTElement>> result() {
+        List<Error> errors = parseErrors.isEmpty() ? this.errors : parseErrors;
+        return new Result<>(Collections.unmodifiableList(elements), List.copyOf(errors), List.copyOf(warns));
+    }
+
+    private void parseAll(TokenStream tokens) {
+        ParsingResult<List<@Nullable ASTElement>> parsed = new DeclarationParser().parseDeclarations(tokens);
+        this.tokens = tokens;
+        this.declarations = new ArrayList<>(parsed.get());
+        this.comments = new ArrayList<>(parsed.comments());
+        this.parseErrors = new ArrayList<>(tokens.errors);
+        this.parseErrors.addAll(parsed.errors());
+        if (parseErrors.isEmpty()) {
+            process();
+        } else {
+            // declarations with errors hold missing elements, they cannot be processed
+            this.elements = Collections.emptyList();
+            this.errors = Collections.emptyList();
+            this.warns = Collections.emptyList();
+        }
+    }
+
+    private void process() {
+        Result<List<ASTElement>> processed = processor.processAST(declarations);
+        this.elements = new ArrayList<>(processed.get());
+        this.errors = new ArrayList<>(processed.errors());
+        this.warns = new ArrayList<>(processed.getWarns());
+    }
+
+    /**
+     * Parse the top level declaration, or the class member, enclosing the edit again.
+     *
+     * @return {@code false} when the edit is not confined to a single declaration.
+     */
+    private boolean updateDeclaration(TokenStream previous, TokenStream edited) {
+        int start = edited.spliceStart;
+        int resume = edited.spliceResume;
+        if (resume >= previous.size())
+            return false; // the tokenizer did not get back in step before the end of the text
+        Unit top = enclosing(previous, 0, previous.size(), start, resume);
+        if (top == null || top.ordinal() >= declarations.size())
+            return false;
+        if (!(declarations.get(top.ordinal()) instanceof ASTDeclaration declaration)
+                || keywordIndex(declaration, edited) != top.first())
+            return false;
+
+        if (declaration.keyword().content().equals(".class")
+                && declaration.elements().getLast() instanceof ASTDeclaration body && body.keyword() == null) {
+            int open = indexOf(previous, top.first(), top.last(), '{');
+            int close = open < 0 ? -1 : closing(previous, open);
+            if (open >= 0 && open < start && close >= resume && close <= top.last()) {
+                Unit member = enclosing(previous, open + 1, close, start, resume);
+                if (member != null)
+                    return updateMember(previous, edited, declaration, body, member, close);
+            }
+        }
+
+        ASTDeclaration replacement = reparse(previous, edited, top, declaration);
+        if (replacement == null)
+            return false;
+        declarations.set(top.ordinal(), replacement);
+        if (isMember(replacement) != isMember(declaration) || !reprocess(previous, edited, declarations,
+                top.ordinal(), false, edited.size(), elements.size(), elements::set))
+            process();
+        invalidate();
+        return true;
+    }
+
+    /**
+     * Parse a class member enclosing the edit again, and process it along with the attributes preceding it.
+     */
+    private boolean updateMember(TokenStream previous, TokenStream edited, ASTDeclaration declaration,
+            ASTDeclaration body, Unit member, int close) {
+        List<@Nullable ASTElement> members = body.elements();
+        if (member.ordinal() >= members.size() || !(members.get(member.ordinal()) instanceof ASTDeclaration existing)
+                || keywordIndex(existing, edited) != member.first())
+            return false;
+        // find the processed class, it shares the name token with the declaration
+        List<@Nullable ASTElement> classElements = declaration.elements();
+        ASTElement name = classElements.size() < 2 ? null : classElements.get(classElements.size() - 2);
+        ASTClass processed = null;
+        for (ASTElement element : elements) {
+            if (element instanceof ASTClass clazz && name != null && clazz.getName().value() == name.value()) {
+                processed = clazz;
+                break;
+            }
+        }
+        if (processed == null)
+            return false;
+
+        ASTDeclaration replacement = reparse(previous, edited, member, existing);
+        if (replacement == null || isMember(replacement) != isMember(existing))
+            return false;
+        body.replaceElement(member.ordinal(), replacement);
+        if (!reprocess(previous, edited, members, member.ordinal(), true, close + edited.spliceEnd
+                - edited.spliceResume, processed.contents().size(), processed::replaceContent))
+            return false;
+        invalidate();
+        return true;
+    }
+
+    /**
+     * Process the member at or following a changed declaration again, along with the attribute declarations preceding
+     * it, and replace its processed element. The errors and warnings of the group are replaced, the ones behind it
+     * moved along with the edit.
+     *
+     * @param siblings
+     *                  the declarations holding the changed one
+     * @param ordinal
+     *                  the index of the changed declaration
+     * @param classBody
+     *                  whether the declarations are members of a class body, or top level declarations
+     * @param end
+     *                  the index of the edited token following the last sibling
+     * @param processed
+     *                  the amount of processed members of the siblings
+     * @param replace
+     *                  replaces the processed element of a member, by the index of the member
+     *
+     * @return {@code false} when the group cannot be processed on its own.
+     */
+    private boolean reprocess(TokenStream previous, TokenStream edited, List<? extends @Nullable ASTElement> siblings,
+            int ordinal, boolean classBody, int end, int processed, BiConsumer<Integer, ASTElement> replace) {
+        int count = 0;
+        for (ASTElement element : siblings) {
+            if (!(element instanceof ASTDeclaration) || keywordIndex((ASTDeclaration) element, edited) < 0)
+                return false;
+            if (isMember((ASTDeclaration) element))
+                count++;
+        }
+        if (processed != count)
+            return false; // attributes without a member, or members which failed to process
+
+        // the member processed along with the attributes preceding it
+        int last = ordinal;
+        while (last < siblings.size() && !isMember((ASTDeclaration) siblings.get(last)))
+            last++;
+        if (last == siblings.size())
+            return false;
+        int first = last;
+        while (first > 0 && !isMember((ASTDeclaration) siblings.get(first - 1)))
+            first--;
+        int index = 0;
+        for (int i = 0; i < first; i++) {
+            if (isMember((ASTDeclaration) siblings.get(i)))
+                index++;
+        }
+        Result<List<ASTElement>> result = processor.processMembers(new ArrayList<>(siblings.subList(first, last + 1)),
+                classBody);
+        if (result.get().size() != 1)
+            return false;
+        replace.accept(index, result.get().getFirst());
+
+        // replace the errors of the group, the ones behind it moved along with the edit
+        int shift = edited.spliceEnd - edited.spliceResume;
+        int groupStart = keywordIndex((ASTDeclaration) siblings.get(first), edited);
+        int groupEnd = (last + 1 < siblings.size()
+                ? keywordIndex((ASTDeclaration) siblings.get(last + 1), edited) : end) - 1;
+        Location from = previous.location(groupStart);
+        Location to = previous.location(groupEnd - shift);
+        errors = replace(errors, result.errors(), from, to, previous, edited);
+        warns = replace(warns, result.getWarns(), from, to, previous, edited);
+        return true;
+    }
+
+    /**
+     * Parse the innermost code block enclosing the edit again, or the whole unit if there is none.
+     *
+     * @return the declaration of the unit, or {@code null} if the unit did not parse on its own without errors.
+     */
+    private @Nullable ASTDeclaration reparse(TokenStream previous, TokenStream edited, Unit unit,
+            ASTDeclaration declaration) {
+        int shift = edited.spliceEnd - edited.spliceResume;
+        int key = codeKey(previous, unit, edited.spliceStart, edited.spliceResume);
+        if (key >= 0) {
+            int open = key + 2;
+            int close = closing(previous, open) + shift;
+            if (closing(edited, open) != close)
+                return null;
+            ParsingResult<@Nullable ASTCode> parsed = new DeclarationParser()
+                    .parseCode(edited.subList(open, close + 1));
+            if (parsed.hasErr() || parsed.get() == null)
+                return null;
+            for (ASTElement element : declaration.elements()) {
+                if (!(element instanceof ASTObject object))
+                    continue;
+                for (int i = 0; i < object.values().size(); i++) {
+                    ASTElement code = object.values().get(i);
+                    Token token = object.values().key(i).value();
+                    if (code instanceof ASTCode && token.stream() == edited && token.index() == key) {
+                        object.replaceValue(i, parsed.get());
+                        replaceComments(edited, open, close, parsed.comments());
+                        return declaration;
+                    }
+                }
+            }
+            return null;
+        }
+        int last = unit.last() + shift;
+        if (!isUnit(edited, unit.first(), last))
+            return null;
+        ParsingResult<List<@Nullable ASTElement>> parsed = new DeclarationParser()
+                .parseDeclarations(edited.subList(unit.first(), last + 1));
+        if (parsed.hasErr() || parsed.get().size() != 1
+                || !(parsed.get().getFirst() instanceof ASTDeclaration replacement))
+            return null;
+        replaceComments(edited, unit.first(), last, parsed.comments());
+        return replacement;
+    }
+
+    private void replaceComments(TokenStream edited, int first, int last, List<ASTComment> replacements) {
+        List<ASTComment> kept = new ArrayList<>(comments.size() + replacements.size());
+        int insert = -1;
+        for (ASTComment comment : comments) {
+            Token token = comment.value();
+            // comments which were tokenized again are not moved to the edited tokens
+            if (token.stream() != edited)
+                continue;
+            int index = token.index();
+            if (index >= first && index <= last)
+                continue;
+            if (insert < 0 && index > last)
+                insert = kept.size();
+            kept.add(comment);
+        }
+        kept.addAll(insert < 0 ? kept.size() : insert, replacements);
+        comments = kept;
+    }
+
+    private void invalidate() {
+        for (ASTElement declaration : declarations)
+            declaration.invalidateRange();
+        for (ASTElement element : elements)
+            element.invalidateRange();
+    }
+
+    /**
+     * Replace the errors in {@code [from, to]} and move the errors behind them along with the edit. Errors on the line
+     * the reused tokens resume on also follow the column of the first reused token.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E extends Error> List<E> replace(List<E> existing, List<E> replacements, Location from,
+            Location to, TokenStream previous, TokenStream edited) {
+        int resumeLine = previous.line(edited.spliceResume);
+        int lineDelta = edited.line(edited.spliceEnd) - resumeLine;
+        int columnDelta = edited.column(edited.spliceEnd) - previous.column(edited.spliceResume);
+        List<E> result = new ArrayList<>(existing.size() + replacements.size());
+        boolean inserted = false;
+        for (E error : existing) {
+            Location location = error.getLocation();
+            if (location == null || location.compareTo(from) < 0) {
+                result.add(error);
+                continue;
+            }
+            if (!inserted) {
+                result.addAll(replacements);
+                inserted = true;
+            }
+            if (location.compareTo(to) <= 0)
+                continue;
+            int columnShift = location.line() == resumeLine ? columnDelta : 0;
+            if (lineDelta != 0 || columnShift != 0) {
+                Location moved = new Location(location.line() + lineDelta, location.column() + columnShift,
+                        location.length(), location.source());
+                error = (E) (error instanceof Warn ? new Warn(error.getMessage(), moved)
+                        : new Error(error.getMessage(), moved));
+            }
+            result.add(error);
+        }
+        if (!inserted)
+            result.addAll(replacements);
+        return result;
+    }
+
+    private static boolean isMember(ASTDeclaration declaration) {
+        String keyword = declaration.keyword().content();
+        return keyword.equals(".class") || keyword.equals(".field") || keyword.equals(".method");
+    }
+
+    private static int keywordIndex(ASTDeclaration declaration, TokenStream edited) {
+        if (declaration.keyword() == null)
+            return -1;
+        Token token = declaration.keyword().value();
+        return token.stream() == edited ? token.index() : -1;
+    }
+
+    /**
+     * Find the declaration in {@code [from, to)} which encloses the edit, the declarations start with an identifier
+     * starting with {@code .} outside of braces. The declaration must start before the re-lexed tokens and end within
+     * the reused tokens following them.
+     */
+    private static @Nullable Unit enclosing(TokenStream tokens, int from, int to, int start, int resume) {
+        int depth = 0;
+        int ordinal = -1;
+        int first = -1;
+        for (int i = from; i < to; i++) {
+            if (depth == 0 && isDeclarationStart(tokens, i)) {
+                if (i >= start)
+                    return first >= 0 && i > resume ? new Unit(ordinal, first, i - 1) : null;
+                ordinal++;
+                first = i;
+            } else if (isOperator(tokens, i, '{')) {
+                depth++;
+            } else if (isOperator(tokens, i, '}')) {
+                depth--;
+            }
+        }
+        return first >= 0 && to - 1 >= resume ? new Unit(ordinal, first, to - 1) : null;
+    }
+
+    /**
+     * @return index of the {@code code} key of the innermost code block enclosing the edit, or {@code -1}.
+     */
+    private static int codeKey(TokenStream tokens, Unit unit, int start, int resume) {
+        int key = -1;
+        for (int i = unit.first(); i + 2 < start; i++) {
+            if (tokens.type(i) == TokenType.IDENTIFIER && tokens.contentEquals(i, "code")
+                    && isOperator(tokens, i + 1, ':') && isOperator(tokens, i + 2, '{')) {
+                int close = closing(tokens, i + 2);
+                if (close >= resume && close <= unit.last())
+                    key = i;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @return whether the tokens are a single declaration with balanced braces.
+     */
+    private static boolean isUnit(TokenStream tokens, int first, int last) {
+        int depth = 0;
+        for (int i = first; i <= last; i++) {
+            if (i > first && depth == 0 && isDeclarationStart(tokens, i))
+                return false;
+            if (isOperator(tokens, i, '{')) {
+                depth++;
+            } else if (isOperator(tokens, i, '}') && --depth < 0) {
+                return false;
+            }
+        }
+        return depth == 0;
+    }
+
+    private static int closing(TokenStream tokens, int open) {
+        int depth = 0;
+        for (int i = open; i < tokens.size(); i++) {
+            if (isOperator(tokens, i, '{')) {
+                depth++;
+            } else if (isOperator(tokens, i, '}') && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(TokenStream tokens, int first, int last, char operator) {
+        for (int i = first; i <= last; i++) {
+            if (isOperator(tokens, i, operator))
+                return i;
+        }
+        return -1;
+    }
+
+    private static boolean isDeclarationStart(TokenStream tokens, int index) {
+        return tokens.type(index) == TokenType.IDENTIFIER && tokens.startsWith(index, ".");
+    }
+
+    private static boolean isOperator(TokenStream tokens, int index, char operator) {
+        return tokens.type(index) == TokenType.OPERATOR && tokens.input()[tokens.start(index)] == operator;
+    }
+
+    /**
+     * Tokens of a declaration.
+     *
+     * @param ordinal
+     *                the index of the declaration among its siblings
+     * @param first
+     *                index of the first token
+     * @param last
+     *                index of the last token, inclusive
+     */
+    private record Unit(int ordinal, int first, int last) {
+    }
+}
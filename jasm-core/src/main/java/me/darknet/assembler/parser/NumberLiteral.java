@@ -0,0 +1,348 @@
+package me.darknet.assembler.parser;
+
+import static me.darknet.assembler.parser.Tokenizer.isExponent;
+import static me.darknet.assembler.parser.Tokenizer.isHex;
+import static me.darknet.assembler.parser.Tokenizer.isNumber;
+
+/**
+ * Hand-written state machine for number literals. It recognizes decimal, hexadecimal and binary integers, decimal
+ * and hexadecimal floating point numbers, underscores between digits and the {@code L}, {@code F} and {@code D}
+ * suffixes, and computes the value of the literal in the same pass.
+ */
+public final class NumberLiteral {
+
+    static final byte NONE = 0;
+    static final byte INT = 1;
+    static final byte LONG = 2;
+    static final byte FLOAT = 3;
+    static final byte DOUBLE = 4;
+    /**
+     * Valid number syntax, but the value does not fit the type of the literal.
+     */
+    static final byte OUT_OF_RANGE = 5;
+
+    private long bits;
+
+    /**
+     * @return the raw bits of the last literal recognized by {@link #scan(char[], int, int)}, floating point values
+     *         are stored as {@link Double#doubleToRawLongBits(double)}.
+     */
+    long bits() {
+        return bits;
+    }
+
+    /**
+     * Recognize the literal in the given range.
+     *
+     * @param chars
+     *              the characters
+     * @param start
+     *              start of the literal, inclusive
+     * @param end
+     *              end of the literal, exclusive
+     *
+     * @return the kind of the literal, or {@link #NONE} when the range is not a number
+     */
+    byte scan(char[] chars, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && chars[i] == '-') {
+            negative = true;
+            i++;
+        }
+        if (i >= end)
+            return NONE;
+        char c = chars[i];
+        if (c == '0' && i + 1 < end) {
+            char prefix = chars[i + 1];
+            if (prefix == 'x' || prefix == 'X')
+                return scanHex(chars, start, i + 2, end, negative);
+            if (prefix == 'b' || prefix == 'B')
+                return scanBinary(chars, i + 2, end, negative);
+        }
+        if (!isNumber(c) && c != '.')
+            return NONE;
+
+        // integral part
+        long value = 0;
+        int significant = 0;
+        int digits = 0;
+        for (; i < end; i++) {
+            c = chars[i];
+            if (isNumber(c)) {
+                if (significant > 0 || c != '0')
+                    significant++;
+                value = value * 10 + (c - '0');
+                digits++;
+            } else if (c != '_' || digits == 0) {
+                break;
+            }
+        }
+        boolean floating = false;
+        // fraction
+        if (i < end && chars[i] == '.') {
+            floating = true;
+            i++;
+            int fraction = 0;
+            for (; i < end; i++) {
+                c = chars[i];
+                if (isNumber(c))
+                    fraction++;
+                else if (c != '_' || fraction == 0)
+                    break;
+            }
+            if (digits == 0 && fraction == 0)
+                return NONE;
+        } else if (digits == 0) {
+            return NONE;
+        }
+        // exponent
+        if (i < end && isExponent(chars[i])) {
+            floating = true;
+            i = scanExponent(chars, i + 1, end);
+            if (i < 0)
+                return NONE;
+        }
+        // suffix
+        char suffix = 0;
+        if (i < end) {
+            suffix = chars[i++];
+            if (i != end)
+                return NONE;
+        }
+        switch (suffix) {
+            case 0 -> {
+                if (floating)
+                    return parseDouble(chars, start, end);
+                return decimal(chars, start, end, value, significant, negative, false);
+            }
+            case 'l', 'L' -> {
+                if (floating)
+                    return NONE;
+                return decimal(chars, start, end - 1, value, significant, negative, true);
+            }
+            case 'f', 'F' -> {
+                return parseFloat(chars, start, end);
+            }
+            case 'd', 'D' -> {
+                return parseDouble(chars, start, end);
+            }
+            default -> {
+                return NONE;
+            }
+        }
+    }
+
+    private byte scanHex(char[] chars, int start, int i, int end, boolean negative) {
+        long value = 0;
+        int significant = 0;
+        int digits = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (isHex(c)) {
+                if (!fraction) {
+                    if (significant > 0 || c != '0')
+                        significant++;
+                    value = (value << 4) | Character.digit(c, 16);
+                }
+                digits++;
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c != '_') {
+                break;
+            }
+        }
+        if (digits == 0)
+            return NONE;
+        if (i < end && (chars[i] == 'p' || chars[i] == 'P')) {
+            // hexadecimal floating point, always has a binary exponent
+            i = scanExponent(chars, i + 1, end);
+            if (i < 0)
+                return NONE;
+            if (i == end)
+                return parseDouble(chars, start, end);
+            char suffix = chars[i];
+            if (i + 1 != end)
+                return NONE;
+            if (suffix == 'f' || suffix == 'F')
+                return parseFloat(chars, start, end);
+            if (suffix == 'd' || suffix == 'D')
+                return parseDouble(chars, start, end);
+            return NONE;
+        }
+        if (fraction)
+            return NONE;
+        if (i == end)
+            return unsigned(value, significant * 4, negative, false);
+        if (i + 1 == end && (chars[i] == 'l' || chars[i] == 'L'))
+            return unsigned(value, significant * 4, negative, true);
+        return NONE;
+    }
+
+    private byte scanBinary(char[] chars, int i, int end, boolean negative) {
+        long value = 0;
+        int significant = 0;
+        int digits = 0;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c == '0' || c == '1') {
+                if (significant > 0 || c != '0')
+                    significant++;
+                value = (value << 1) | (c - '0');
+                digits++;
+            } else if (c != '_' || digits == 0) {
+                break;
+            }
+        }
+        if (digits == 0)
+            return NONE;
+        if (i == end)
+            return unsigned(value, significant, negative, false);
+        if (i + 1 != end)
+            return NONE;
+        switch (chars[i]) {
+            case 'l', 'L' -> {
+                return unsigned(value, significant, negative, true);
+            }
+            case 'f', 'F' -> {
+                if (significant > 64)
+                    return OUT_OF_RANGE;
+                float f = negative ? -unsignedToFloat(value) : unsignedToFloat(value);
+                bits = Double.doubleToRawLongBits(f);
+                return FLOAT;
+            }
+            case 'd', 'D' -> {
+                if (significant > 64)
+                    return OUT_OF_RANGE;
+                double d = negative ? -unsignedToDouble(value) : unsignedToDouble(value);
+                bits = Double.doubleToRawLongBits(d);
+                return DOUBLE;
+            }
+            default -> {
+                return NONE;
+            }
+        }
+    }
+
+    private static int scanExponent(char[] chars, int i, int end) {
+        if (i < end && (chars[i] == '-' || chars[i] == '+'))
+            i++;
+        int digits = 0;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (isNumber(c))
+                digits++;
+            else if (c != '_' || digits == 0)
+                break;
+        }
+        return digits == 0 ? -1 : i;
+    }
+
+    private byte decimal(char[] chars, int start, int end, long value, int significant, boolean negative,
+            boolean wide) {
+        if (significant > 18) {
+            // may not fit the fast path, let the JDK deal with it
+            try {
+                String text = strip(chars, start, end);
+                bits = wide ? Long.parseLong(text) : Integer.parseInt(text);
+                return wide ? LONG : INT;
+            } catch (NumberFormatException e) {
+                return OUT_OF_RANGE;
+            }
+        }
+        if (negative)
+            value = -value;
+        if (!wide && (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE))
+            return OUT_OF_RANGE;
+        bits = value;
+        return wide ? LONG : INT;
+    }
+
+    private byte unsigned(long value, int width, boolean negative, boolean wide) {
+        if (width > (wide ? 64 : 32))
+            return OUT_OF_RANGE;
+        if (!wide)
+            value = (int) value;
+        bits = negative ? -value : value;
+        if (!wide)
+            bits = (int) bits;
+        return wide ? LONG : INT;
+    }
+
+    private byte parseFloat(char[] chars, int start, int end) {
+        try {
+            bits = Double.doubleToRawLongBits(Float.parseFloat(strip(chars, start, end)));
+            return FLOAT;
+        } catch (NumberFormatException e) {
+            return OUT_OF_RANGE;
+        }
+    }
+
+    private byte parseDouble(char[] chars, int start, int end) {
+        try {
+            bits = Double.doubleToRawLongBits(Double.parseDouble(strip(chars, start, end)));
+            return DOUBLE;
+        } catch (NumberFormatException e) {
+            return OUT_OF_RANGE;
+        }
+    }
+
+    private static String strip(char[] chars, int start, int end) {
+        StringBuilder builder = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (c != '_')
+                builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static float unsignedToFloat(long value) {
+        return value >= 0 ? value : (float) (value >>> 1) * 2f;
+    }
+
+    private static double unsignedToDouble(long value) {
+        return value >= 0 ? value : (double) (value >>> 1) * 2d;
+    }
+
+    /**
+     * Box a value recognized by {@link #scan(char[], int, int)}.
+     *
+     * @param kind
+     *             the kind of the literal
+     * @param bits
+     *             the raw bits of the literal
+     *
+     * @return the boxed value, or {@code null} when the kind has no value
+     */
+    static Number box(byte kind, long bits) {
+        return switch (kind) {
+            case INT -> (int) bits;
+            case LONG -> bits;
+            case FLOAT -> (float) Double.longBitsToDouble(bits);
+            case DOUBLE -> Double.longBitsToDouble(bits);
+            default -> null;
+        };
+    }
+
+    /**
+     * Parse a number literal, the accepted syntax is the same as the one recognized by the {@link Tokenizer}.
+     *
+     * @param text
+     *             the literal
+     *
+     * @return the value of the literal, either an {@link Integer}, {@link Long}, {@link Float} or {@link Double}
+     *
+     * @throws NumberFormatException
+     *                               when the text is not a number literal, or its value does not fit its type
+     */
+    public static Number parse(String text) throws NumberFormatException {
+        NumberLiteral literal = new NumberLiteral();
+        byte kind = literal.scan(text.toCharArray(), 0, text.length());
+        Number number = box(kind, literal.bits);
+        if (number == null)
+            throw new NumberFormatException("For input string: \"" + text + "\"");
+        return number;
+    }
+}
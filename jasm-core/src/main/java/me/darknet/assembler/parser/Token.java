@@ -1,7 +1,173 @@
 package me.darknet.assembler.parser;
 
 import me.darknet.assembler.util.Location;
+import me.darknet.assembler.util.Position;
 import me.darknet.assembler.util.Range;
 
-public record Token(Range range, Location location, TokenType type, String content) {
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * A single token, either standalone or a view of one entry in a {@link TokenStream}. Tokens backed by a stream only
+ * create their {@link Range}, {@link Location} and content when they are first requested.
+ */
+public final class Token {
+
+    private TokenStream stream;
+    private int index;
+    private final TokenType type;
+    private Range range;
+    private Location location;
+    private String content;
+    private final Number number;
+
+    public Token(Range range, Location location, TokenType type, String content) {
+        this(range, location, type, content, null);
+    }
+
+    Token(Range range, Location location, TokenType type, String content, Number number) {
+        this.stream = null;
+        this.index = -1;
+        this.range = range;
+        this.location = location;
+        this.type = type;
+        this.content = content;
+        this.number = number;
+    }
+
+    Token(TokenStream stream, int index) {
+        this.stream = stream;
+        this.index = index;
+        this.type = stream.type(index);
+        this.number = null;
+    }
+
+    /**
+     * Move this view to another stream, used when the tokens of a stream are reused by an edited stream.
+     *
+     * @param stream
+     *               the new stream
+     * @param index
+     *               the index of the token in the new stream
+     * @param moved
+     *               whether the token moved in the text, in which case its range and location are created again
+     */
+    void rebind(TokenStream stream, int index, boolean moved) {
+        this.stream = stream;
+        this.index = index;
+        if (moved) {
+            range = null;
+            location = null;
+        }
+    }
+
+    /**
+     * @return the stream this token is a view of, or {@code null} for standalone tokens.
+     */
+    @Nullable
+    TokenStream stream() {
+        return stream;
+    }
+
+    /**
+     * @return the index of this token in its stream, or {@code -1} for standalone tokens.
+     */
+    int index() {
+        return index;
+    }
+
+    public Range range() {
+        if (range == null)
+            range = stream.range(index);
+        return range;
+    }
+
+    public Location location() {
+        if (location == null)
+            location = stream.location(index);
+        return location;
+    }
+
+    /**
+     * @return the packed position of the token, without creating its {@link Location}.
+     */
+    public long position() {
+        if (location == null && stream != null)
+            return stream.position(index);
+        return Position.of(location());
+    }
+
+    public TokenType type() {
+        return type;
+    }
+
+    public String content() {
+        if (content == null)
+            content = stream.content(index);
+        return content;
+    }
+
+    /**
+     * @return the value of a number token as parsed by the tokenizer, or {@code null} when it was not parsed.
+     */
+    public @Nullable Number number() {
+        if (stream == null)
+            return number;
+        return stream.number(index);
+    }
+
+    /**
+     * @return the line of the token, without creating its {@link Location}.
+     */
+    public int line() {
+        if (location == null && stream != null)
+            return stream.line(index);
+        return location().line();
+    }
+
+    /**
+     * @param text
+     *             the text to compare against
+     *
+     * @return {@code true} when the content of this token is equal to the given text.
+     */
+    public boolean contentEquals(String text) {
+        if (content == null && stream != null)
+            return stream.contentEquals(index, text);
+        return content().equals(text);
+    }
+
+    /**
+     * @param prefix
+     *               the prefix to check for
+     *
+     * @return {@code true} when the content of this token starts with the given prefix.
+     */
+    public boolean startsWith(String prefix) {
+        if (content == null && stream != null)
+            return stream.startsWith(index, prefix);
+        return content().startsWith(prefix);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Token other))
+            return false;
+        return type == other.type && range().equals(other.range()) && location().equals(other.location())
+                && content().equals(other.content());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(range(), location(), type, content());
+    }
+
+    @Override
+    public String toString() {
+        return "Token[range=" + range() + ", location=" + location() + ", type=" + type + ", content=" + content()
+                + "]";
+    }
 }
@@ -0,0 +1,114 @@
+package me.darknet.assembler.parser;
+
+import me.darknet.assembler.error.Error;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator over the tokens of an input which is read in chunks, only a small window of the input is kept in memory.
+ * Tokens produced by this reader are standalone and do not reference the input.
+ *
+ * @see Tokenizer#reader(String, Reader)
+ */
+public class TokenReader implements Iterator<Token>, Closeable {
+
+    static final int DEFAULT_WINDOW = 8192;
+
+    private final Tokenizer tokenizer;
+    private final Tokenizer.TokenizerContext ctx;
+    private final Reader reader;
+    private final ArrayDeque<Token> pending = new ArrayDeque<>();
+    private boolean done;
+
+    TokenReader(Tokenizer tokenizer, String source, Reader reader, int window) {
+        this.tokenizer = tokenizer;
+        this.reader = reader;
+        this.ctx = new Tokenizer.TokenizerContext(pending::add, reader, window, source, tokenizer.getPool());
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (pending.isEmpty() && !done) {
+                ctx.fill();
+                if (ctx.hasInput()) {
+                    tokenizer.step(ctx);
+                } else {
+                    ctx.collectToken();
+                    done = true;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public Token next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return pending.poll();
+    }
+
+    /**
+     * @return errors found in the input read so far.
+     */
+    public List<Error> errors() {
+        return ctx.errors();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Reader decoding UTF-8 from a byte buffer, used for memory-mapped files.
+     */
+    static final class DecodingReader extends Reader {
+
+        private final ByteBuffer bytes;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        private boolean flushed;
+
+        DecodingReader(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0)
+                return 0;
+            if (flushed)
+                return -1;
+            CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+            CoderResult result = decoder.decode(bytes, out, true);
+            if (result.isError())
+                result.throwException();
+            if (result.isUnderflow()) {
+                result = decoder.flush(out);
+                if (result.isUnderflow())
+                    flushed = true;
+            }
+            int read = out.position() - offset;
+            return read == 0 && flushed ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package me.darknet.assembler.parser;
+
+import me.darknet.assembler.error.Error;
+import me.darknet.assembler.util.Location;
+import me.darknet.assembler.util.Position;
+import me.darknet.assembler.util.Range;
+import me.darknet.assembler.util.StringPool;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.CharBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Packed storage of the tokens produced by the {@link Tokenizer}. Every token is stored as a set of parallel
+ * primitive arrays over the source characters, {@link Token} instances handed out by {@link #get(int)} are views which
+ * only materialize their content, {@link Range} and {@link Location} on demand.
+ * <p>
+ * Tokens whose content is not a verbatim slice of the source (for example strings containing escapes) keep their
+ * content in a side table.
+ */
+public final class TokenStream extends AbstractList<Token> implements RandomAccess {
+
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int INITIAL_CAPACITY = 64;
+    private static final byte NUMBER = (byte) TokenType.NUMBER.ordinal();
+    private static final byte COMMENT = (byte) TokenType.COMMENT.ordinal();
+
+    private final String source;
+    private final char[] input;
+    private final StringPool pool;
+    private int size;
+    private int[] starts;
+    private int[] ends;
+    private int[] lines;
+    private int[] columns;
+    private byte[] types;
+    private int[] extras;
+    // for numbers the extra is an index into the number tables, otherwise into the content table
+    private String[] contents = new String[0];
+    private int contentCount;
+    private long[] numberBits = new long[0];
+    private byte[] numberKinds = new byte[0];
+    private int numberCount;
+    private Token[] views;
+    List<Error> errors = Collections.emptyList();
+    // set by splice, the re-lexed tokens are [spliceStart, spliceEnd), and the reused tokens following them started
+    // at spliceResume in the previous stream
+    int spliceStart = -1;
+    int spliceEnd = -1;
+    int spliceResume = -1;
+
+    TokenStream(String source, char[] input, @Nullable StringPool pool) {
+        this(source, input, Math.max(INITIAL_CAPACITY, input.length / 8), pool);
+    }
+
+    TokenStream(String source, char[] input, int capacity, @Nullable StringPool pool) {
+        this.source = source;
+        this.input = input;
+        this.pool = pool;
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.lines = new int[capacity];
+        this.columns = new int[capacity];
+        this.types = new byte[capacity];
+        this.extras = new int[capacity];
+    }
+
+    void add(TokenType type, int start, int end, int line, int column, String content) {
+        if (size == types.length)
+            grow();
+        starts[size] = start;
+        ends[size] = end;
+        lines[size] = line;
+        columns[size] = column;
+        types[size] = (byte) type.ordinal();
+        extras[size] = content == null ? -1 : addContentEntry(content);
+        size++;
+    }
+
+    void addNumber(int start, int end, int line, int column, byte kind, long bits) {
+        add(TokenType.NUMBER, start, end, line, column, null);
+        extras[size - 1] = addNumberEntry(kind, bits);
+    }
+
+    /**
+     * Drop all tokens from the given index onwards.
+     *
+     * @param size
+     *             the new size
+     */
+    void truncate(int size) {
+        this.size = Math.min(this.size, size);
+        if (views != null && views.length > size)
+            views = Arrays.copyOf(views, size);
+    }
+
+    /**
+     * Create a new stream consisting of the first {@code keep} tokens of {@code previous}, all tokens of
+     * {@code middle}, and the tokens of {@code previous} starting at {@code resume}. The offsets and lines of the
+     * resumed tokens are shifted by the given deltas.
+     * <p>
+     * {@link Token} views handed out by {@code previous} for the kept and resumed tokens are moved to the new stream,
+     * so elements built from them follow the edit. {@code previous} forgets all of its views, it still describes the
+     * text before the edit but the tokens it handed out no longer belong to it.
+     * <p>
+     * The token arrays and side tables are copied, which is linear in the amount of tokens, only the lexing is limited
+     * to the edited region.
+     */
+    static TokenStream splice(TokenStream previous, char[] input, int keep, TokenStream middle, int resume,
+            int offsetDelta, int lineDelta) {
+        int tail = previous.size - resume;
+        int size = keep + middle.size + tail;
+        TokenStream result = new TokenStream(previous.source, input, Math.max(INITIAL_CAPACITY, size),
+                previous.pool);
+        result.copy(previous, 0, 0, keep);
+        result.copy(middle, 0, keep, middle.size);
+        result.copy(previous, resume, keep + middle.size, tail);
+        for (int i = keep + middle.size; i < size; i++) {
+            result.starts[i] += offsetDelta;
+            result.ends[i] += offsetDelta;
+            result.lines[i] += lineDelta;
+        }
+        result.size = size;
+        result.spliceStart = keep;
+        result.spliceEnd = keep + middle.size;
+        result.spliceResume = resume;
+        Token[] previousViews = previous.views;
+        if (previousViews != null) {
+            result.views = new Token[size];
+            for (int i = 0; i < Math.min(keep, previousViews.length); i++)
+                result.moveView(previousViews[i], i, false);
+            for (int i = resume; i < Math.min(previous.size, previousViews.length); i++)
+                result.moveView(previousViews[i], i - resume + keep + middle.size, offsetDelta != 0 || lineDelta != 0);
+            // the moved views belong to the new stream, leaving them here would have the previous stream hand out
+            // tokens of the edited text
+            previous.views = null;
+        }
+        return result;
+    }
+
+    private void moveView(Token token, int index, boolean moved) {
+        if (token == null)
+            return;
+        token.rebind(this, index, moved);
+        views[index] = token;
+    }
+
+    private void copy(TokenStream from, int fromIndex, int toIndex, int length) {
+        System.arraycopy(from.starts, fromIndex, starts, toIndex, length);
+        System.arraycopy(from.ends, fromIndex, ends, toIndex, length);
+        System.arraycopy(from.lines, fromIndex, lines, toIndex, length);
+        System.arraycopy(from.columns, fromIndex, columns, toIndex, length);
+        System.arraycopy(from.types, fromIndex, types, toIndex, length);
+        // side tables are rebuilt for the copied tokens
+        for (int i = 0; i < length; i++) {
+            int extra = from.extras[fromIndex + i];
+            int index = toIndex + i;
+            if (extra < 0) {
+                extras[index] = -1;
+            } else if (types[index] == NUMBER) {
+                extras[index] = addNumberEntry(from.numberKinds[extra], from.numberBits[extra]);
+            } else {
+                extras[index] = addContentEntry(from.contents[extra]);
+            }
+        }
+    }
+
+    private int addContentEntry(String content) {
+        if (contentCount == contents.length)
+            contents = Arrays.copyOf(contents, Math.max(8, contentCount * 2));
+        contents[contentCount] = content;
+        return contentCount++;
+    }
+
+    private int addNumberEntry(byte kind, long bits) {
+        if (numberCount == numberKinds.length) {
+            int capacity = Math.max(8, numberCount * 2);
+            numberBits = Arrays.copyOf(numberBits, capacity);
+            numberKinds = Arrays.copyOf(numberKinds, capacity);
+        }
+        numberBits[numberCount] = bits;
+        numberKinds[numberCount] = kind;
+        return numberCount++;
+    }
+
+    /**
+     * @param offset
+     *               the offset in the text
+     *
+     * @return the index of the first token starting at or after the given offset.
+     */
+    int indexOf(int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < offset)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    char[] input() {
+        return input;
+    }
+
+    /**
+     * @return the content of the token when it is kept in the side table, or {@code null} when it is a slice of the
+     *         source.
+     */
+    @Nullable
+    String storedContent(int index) {
+        checkIndex(index);
+        int extra = extras[index];
+        return extra >= 0 && types[index] != NUMBER ? contents[extra] : null;
+    }
+
+    byte numberKind(int index) {
+        checkIndex(index);
+        return numberKinds[extras[index]];
+    }
+
+    long numberBits(int index) {
+        checkIndex(index);
+        return numberBits[extras[index]];
+    }
+
+    @Nullable
+    StringPool pool() {
+        return pool;
+    }
+
+    private void grow() {
+        int capacity = Math.max(INITIAL_CAPACITY, types.length * 2);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        columns = Arrays.copyOf(columns, capacity);
+        types = Arrays.copyOf(types, capacity);
+        extras = Arrays.copyOf(extras, capacity);
+    }
+
+    /**
+     * @return the name of the source the tokens originate from.
+     */
+    public String source() {
+        return source;
+    }
+
+    /**
+     * @return the text the tokens were read from.
+     */
+    public CharSequence text() {
+        return CharBuffer.wrap(input).asReadOnlyBuffer();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Token get(int index) {
+        checkIndex(index);
+        if (views == null)
+            views = new Token[size];
+        else if (views.length < size)
+            views = Arrays.copyOf(views, size);
+        Token token = views[index];
+        if (token == null) {
+            token = new Token(this, index);
+            views[index] = token;
+        }
+        return token;
+    }
+
+    /**
+     * @return a view of the tokens in the range, which the parser reads from this stream by index.
+     */
+    @Override
+    public @NotNull List<Token> subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + size);
+        return new Slice(this, fromIndex, toIndex);
+    }
+
+    /**
+     * @return amount of {@link Token} views handed out by {@link #get(int)} which are still held by this stream.
+     */
+    int viewCount() {
+        int count = 0;
+        if (views != null) {
+            for (int i = 0; i < Math.min(size, views.length); i++) {
+                if (views[i] != null)
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    public @NotNull TokenType type(int index) {
+        checkIndex(index);
+        return TYPES[types[index]];
+    }
+
+    public int start(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    public int end(int index) {
+        checkIndex(index);
+        return ends[index];
+    }
+
+    public int line(int index) {
+        checkIndex(index);
+        return lines[index];
+    }
+
+    public int column(int index) {
+        checkIndex(index);
+        return columns[index];
+    }
+
+    public @NotNull Range range(int index) {
+        checkIndex(index);
+        return new Range(starts[index], ends[index]);
+    }
+
+    /**
+     * @param index
+     *              the token index
+     *
+     * @return the packed line and column of the token, see {@link Position}.
+     */
+    public long position(int index) {
+        checkIndex(index);
+        return Position.of(lines[index], columns[index]);
+    }
+
+    public @NotNull Location location(int index) {
+        checkIndex(index);
+        return new Location(lines[index], columns[index], ends[index] - starts[index], source);
+    }
+
+    /**
+     * @param index
+     *              the token index
+     *
+     * @return the value of a number token as parsed by the tokenizer, or {@code null} if the token is not a number
+     *         or its value does not fit its type.
+     */
+    public @Nullable Number number(int index) {
+        checkIndex(index);
+        if (types[index] != NUMBER)
+            return null;
+        int extra = extras[index];
+        return NumberLiteral.box(numberKinds[extra], numberBits[extra]);
+    }
+
+    public @NotNull String content(int index) {
+        checkIndex(index);
+        int extra = extras[index];
+        if (extra >= 0 && types[index] != NUMBER)
+            return contents[extra];
+        if (pool != null && types[index] != COMMENT)
+            return pool.intern(input, starts[index], ends[index]);
+        return new String(input, starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * @param index
+     *              the token index
+     * @param text
+     *              the text to compare against
+     *
+     * @return {@code true} when the content of the token is equal to the given text, without creating the content.
+     */
+    public boolean contentEquals(int index, @NotNull String text) {
+        checkIndex(index);
+        int extra = extras[index];
+        if (extra >= 0 && types[index] != NUMBER)
+            return contents[extra].equals(text);
+        int start = starts[index];
+        int length = ends[index] - start;
+        if (length != text.length())
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (input[start + i] != text.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param index
+     *               the token index
+     * @param prefix
+     *               the prefix to check for
+     *
+     * @return {@code true} when the content of the token starts with the given prefix, without creating the content.
+     */
+    public boolean startsWith(int index, @NotNull String prefix) {
+        checkIndex(index);
+        int extra = extras[index];
+        if (extra >= 0 && types[index] != NUMBER)
+            return contents[extra].startsWith(prefix);
+        int start = starts[index];
+        int length = prefix.length();
+        if (ends[index] - start < length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (input[start + i] != prefix.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    /**
+     * Range of the tokens of a stream.
+     */
+    static final class Slice extends AbstractList<Token> implements RandomAccess {
+
+        private final TokenStream stream;
+        private final int from;
+        private final int to;
+
+        private Slice(TokenStream stream, int from, int to) {
+            this.stream = stream;
+            this.from = from;
+            this.to = to;
+        }
+
+        TokenStream tokens() {
+            return stream;
+        }
+
+        /**
+         * @return index of the first token in the stream, inclusive.
+         */
+        int from() {
+            return from;
+        }
+
+        /**
+         * @return index of the last token in the stream, exclusive.
+         */
+        int to() {
+            return to;
+        }
+
+        @Override
+        public Token get(int index) {
+            if (index < 0 || index >= to - from)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (to - from));
+            return stream.get(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public @NotNull List<Token> subList(int fromIndex, int toIndex) {
+            if (fromIndex < 0 || toIndex > to - from || fromIndex > toIndex)
+                throw new IndexOutOfBoundsException("From: " + fromIndex + ", To: " + toIndex + ", Size: " + (to - from));
+            return new Slice(stream, from + fromIndex, from + toIndex);
+        }
+    }
+}
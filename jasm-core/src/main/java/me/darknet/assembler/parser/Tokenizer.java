@@ -1,16 +1,56 @@
 package me.darknet.assembler.parser;
 
+import me.darknet.assembler.error.Error;
 import me.darknet.assembler.error.ErrorCollector;
 import me.darknet.assembler.error.Result;
 import me.darknet.assembler.util.Location;
 import me.darknet.assembler.util.Range;
-
+import me.darknet.assembler.util.StringPool;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
 public class Tokenizer {
 
+    private static final int EDIT_CAPACITY = 16;
+    private static final CharScanner SCANNER = CharScanner.get();
+
+    private final StringPool pool;
+
+    public Tokenizer() {
+        this(null);
+    }
+
+    /**
+     * @param pool
+     *             pool used to intern the content of tokens, so repeated identifiers and descriptors share one
+     *             string instance. May be {@code null} to create a new string for every token.
+     */
+    public Tokenizer(@Nullable StringPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return the pool used to intern the content of tokens, or {@code null} if contents are not interned.
+     */
+    public @Nullable StringPool getPool() {
+        return pool;
+    }
+
     public static boolean isOperator(char c) {
         return c == '{' || c == '}' || c == ':' || c == ',';
     }
@@ -36,9 +76,9 @@ public static boolean isNumberContinuation(char c) {
     }
 
     private void handleComment(TokenizerContext ctx, char currentChar) {
-        while (currentChar != '\n') {
-            currentChar = ctx.peek();
-            ctx.forward();
+        if (currentChar != '\n') {
+            ctx.forwardTo(SCANNER.lineEnd(ctx.input, ctx.index + 1, ctx.limit));
+            return;
         }
         ctx.collectToken();
         ctx.leaveComment();
@@ -47,23 +87,17 @@ private void handleComment(TokenizerContext ctx, char currentChar) {
     }
 
     private void handleMultiLineComment(TokenizerContext ctx, char currentChar) {
-        while (true) {
-            if (currentChar == '*' && ctx.peek() == '/') {
-                break;
-            }
-            currentChar = ctx.peek();
-            if (currentChar == '\n') {
-                ctx.nextLine();
-            }
-            ctx.forward();
-            if (currentChar == '\\') {
-                ctx.processEscape();
-            }
+        if (currentChar == '*' && ctx.peek() == '/') {
+            ctx.collectToken();
+            ctx.leaveMultilineComment();
+            ctx.next();
+            ctx.next();
+            return;
         }
-        ctx.next();
-        ctx.next();
-        ctx.collectToken();
-        ctx.leaveMultilineComment();
+        if (currentChar == '\n') {
+            ctx.nextLine();
+        }
+        ctx.forwardTo(SCANNER.commentEnd(ctx.input, ctx.index + 1, ctx.limit));
     }
 
     private void handleString(TokenizerContext ctx, char currentChar) {
@@ -84,7 +118,7 @@ private void handleString(TokenizerContext ctx, char currentChar) {
                 ctx.nextLine();
                 ctx.next();
             }
-            default -> ctx.forward();
+            default -> ctx.forwardTo(SCANNER.literalEnd(ctx.input, ctx.index + 1, ctx.limit, '"'));
         }
     }
 
@@ -93,8 +127,10 @@ private void handleWhitespace(TokenizerContext ctx, char currentChar) {
         ctx.collectToken();
         if (currentChar == '\n') {
             ctx.nextLine();
+            ctx.next();
+        } else {
+            ctx.skipTo(SCANNER.blankEnd(ctx.input, ctx.index + 1, ctx.limit));
         }
-        ctx.next();
     }
 
     private void handleNormal(TokenizerContext ctx, char currentChar) {
@@ -106,7 +142,6 @@ private void handleNormal(TokenizerContext ctx, char currentChar) {
             } else {
                 ctx.enterMultilineComment();
             }
-            return;
         } else if (currentChar == '"') {
             ctx.next();
             ctx.enterString();
@@ -118,7 +153,7 @@ private void handleNormal(TokenizerContext ctx, char currentChar) {
             ctx.forward();
             ctx.collectToken();
         } else {
-            ctx.forward();
+            ctx.forwardTo(SCANNER.identifierEnd(ctx.input, ctx.index + 1, ctx.limit));
         }
     }
 
@@ -140,39 +175,244 @@ private void handleCharacter(TokenizerContext ctx, char currentChar) {
                 ctx.nextLine();
                 ctx.next();
             }
-            default -> ctx.forward();
+            default -> ctx.forwardTo(SCANNER.literalEnd(ctx.input, ctx.index + 1, ctx.limit, '\''));
         }
     }
 
+    /**
+     * Tokenize the given input. The returned list is a {@link TokenStream}, tokens are stored packed and only
+     * materialize their content and location when requested.
+     *
+     * @param source
+     *               the name of the source
+     * @param input
+     *               the input to tokenize
+     *
+     * @return the tokens, as a {@link TokenStream}
+     */
     public Result<List<Token>> tokenize(String source, String input) {
-        TokenizerContext ctx = new TokenizerContext();
-        ctx.input = input;
-        ctx.buffer = new StringBuffer();
-        ctx.source = source;
-        int length = input.length();
+        char[] chars = input.toCharArray();
+        TokenizerContext ctx = new TokenizerContext(new TokenStream(source, chars, pool), chars, source, pool);
+        int length = chars.length;
         while (ctx.index < length) {
-            char c = input.charAt(ctx.index);
-            if (ctx.isComment()) {
-                handleComment(ctx, c);
-            } else if (ctx.isMultilineComment()) {
-                handleMultiLineComment(ctx, c);
-            } else if (ctx.isString()) {
-                handleString(ctx, c);
-            } else if (ctx.isCharacter()) {
-                handleCharacter(ctx, c);
-            } else if (Character.isWhitespace(c)) {
-                handleWhitespace(ctx, c);
-            } else {
-                handleNormal(ctx, c);
-            }
+            step(ctx);
         }
 
         ctx.collectToken();
 
+        ctx.tokens.errors = ctx.errors.getErrors();
         return new Result<>(ctx.tokens, ctx.errors.getErrors(), ctx.errors.getWarns());
     }
 
-    private static class TokenizerContext {
+    /**
+     * Tokenize a chunk of an input which starts in the default state of the lexer, see {@link DeclarationSplitter}.
+     * The tokens keep their absolute offsets, lines and columns in the input.
+     */
+    TokenStream tokenize(String source, char[] chars, DeclarationSplitter.Chunk chunk, StringPool pool) {
+        int length = chunk.end() - chunk.start();
+        TokenStream tokens = new TokenStream(source, chars, Math.max(EDIT_CAPACITY, length / 8), pool);
+        TokenizerContext ctx = new TokenizerContext(tokens, chars, source, pool);
+        ctx.index = chunk.start();
+        ctx.limit = chunk.end();
+        ctx.line = chunk.line();
+        ctx.column = chunk.column();
+        while (ctx.index < ctx.limit) {
+            step(ctx);
+        }
+
+        ctx.collectToken();
+
+        tokens.errors = ctx.errors.getErrors();
+        return tokens;
+    }
+
+    /**
+     * Tokenize the input of a reader. The input is read in chunks as tokens are requested, so only a small window of
+     * it is kept in memory at any time.
+     *
+     * @param source
+     *               the name of the source
+     * @param reader
+     *               the reader to tokenize
+     *
+     * @return iterator over the tokens
+     */
+    public TokenReader reader(String source, Reader reader) {
+        return new TokenReader(this, source, reader, TokenReader.DEFAULT_WINDOW);
+    }
+
+    /**
+     * Tokenize the UTF-8 encoded input of a channel, which is decoded in chunks.
+     *
+     * @param source
+     *                the name of the source
+     * @param channel
+     *                the channel to tokenize
+     *
+     * @return iterator over the tokens
+     *
+     * @see #reader(String, Reader)
+     */
+    public TokenReader reader(String source, ReadableByteChannel channel) {
+        return reader(source, Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1));
+    }
+
+    /**
+     * Tokenize a UTF-8 encoded file. The file is memory-mapped and decoded in chunks, so the decoded text is never
+     * fully held in memory.
+     *
+     * @param path
+     *             the file to tokenize
+     *
+     * @return iterator over the tokens
+     *
+     * @throws IOException
+     *                     when the file could not be opened
+     * @see #reader(String, Reader)
+     */
+    public TokenReader reader(Path path) throws IOException {
+        String source = path.toString();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            // too large for a single mapping
+            return reader(source, channel);
+        }
+        try (channel) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return reader(source, new TokenReader.DecodingReader(mapped));
+        }
+    }
+
+    /**
+     * Update a previously tokenized input after a text edit. Only the region around the edit is lexed again, starting
+     * from the last token boundary before the edit and stopping as soon as the lexer is back in step with the previous
+     * tokens. The remaining tokens are reused and shifted, {@link Token}s handed out by the previous stream for them
+     * are moved to the returned stream.
+     * <p>
+     * The previous stream is consumed: the tokens it handed out are moved or dropped, and views it hands out
+     * afterwards are of the text before the edit. Only lexing is bound by the size of the edit, the text and the
+     * arrays of the tokens are copied into the returned stream, which takes time linear in the size of the input.
+     *
+     * @param previous
+     *                 the tokens of the text before the edit
+     * @param offset
+     *                 the offset of the edit in the previous text
+     * @param removed
+     *                 the amount of characters removed at the offset
+     * @param inserted
+     *                 the text inserted at the offset
+     *
+     * @return the tokens of the edited text
+     */
+    public Result<TokenStream> retokenize(TokenStream previous, int offset, int removed, String inserted) {
+        char[] old = previous.input();
+        if (offset < 0 || removed < 0 || offset + removed > old.length)
+            throw new IndexOutOfBoundsException(
+                    "Edit [" + offset + ", " + (offset + removed) + ") out of bounds for length " + old.length
+            );
+        int delta = inserted.length() - removed;
+        char[] chars = new char[old.length + delta];
+        System.arraycopy(old, 0, chars, 0, offset);
+        inserted.getChars(0, inserted.length(), chars, offset);
+        System.arraycopy(old, offset + removed, chars, offset + inserted.length(), old.length - offset - removed);
+
+        // restart from the last token before the edit that the lexer can start on in its default state
+        int keep = previous.indexOf(offset) - 1;
+        while (keep >= 0 && !isRestartable(previous.type(keep)))
+            keep--;
+        String source = previous.source();
+        StringPool pool = previous.pool();
+        TokenizerContext ctx = new TokenizerContext(new TokenStream(source, chars, EDIT_CAPACITY, pool), chars,
+                source, pool);
+        if (keep < 0) {
+            keep = 0;
+        } else {
+            ctx.index = previous.start(keep);
+            ctx.line = previous.line(keep);
+            ctx.column = previous.column(keep);
+        }
+        Location restart = new Location(ctx.line, ctx.column, 0, source);
+
+        // lex until a token lines up with a previous token behind the edit
+        int editEnd = offset + inserted.length();
+        int resume = -1;
+        int lineDelta = 0;
+        int checked = 0;
+        int length = chars.length;
+        while (ctx.index < length && resume < 0) {
+            step(ctx);
+            TokenStream tokens = ctx.tokens;
+            for (; checked < tokens.size() && resume < 0; checked++) {
+                int start = tokens.start(checked);
+                if (start < editEnd || !isRestartable(tokens.type(checked)))
+                    continue;
+                int candidate = previous.indexOf(start - delta);
+                if (candidate < previous.size() && previous.start(candidate) == start - delta
+                        && previous.type(candidate) == tokens.type(checked)
+                        && previous.column(candidate) == tokens.column(checked)) {
+                    resume = candidate;
+                    lineDelta = tokens.line(checked) - previous.line(candidate);
+                    tokens.truncate(checked);
+                }
+            }
+        }
+
+        TokenStream result;
+        List<Error> errors = new ArrayList<>();
+        for (Error error : previous.errors) {
+            if (error.getLocation().compareTo(restart) < 0)
+                errors.add(error);
+        }
+        if (resume < 0) {
+            ctx.collectToken();
+            errors.addAll(ctx.errors.getErrors());
+            result = TokenStream.splice(previous, chars, keep, ctx.tokens, previous.size(), delta, 0);
+        } else {
+            errors.addAll(ctx.errors.getErrors());
+            Location synced = previous.location(resume);
+            for (Error error : previous.errors) {
+                Location location = error.getLocation();
+                if (location.compareTo(synced) >= 0) {
+                    errors.add(new Error(error.getMessage(), new Location(location.line() + lineDelta,
+                            location.column(), location.length(), location.source())));
+                }
+            }
+            result = TokenStream.splice(previous, chars, keep, ctx.tokens, resume, delta, lineDelta);
+        }
+        result.errors = errors;
+        return new Result<>(result, errors, Collections.emptyList());
+    }
+
+    private static boolean isRestartable(TokenType type) {
+        // these tokens are always started by the lexer in its default state
+        return type == TokenType.IDENTIFIER || type == TokenType.NUMBER || type == TokenType.OPERATOR;
+    }
+
+    void step(TokenizerContext ctx) {
+        char c = ctx.input[ctx.index];
+        if (ctx.isComment()) {
+            handleComment(ctx, c);
+        } else if (ctx.isMultilineComment()) {
+            handleMultiLineComment(ctx, c);
+        } else if (ctx.isString()) {
+            handleString(ctx, c);
+        } else if (ctx.isCharacter()) {
+            handleCharacter(ctx, c);
+        } else if (Character.isWhitespace(c)) {
+            handleWhitespace(ctx, c);
+        } else {
+            handleNormal(ctx, c);
+        }
+    }
+
+    static class TokenizerContext {
+
+        /**
+         * Most characters a single step can look at ahead of the current index, a backslash followed by a unicode
+         * escape.
+         */
+        static final int LOOKAHEAD = 6;
 
         private int line = 1;
         private int column = 1;
@@ -181,17 +421,151 @@ private static class TokenizerContext {
         private boolean inCharacter;
         private boolean inMultilineComment;
         private boolean inComment;
-        private StringBuffer buffer;
+        // the current lexeme, as long as it is a verbatim slice of the input it is tracked as [start, end),
+        // once it diverges (escapes) its content is copied into the buffer
+        private int lexemeStart = -1;
+        private int lexemeEnd;
+        private int lexemeLine;
+        private int lexemeColumn;
+        private StringBuilder buffer;
+        private final NumberLiteral number = new NumberLiteral();
+        private byte numberKind;
         private final ErrorCollector errors = new ErrorCollector();
-        private final List<Token> tokens = new ArrayList<>();
+        // tokens are either packed into the stream, or handed to the consumer one by one
+        private final TokenStream tokens;
+        private final Consumer<Token> consumer;
+
+        // the input window, when reading from a reader only the unprocessed part of the input is kept
+        private char[] input;
+        private int limit;
+        private int base;
+        private final Reader reader;
+        private boolean eof;
+        private final String source;
+        private final StringPool pool;
+
+        private TokenizerContext(TokenStream tokens, char[] input, String source, StringPool pool) {
+            this.tokens = tokens;
+            this.consumer = null;
+            this.input = input;
+            this.limit = input.length;
+            this.reader = null;
+            this.eof = true;
+            this.source = source;
+            this.pool = pool;
+        }
 
-        private String input, source;
+        TokenizerContext(Consumer<Token> consumer, Reader reader, int capacity, String source, StringPool pool) {
+            this.tokens = null;
+            this.consumer = consumer;
+            this.input = new char[Math.max(capacity, LOOKAHEAD * 2)];
+            this.reader = reader;
+            this.source = source;
+            this.pool = pool;
+        }
+
+        /**
+         * @return {@code true} if there is input left to process.
+         */
+        boolean hasInput() {
+            return index < limit;
+        }
+
+        /**
+         * Make sure the window holds enough characters for the next step, unless the end of the input is reached.
+         * Characters before the current lexeme are dropped from the window.
+         *
+         * @throws IOException
+         *                     when reading fails
+         */
+        void fill() throws IOException {
+            while (!eof && index + LOOKAHEAD > limit) {
+                int keep = lexemeStart < 0 ? index : lexemeStart;
+                if (keep > 0) {
+                    System.arraycopy(input, keep, input, 0, limit - keep);
+                    limit -= keep;
+                    index -= keep;
+                    base += keep;
+                    if (lexemeStart >= 0) {
+                        lexemeStart -= keep;
+                        lexemeEnd -= keep;
+                    }
+                }
+                if (input.length - limit < LOOKAHEAD)
+                    input = Arrays.copyOf(input, input.length * 2);
+                int read = reader.read(input, limit, input.length - limit);
+                if (read < 0)
+                    eof = true;
+                else
+                    limit += read;
+            }
+        }
+
+        List<Error> errors() {
+            return errors.getErrors();
+        }
+
+        private void beginLexeme() {
+            if (lexemeStart < 0) {
+                lexemeStart = index;
+                lexemeEnd = index;
+                lexemeLine = line;
+                lexemeColumn = column;
+            }
+        }
+
+        private StringBuilder buffer() {
+            if (buffer == null) {
+                buffer = new StringBuilder();
+                buffer.append(input, lexemeStart, lexemeEnd - lexemeStart);
+            }
+            return buffer;
+        }
 
         public void forward() {
-            buffer.append(input.charAt(index));
+            beginLexeme();
+            if (buffer == null && lexemeEnd == index) {
+                lexemeEnd++;
+            } else {
+                buffer().append(input[index]);
+            }
             next();
         }
 
+        /**
+         * Add the characters up to the given index to the current lexeme, none of them may be a newline.
+         *
+         * @param end
+         *            index of the first character not to add
+         */
+        void forwardTo(int end) {
+            beginLexeme();
+            int count = end - index;
+            if (buffer == null && lexemeEnd == index) {
+                lexemeEnd = end;
+            } else {
+                buffer().append(input, index, count);
+            }
+            index = end;
+            column += count;
+        }
+
+        /**
+         * Skip the characters up to the given index, none of them may be a newline.
+         *
+         * @param end
+         *            index of the first character not to skip
+         */
+        void skipTo(int end) {
+            column += end - index;
+            index = end;
+        }
+
+        private void append(char c) {
+            beginLexeme();
+            buffer().append(c);
+        }
+
         public void nextLine() {
             line++;
             column = 0;
@@ -204,10 +578,12 @@ public void next() {
 
         public void enterComment() {
             inComment = true;
+            beginLexeme();
         }
 
         public void enterMultilineComment() {
             inMultilineComment = true;
+            beginLexeme();
         }
 
         public void leaveComment() {
@@ -220,6 +596,7 @@ public void leaveMultilineComment() {
 
         public void enterString() {
             inString = true;
+            beginLexeme();
         }
 
         public void leaveString() {
@@ -228,6 +605,7 @@ public void leaveString() {
 
         public void enterCharacter() {
             inCharacter = true;
+            beginLexeme();
         }
 
         public void leaveCharacter() {
@@ -251,74 +629,129 @@ public boolean isMultilineComment() {
         }
 
         public char peek() {
-            return input.charAt(index + 1);
+            return peek(1);
         }
 
         public char peek(int offset) {
-            return input.charAt(index + offset);
+            int idx = index + offset;
+            return idx >= 0 && idx < limit ? input[idx] : '\0';
         }
 
-        public void throwError(String message) {
-            errors.addError(message, new Location(line, column, buffer.length(), source));
+        private int lexemeLength() {
+            if (lexemeStart < 0)
+                return 0;
+            return buffer == null ? lexemeEnd - lexemeStart : buffer.length();
         }
 
-        static final Pattern NUMBER_PATTERN = Pattern.compile(
-                "-?(?:(?:(?:(?:(?:\\d[\\d_]*\\.(?:\\d[\\d_]*)?([eE]-?\\d[\\d_]*)?)|(?:\\.(?:\\d[\\d_]*)(?:[eE]-?\\d[\\d_]*)?)|(?:(?:\\d[\\d_]*)(?:[eE]-?\\d[\\d_]*))|(?:0[xX][\\dA-Fa-f_]*(\\.[\\dA-Fa-f_]*)?[pP]-?\\d[\\d_]*)|(0[bB][01]+))[fFdD]?)|(?:(?:(?:0[xX][\\dA-fa-f_]+)|(?:\\d[\\d_]*))[LlFfDd]?)))"
-        );
-
-        boolean checkIfNumber(String content) {
-            // note: in this case, a regex is easier to implement than a state machine
-            return NUMBER_PATTERN.matcher(content).matches();
+        public void throwError(String message) {
+            errors.addError(message, new Location(line, column, lexemeLength(), source));
         }
 
-        public TokenType getType(String content) {
-            if (content.length() == 1) {
-                if (isOperator(content.charAt(0)))
-                    return TokenType.OPERATOR;
+        private TokenType getType(int start, int end) {
+            char first = input[start];
+            if (end - start == 1 && isOperator(first))
+                return TokenType.OPERATOR;
+            // only tokens starting like a number need to go through the number state machine
+            if (isNumber(first) || first == '-' || first == '.') {
+                numberKind = number.scan(input, start, end);
+                if (numberKind != NumberLiteral.NONE)
+                    return TokenType.NUMBER;
             }
-            TokenType type = TokenType.IDENTIFIER;
-            // check if all the characters in the token are digits (and the '-' sign)
-            if (checkIfNumber(content))
-                type = TokenType.NUMBER;
-            return type;
+            return TokenType.IDENTIFIER;
         }
 
-        public void collectToken() {
-
-            String content = buffer.toString();
-            Range range = new Range(index - content.length(), index);
-            Location location = new Location(line, Math.max(0, column - content.length()), content.length(), source);
-
+        void collectToken() {
+            TokenType type;
             if (inString) {
-                tokens.add(new Token(range, location, TokenType.STRING, content));
+                type = TokenType.STRING;
             } else if (inCharacter) {
-                tokens.add(new Token(range, location, TokenType.CHARACTER, content));
+                type = TokenType.CHARACTER;
             } else if (inComment || inMultilineComment) {
-                tokens.add(new Token(range, location, TokenType.COMMENT, content));
-            } else if (!buffer.isEmpty()) {
-                TokenType type = getType(content);
-                tokens.add(new Token(range, location, type, content));
+                type = TokenType.COMMENT;
+            } else if (lexemeLength() > 0) {
+                // outside of strings and comments there are no escapes, so the lexeme is always verbatim
+                type = getType(lexemeStart, lexemeEnd);
+            } else {
+                type = null;
             }
 
-            // clear buffer
-            buffer.setLength(0); // reset buffer
+            if (type != null) {
+                // content is only kept aside when it is not a verbatim slice of the input
+                String content = buffer == null ? null : intern(type, buffer.toString());
+                int start = lexemeStart < 0 ? index : lexemeStart;
+                int line = lexemeStart < 0 ? this.line : lexemeLine;
+                int column = lexemeStart < 0 ? this.column : lexemeColumn;
+                if (tokens == null) {
+                    Range range = new Range(base + start, base + index);
+                    Location location = new Location(line, column, index - start, source);
+                    if (content == null)
+                        content = pool == null || type == TokenType.COMMENT
+                                ? new String(input, start, index - start)
+                                : pool.intern(input, start, index);
+                    Number value = type == TokenType.NUMBER ? NumberLiteral.box(numberKind, number.bits()) : null;
+                    consumer.accept(new Token(range, location, type, content, value));
+                } else if (type == TokenType.NUMBER) {
+                    tokens.addNumber(start, index, line, column, numberKind, number.bits());
+                } else {
+                    tokens.add(type, start, index, line, column, content);
+                }
+            }
+
+            // reset lexeme
+            lexemeStart = -1;
+            buffer = null;
+        }
+
+        private String intern(TokenType type, String content) {
+            // comments are rarely repeated and may be large, they are not worth pooling
+            return pool == null || type == TokenType.COMMENT ? content : pool.intern(content);
         }
 
         public void processEscape() {
-            switch (input.charAt(index++)) {
-                case 'n' -> buffer.append('\n');
-                case 'r' -> buffer.append('\r');
-                case 't' -> buffer.append('\t');
-                case 'b' -> buffer.append('\b');
-                case 'f' -> buffer.append('\f');
-                case '"' -> buffer.append('"');
-                case '\'' -> buffer.append('\'');
+            if (index >= limit) {
+                append('\\');
+                return;
+            }
+            char escaped = input[index];
+            next();
+            switch (escaped) {
+                case 'n' -> append('\n');
+                case 'r' -> append('\r');
+                case 't' -> append('\t');
+                case 'b' -> append('\b');
+                case 'f' -> append('\f');
+                case '"' -> append('"');
+                case '\'' -> append('\'');
                 case 'u' -> {
-                    buffer.append((char) Integer.parseInt(input.substring(index, index + 4), 16));
+                    int value = index + 4 <= limit ? parseHex(index) : -1;
+                    if (value < 0) {
+                        errors.addError("Invalid unicode escape", new Location(line, column, 0, source));
+                        append('\\');
+                        append('u');
+                        return;
+                    }
+                    append((char) value);
                     index += 4;
+                    column += 4;
+                }
+                case '\n' -> {
+                    append('\\');
+                    nextLine();
+                    column++;
                 }
-                default -> buffer.append('\\');
+                default -> append('\\');
+            }
+        }
+
+        private int parseHex(int offset) {
+            int value = 0;
+            for (int i = offset; i < offset + 4; i++) {
+                int digit = Character.digit(input[i], 16);
+                if (digit < 0)
+                    return -1;
+                value = (value << 4) | digit;
             }
+            return value;
         }
 
     }
@@ -20,7 +20,13 @@
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
 
+/**
+ * Processor of parsed declarations into the specific elements of classes, fields and methods. Every processing runs
+ * on a context of its own, a processor can be shared by any amount of threads.
+ */
 public class ASTProcessor {
 
     static {
@@ -109,6 +115,9 @@ public class ASTProcessor {
         });
     }
 
+    private static final String[] CLASS_MEMBERS = { "field", "method", "annotation", "visible-annotation",
+            "invisible-annotation", "type-visible-annotation", "type-invisible-annotation", "signature" };
+
     private final BytecodeFormat format;
 
     public ASTProcessor(BytecodeFormat format) {
@@ -159,9 +168,7 @@ private static ASTClass parseClass(ParserContext ctx, ASTDeclaration declaration
         ASTIdentifier name = ctx.validateIdentifier(elements.get(nameIndex), "class name", declaration);
         Modifiers modifiers = parseModifiers(ctx, nameIndex, declaration);
         List<ASTElement> classBody = ctx.parseDeclarations(
-                body.elements(), "class member or member attribute", body.location(), "field", "method", "annotation",
-                "visible-annotation", "invisible-annotation", "type-visible-annotation", "type-invisible-annotation",
-                "signature"
+                body.elements(), "class member or member attribute", body.location(), CLASS_MEMBERS
         );
 
         // take the 'pending' attributes like signatures, annotations, inner classes, etc and pass them along to the class.
@@ -271,24 +278,8 @@ private static ASTMethod parseMethod(ParserContext ctx, ASTDeclaration declarati
         if (body.values().containsKey("code")) {
             code = ctx
                     .validateEmptyableElement(body.values().get("code"), ElementType.CODE, "method code", declaration);
-            // validate instructions
-            for (ASTInstruction instruction : code.instructions()) {
-                if (instruction == null)
-                    continue;
-                if (instruction instanceof ASTLabel)
-                    continue;
-                Instruction<?> insn = ctx.instructions.get(instruction.identifier().content());
-                if (insn == null) {
-                    ctx.throwError(
-                            "Unknown instruction: " + instruction.identifier().content(),
-                            instruction.identifier().location()
-                    );
-                    continue;
-                }
-                // validate arguments
-                insn.verify(instruction, ctx);
-                instructions.add(insn);
-            }
+            if (code != null && code.isParsed())
+                instructions = verifyCode(ctx, code);
         }
         int nameIndex = lastIndex - 2;
         int descIndex = lastIndex - 1;
@@ -296,10 +287,62 @@ private static ASTMethod parseMethod(ParserContext ctx, ASTDeclaration declarati
         ASTIdentifier desc = ctx.validateIdentifier(elements.get(descIndex), "method descriptor", declaration);
         Modifiers modifiers = parseModifiers(ctx, nameIndex, declaration);
         ProcessorAttributes attributes = ctx.result.collectAttributes();
+        if (code != null && !code.isParsed()) {
+            // lazily parsed code is also verified on first access
+            ASTCode lazyCode = code;
+            BytecodeFormat format = ctx.format;
+            return new ASTMethod(modifiers, name, desc, parameters, parameterAnnotations, defaultValueElement, exceptions, lazyCode, () -> {
+                ParserContext lazyCtx = new ParserContext(format);
+                lazyCtx.errorCollector.addErrors(lazyCode.errors());
+                List<Instruction<?>> lazyInstructions = verifyCode(lazyCtx, lazyCode);
+                return new Result<>(lazyInstructions, lazyCtx.errorCollector.getErrors(), lazyCtx.errorCollector.getWarns());
+            }, format).accept(attributes);
+        }
         return new ASTMethod(modifiers, name, desc, parameters, parameterAnnotations, defaultValueElement, exceptions, code, instructions, ctx.format)
                 .accept(attributes);
     }
 
+    private static List<Instruction<?>> verifyCode(ParserContext ctx, ASTCode code) {
+        List<Instruction<?>> instructions = new ArrayList<>();
+        // validate instructions
+        for (ASTInstruction instruction : code.instructions()) {
+            if (instruction == null)
+                continue;
+            if (instruction instanceof ASTLabel)
+                continue;
+            Instruction<?> insn = verifyInstruction(ctx, instruction);
+            if (insn != null)
+                instructions.add(insn);
+        }
+        return instructions;
+    }
+
+    /**
+     * Resolve and verify a single instruction, errors are reported to the context.
+     *
+     * @param ctx
+     *                    the context to report errors to
+     * @param instruction
+     *                    the instruction to verify, not a label
+     *
+     * @return the instruction of the instruction set, also when its operands are invalid, or {@code null} if the
+     *         instruction set has no such instruction.
+     */
+    public static @Nullable Instruction<?> verifyInstruction(ParserContext ctx, ASTInstruction instruction) {
+        Instruction<?> insn = ctx.instructions.get(instruction.identifier().content());
+        if (insn == null) {
+            ctx.throwError(
+                    "Unknown instruction: " + instruction.identifier().content(),
+                    instruction.identifier().location()
+            );
+            return null;
+        }
+        instruction.setInstructionId(insn.id());
+        // validate arguments
+        insn.verify(instruction, ctx);
+        return insn;
+    }
+
     static ASTElement validateElementValue(ParserContext ctx, ASTElement value) {
         switch (value.type()) {
             case NUMBER, STRING, CHARACTER -> {
@@ -450,18 +493,55 @@ public static ASTInner parseInner(ParserContext ctx, ASTDeclaration declaration)
 
     public Result<List<ASTElement>> processAST(List<ASTElement> ast) {
         ParserContext ctx = new ParserContext(format);
-        for (ASTElement astElement : ast) {
-            if (astElement instanceof ASTDeclaration) {
-                ASTElement parsed = parseDeclaration(ctx, (ASTDeclaration) astElement);
-                if (parsed != null)
-                    ctx.add(parsed);
-            } else {
-                ctx.throwUnexpectedElementError("declaration", astElement);
-            }
-        }
+        ctx.processTopLevel(ast);
+        return new Result<>(ctx.result.getResult(), ctx.errorCollector.getErrors(), ctx.errorCollector.getWarns());
+    }
+
+    /**
+     * Process the declarations in parallel. The declarations are split into groups of a member (class, field or
+     * method) and the attribute declarations preceding it, which are processed on the given pool, as are the members
+     * of class bodies. Results, errors and warnings are merged in source order, the result is the same as
+     * {@link #processAST(List)}.
+     * <p>
+     * When a member fails to take the attributes preceding it, they would attach to the next member, in which case
+     * the declarations are processed sequentially.
+     *
+     * @param ast
+     *             the declarations to process
+     * @param pool
+     *             the pool to process the groups on
+     *
+     * @return the processed declarations
+     */
+    public Result<List<ASTElement>> processAST(List<ASTElement> ast, ForkJoinPool pool) {
+        ParserContext ctx = new ParserContext(format, pool);
+        if (!ctx.processParallel(ast, ParserContext::processTopLevel))
+            ctx.processTopLevel(ast);
         return new Result<>(ctx.result.getResult(), ctx.errorCollector.getErrors(), ctx.errorCollector.getWarns());
     }
 
+    /**
+     * Process a part of a declaration list on its own, typically a single member with the attribute declarations
+     * preceding it. Used to process a member again after it changed, without processing its siblings.
+     *
+     * @param declarations
+     *                     the declarations to process
+     * @param classBody
+     *                     whether the declarations are members of a class body, or top level declarations
+     *
+     * @return the processed declarations
+     */
+    public Result<List<ASTElement>> processMembers(List<ASTElement> declarations, boolean classBody) {
+        if (!classBody)
+            return processAST(declarations);
+        ParserContext ctx = new ParserContext(format);
+        Location location = declarations.isEmpty() ? null : declarations.getFirst().location();
+        List<ASTElement> members = ctx.parseDeclarations(
+                declarations, "class member or member attribute", location, CLASS_MEMBERS
+        );
+        return new Result<>(members, ctx.errorCollector.getErrors(), ctx.errorCollector.getWarns());
+    }
+
     @FunctionalInterface
     private interface DeclarationParser<T extends ASTElement> {
         @Nullable
@@ -475,14 +555,37 @@ enum State {
 
     public static class ParserContext extends Stateful<State> {
 
-        private final ErrorCollector errorCollector = new ErrorCollector();
+        private final ErrorCollector errorCollector;
         private final BytecodeFormat format;
         private final Instructions<?> instructions;
+        private final @Nullable ForkJoinPool pool;
         private ProcessorList result = new ProcessorList();
 
         public ParserContext(BytecodeFormat format) {
+            this(format, null, new ErrorCollector());
+        }
+
+        /**
+         * Context reporting errors and warnings to the given collector, to verify parts of declarations on their own.
+         *
+         * @param format
+         *                  the bytecode format
+         * @param collector
+         *                  the collector to report to
+         */
+        public ParserContext(BytecodeFormat format, ErrorCollector collector) {
+            this(format, null, collector);
+        }
+
+        ParserContext(BytecodeFormat format, @Nullable ForkJoinPool pool) {
+            this(format, pool, new ErrorCollector());
+        }
+
+        private ParserContext(BytecodeFormat format, @Nullable ForkJoinPool pool, ErrorCollector collector) {
+            this.errorCollector = collector;
             this.format = format;
             this.instructions = format.getInstructions();
+            this.pool = pool;
         }
 
         public void add(@NotNull ASTElement element) {
@@ -501,6 +604,18 @@ public boolean isNull(Object value, String expected, Location location) {
             return false;
         }
 
+        /**
+         * Same as {@link #isNull(Object, String, Location)}, but the location of the parent is only looked up when
+         * the error is reported.
+         */
+        public boolean isNull(Object value, String expected, ASTElement parent) {
+            if (value == null) {
+                throwError("Expected " + expected + " but got nothing", parent.location());
+                return true;
+            }
+            return false;
+        }
+
         /**
          * Check if the element is not the expected type.
          *
@@ -523,7 +638,7 @@ public boolean isNotType(ASTElement element, ElementType type, String expected)
 
         public boolean validateCorrect(ASTElement e, ElementType expectedElementType, String description,
                 ASTElement parent) {
-            if (isNull(e, description, parent.location()))
+            if (isNull(e, description, parent))
                 return true;
 
             return isNotType(e, expectedElementType, description);
@@ -549,7 +664,7 @@ public boolean validateCorrect(ASTElement e, ElementType expectedElementType, St
         @SuppressWarnings("unchecked")
         public <T> T validateElement(ASTElement e, ElementType expectedElementType, String description,
                 ASTElement parent) {
-            if (isNull(e, description, parent.location()))
+            if (isNull(e, description, parent))
                 return null;
             if (isNotType(e, expectedElementType, description))
                 return null;
@@ -578,7 +693,7 @@ public <T> T validateElement(ASTElement e, ElementType expectedElementType, Stri
         @SuppressWarnings("unchecked")
         public <T> T validateEmptyableElement(ASTElement e, ElementType expectedElementType, String description,
                 ASTElement parent) {
-            if (isNull(e, description, parent.location()))
+            if (isNull(e, description, parent))
                 return null;
             if (e.type() == ElementType.EMPTY) {
                 return (T) switch (expectedElementType) {
@@ -617,11 +732,11 @@ public <T> T validateEmptyableElement(ASTElement e, ElementType expectedElementT
         @SuppressWarnings("unchecked")
         public <T> List<T> validateArray(ASTArray array, ElementType expectedElements, String description,
                 ASTElement parent) {
-            if (isNull(array, description, parent.location()))
+            if (isNull(array, description, parent))
                 return Collections.emptyList();
             List<T> result = new ArrayList<>();
             for (ASTElement element : array.values()) {
-                if (isNull(element, description, parent.location()))
+                if (isNull(element, description, parent))
                     continue;
                 assert element != null;
                 if (isNotType(element, expectedElements, description))
@@ -646,7 +761,7 @@ public <T> List<T> validateArray(ASTArray array, ElementType expectedElements, S
          * @return the object if all keys are present
          */
         public ASTObject validateObject(ASTElement e, String description, ASTElement parent, String... expectedKeys) {
-            if (isNull(e, description, parent.location()))
+            if (isNull(e, description, parent))
                 return null;
             if (isNotType(e, ElementType.OBJECT, description))
                 return null;
@@ -664,7 +779,7 @@ public ASTObject validateObject(ASTElement e, String description, ASTElement par
         }
 
         public ASTIdentifier validateIdentifier(ASTElement e, String description, ASTElement parent) {
-            if (isNull(e, description, parent.location()))
+            if (isNull(e, description, parent))
                 return null;
             return validateMaybeIdentifier(e, description, parent);
         }
@@ -690,14 +805,36 @@ public ASTIdentifier validateMaybeIdentifier(ASTElement e, String description, A
         List<ASTElement> parseDeclarations(List<@Nullable ASTElement> elements, String expected, Location parent,
                 String... types) {
             ProcessorList old = this.result;
-            ProcessorList result = new ProcessorList();
-            this.result = result;
-            Location lastLocation = parent;
+            this.result = new ProcessorList();
+            if (!processParallel(elements, (worker, group) -> worker.processMembers(group, expected, parent, types)))
+                processMembers(elements, expected, parent, types);
+            List<ASTElement> declarations = this.result.getResult();
+            this.result = old;
+            return declarations;
+        }
+
+        private void processTopLevel(List<? extends @Nullable ASTElement> ast) {
+            for (ASTElement astElement : ast) {
+                if (astElement instanceof ASTDeclaration) {
+                    ASTElement parsed = parseDeclaration(this, (ASTDeclaration) astElement);
+                    if (parsed != null)
+                        add(parsed);
+                } else {
+                    throwUnexpectedElementError("declaration", astElement);
+                }
+            }
+        }
+
+        private void processMembers(List<? extends @Nullable ASTElement> elements, String expected, Location parent,
+                String... types) {
+            ASTElement last = null;
             for (ASTElement element : elements) {
-                if (isNull(element, expected, lastLocation))
+                if (element == null) {
+                    // the location of the previous element is only needed for the error
+                    throwError("Expected " + expected + " but got nothing", last == null ? parent : last.location());
                     continue;
-                assert element != null;
-                lastLocation = element.location();
+                }
+                last = element;
                 if (isNotType(element, ElementType.DECLARATION, expected))
                     continue;
                 ASTDeclaration declaration = (ASTDeclaration) element;
@@ -717,8 +854,65 @@ List<ASTElement> parseDeclarations(List<@Nullable ASTElement> elements, String e
                 if (resultDeclaration != null)
                     result.add(resultDeclaration);
             }
-            this.result = old;
-            return result.getResult();
+        }
+
+        /**
+         * Process the member groups of the declarations on the pool, each with a context of its own, and merge them
+         * into this context.
+         *
+         * @return {@code false} if the declarations have to be processed sequentially instead.
+         */
+        private boolean processParallel(List<? extends @Nullable ASTElement> declarations,
+                BiConsumer<ParserContext, List<ASTElement>> processor) {
+            if (pool == null)
+                return false;
+            List<List<ASTElement>> groups = memberGroups(declarations);
+            if (groups == null || groups.size() < 2)
+                return false;
+            List<ParserContext> workers = pool.submit(() -> groups.parallelStream().map(group -> {
+                ParserContext worker = new ParserContext(format, pool);
+                processor.accept(worker, group);
+                return worker;
+            }).toList()).join();
+            for (int i = 0; i < workers.size() - 1; i++) {
+                // attributes not taken by a failed member pass on to the next member
+                if (workers.get(i).result.hasPendingAttributes())
+                    return false;
+            }
+            for (ParserContext worker : workers) {
+                for (ASTElement element : worker.result.getResult()) {
+                    result.add(element);
+                }
+                errorCollector.addErrors(worker.errorCollector.getErrors());
+                errorCollector.addWarnings(worker.errorCollector.getWarns());
+            }
+            return true;
+        }
+
+        /**
+         * Split declarations after every member, the attribute declarations preceding a member only attach to it.
+         *
+         * @return the groups, or {@code null} if there are elements which are not keyword declarations.
+         */
+        private static @Nullable List<List<ASTElement>> memberGroups(List<? extends @Nullable ASTElement> declarations) {
+            List<List<ASTElement>> groups = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i < declarations.size(); i++) {
+                if (!(declarations.get(i) instanceof ASTDeclaration declaration) || declaration.keyword() == null)
+                    return null;
+                switch (declaration.keyword().content()) {
+                    case ".class", ".field", ".method" -> {
+                        groups.add(new ArrayList<>(declarations.subList(start, i + 1)));
+                        start = i + 1;
+                    }
+                    default -> {
+                        // attributes of the next member
+                    }
+                }
+            }
+            if (start < declarations.size())
+                groups.add(new ArrayList<>(declarations.subList(start, declarations.size())));
+            return groups;
         }
 
         public void throwUnexpectedElementError(String expected, ASTElement actual) {
@@ -9,12 +9,16 @@
 import me.darknet.assembler.ast.specific.ASTRecordComponent;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 
 public class ProcessorList {
 
     private final List<ASTElement> result = new ArrayList<>();
+    // collected attributes, mapped to the size of the result when they were collected
+    private final Map<ASTElement, Integer> collected = new IdentityHashMap<>();
 
     private ProcessorAttributes attributes = new ProcessorAttributes();
 
@@ -22,7 +26,22 @@ public void add(ASTElement element) {
         result.add(element);
     }
 
+    /**
+     * @return The added elements, without the attributes collected by members.
+     */
     public List<ASTElement> getResult() {
+        if (!collected.isEmpty()) {
+            // collected attributes are only dropped once, instead of searching the result on every collection
+            int size = 0;
+            for (int i = 0; i < result.size(); i++) {
+                ASTElement element = result.get(i);
+                Integer collectedAt = collected.get(element);
+                if (collectedAt == null || collectedAt <= i)
+                    result.set(size++, element);
+            }
+            result.subList(size, result.size()).clear();
+            collected.clear();
+        }
         return result;
     }
 
@@ -45,11 +64,21 @@ public ProcessorAttributes collectAttributes() {
         ProcessorAttributes attributes = this.attributes;
         this.attributes = new ProcessorAttributes();
 
-        result.removeAll(attributes.attributes);
+        // only elements already added are removed from the result
+        for (ASTElement attribute : attributes.attributes) {
+            collected.put(attribute, result.size());
+        }
 
         return attributes;
     }
 
+    /**
+     * @return {@code true} if there are attributes which have not been collected by a member yet.
+     */
+    public boolean hasPendingAttributes() {
+        return !attributes.attributes.isEmpty();
+    }
+
     private void addAttribute(ASTElement element) {
         attributes.attributes.add(element);
     }
@@ -15,9 +15,24 @@
 public class Transformer {
 
     private final ASTRootVisitor visitor;
+    private final boolean streamCode;
 
     public Transformer(ASTRootVisitor visitor) {
+        this(visitor, false);
+    }
+
+    /**
+     * @param visitor
+     *                   the visitor to pass the declarations to
+     * @param streamCode
+     *                   whether method code which was not parsed yet is parsed, verified and visited one instruction
+     *                   at a time, see {@link ASTMethod#accept(ErrorCollector, ASTMethodVisitor, boolean)}. Used
+     *                   with declarations parsed and processed with lazy code, the instructions of a method are
+     *                   then only alive while it is visited.
+     */
+    public Transformer(ASTRootVisitor visitor, boolean streamCode) {
         this.visitor = visitor;
+        this.streamCode = streamCode;
     }
 
     /**
@@ -40,10 +55,10 @@ public Result<Void> transform(List<ASTElement> declarations) {
                 }
                 case ASTMethod method -> {
                     ASTMethodVisitor methodVisitor = localVisitor.visitMethod(method.getModifiers(), method.getName(), method.getDescriptor());
-                    method.accept(collector, methodVisitor);
+                    method.accept(collector, methodVisitor, streamCode);
                 }
                 case ASTClass clazz ->
-                        clazz.accept(collector, localVisitor.visitClass(clazz.getModifiers(), clazz.getName()));
+                        clazz.accept(collector, localVisitor.visitClass(clazz.getModifiers(), clazz.getName()), streamCode);
                 case null, default ->
                         collector.addError("Don't know how to process: " + declaration.type(), declaration.location());
             }
@@ -4,10 +4,15 @@
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Map for AST elements, indexable by String and integer.
+ * Map for AST elements, indexable by String and integer. Lookups by String scan the pairs in order until the map
+ * grows past a few entries, from then on the index of the first pair of every key is kept in a hash index. The index
+ * is only written while putting pairs, so a filled map can be read by several threads at once like the rest of the
+ * AST.
  *
  * @param <A>
  *            The key type.
@@ -16,7 +21,9 @@
  */
 public class ElementMap<A extends ASTElement, B extends ASTElement> {
 
+    private static final int INDEX_THRESHOLD = 8;
     private final List<Pair<A, B>> values = new ArrayList<>();
+    private Map<String, Integer> index;
 
     public static <A extends ASTElement, B extends ASTElement> ElementMap<A, B> empty() {
         return new ElementMap<>();
@@ -24,6 +31,14 @@ public static <A extends ASTElement, B extends ASTElement> ElementMap<A, B> empt
 
     public void put(A key, B value) {
         values.add(new Pair<>(key, value));
+        if (index != null)
+            index.putIfAbsent(key.content(), values.size() - 1);
+        else if (values.size() > INDEX_THRESHOLD)
+            buildIndex();
+    }
+
+    public void replace(int index, B value) {
+        values.set(index, new Pair<>(values.get(index).first(), value));
     }
 
     @SuppressWarnings("unchecked")
@@ -33,12 +48,8 @@ public <T extends B> T get(int index) {
 
     @SuppressWarnings("unchecked")
     public <T extends B> T get(String content) {
-        for (Pair<A, B> pair : values) {
-            if (pair.first().content().equals(content)) {
-                return (T) pair.second();
-            }
-        }
-        return null;
+        int i = indexOf(content);
+        return i < 0 ? null : (T) values.get(i).second();
     }
 
     public A key(int index) {
@@ -46,12 +57,8 @@ public A key(int index) {
     }
 
     public A key(String content) {
-        for (Pair<A, B> pair : values) {
-            if (pair.first().content().equals(content)) {
-                return pair.first();
-            }
-        }
-        return null;
+        int i = indexOf(content);
+        return i < 0 ? null : values.get(i).first();
     }
 
     public Pair<A, B> pair(int index) {
@@ -63,12 +70,34 @@ public Collection<Pair<A, B>> pairs() {
     }
 
     public boolean containsKey(String content) {
-        for (Pair<A, B> pair : values) {
-            if (pair.first().content().equals(content)) {
-                return true;
+        return indexOf(content) >= 0;
+    }
+
+    /**
+     * @param content
+     *                the key content
+     *
+     * @return index of the first pair with the key, or {@code -1} if there is none.
+     */
+    public int indexOf(String content) {
+        Map<String, Integer> index = this.index;
+        if (index == null) {
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i).first().content().equals(content))
+                    return i;
             }
+            return -1;
+        }
+        Integer i = index.get(content);
+        return i == null ? -1 : i;
+    }
+
+    private void buildIndex() {
+        Map<String, Integer> index = new HashMap<>(values.size() * 2);
+        for (int i = 0; i < values.size(); i++) {
+            index.putIfAbsent(values.get(i).first().content(), i);
         }
-        return false;
+        this.index = index;
     }
 
     public List<ASTElement> elements() {
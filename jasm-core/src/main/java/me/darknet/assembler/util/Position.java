@@ -0,0 +1,84 @@
+package me.darknet.assembler.util;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Source positions packed into a {@code long}, the line in the upper and the column in the lower 32 bits. Packed
+ * positions compare like {@link Location#compareTo(Location)} without creating a {@link Location}, which is only
+ * needed once a position is reported. The length and source of a location are not part of a position, the length is
+ * given by the range of the element and the source is the same for every position of a token stream.
+ */
+public final class Position {
+
+    /**
+     * Position of an element without any location.
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private Position() {
+    }
+
+    /**
+     * @param line
+     *               the line
+     * @param column
+     *               the column
+     *
+     * @return the packed position.
+     */
+    public static long of(int line, int column) {
+        return ((long) line << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param location
+     *                 the location to pack, may be {@code null}
+     *
+     * @return the packed position, or {@link #NONE} if there is no location.
+     */
+    public static long of(@Nullable Location location) {
+        return location == null ? NONE : of(location.line(), location.column());
+    }
+
+    public static int line(long position) {
+        return (int) (position >> 32);
+    }
+
+    public static int column(long position) {
+        return (int) position;
+    }
+
+    /**
+     * @return {@code true} if the position is not {@link #NONE}.
+     */
+    public static boolean isKnown(long position) {
+        return position != NONE;
+    }
+
+    /**
+     * Compare two positions by line, then column.
+     *
+     * @return the comparison, or {@code 0} if either position is {@link #NONE}.
+     */
+    public static int compare(long position, long other) {
+        if (position == NONE || other == NONE)
+            return 0;
+        return Long.compare(position, other);
+    }
+
+    /**
+     * @param position
+     *                 the packed position
+     * @param length
+     *                 the length of the located element
+     * @param source
+     *                 the source name
+     *
+     * @return the location of the position, or {@code null} for {@link #NONE}.
+     */
+    public static @Nullable Location toLocation(long position, int length, @Nullable String source) {
+        if (position == NONE)
+            return null;
+        return new Location(line(position), column(position), length, source);
+    }
+}
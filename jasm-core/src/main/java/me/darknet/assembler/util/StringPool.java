@@ -0,0 +1,165 @@
+package me.darknet.assembler.util;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Bounded interning table for strings created from character ranges. Lookups hash directly over the characters, so a
+ * string is only created the first time a sequence of characters is seen, and every later occurrence shares that
+ * instance.
+ * <p>
+ * Once the pool holds {@link #maxSize()} strings, new sequences are no longer added and are returned as fresh strings.
+ * The pool is thread safe, so a tokenizer holding one can be shared between threads. Lookups lock the pool, parses
+ * which run in parallel are faster with a pool each.
+ */
+public final class StringPool {
+
+    private static final int DEFAULT_MAX_SIZE = 1 << 16;
+    private static final int INITIAL_CAPACITY = 256;
+    /**
+     * Longer sequences are unlikely to repeat, they are never pooled.
+     */
+    private static final int MAX_LENGTH = 512;
+
+    private final int maxSize;
+    private String[] table = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    public StringPool() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize
+     *                the maximum amount of strings held by the pool
+     */
+    public StringPool(int maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("Negative max size: " + maxSize);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param chars
+     *              the characters
+     * @param start
+     *              start of the range, inclusive
+     * @param end
+     *              end of the range, exclusive
+     *
+     * @return the pooled string equal to the characters in the range.
+     */
+    public synchronized @NotNull String intern(char @NotNull [] chars, int start, int end) {
+        int length = end - start;
+        if (length == 0)
+            return "";
+        if (length > MAX_LENGTH)
+            return new String(chars, start, length);
+        // same hash as String#hashCode, so ranges and strings can be mixed
+        int hash = 0;
+        for (int i = start; i < end; i++)
+            hash = 31 * hash + chars[i];
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        String existing;
+        while ((existing = table[slot]) != null) {
+            if (hashes[slot] == hash && regionEquals(existing, chars, start, length))
+                return existing;
+            slot = (slot + 1) & mask;
+        }
+        String string = new String(chars, start, length);
+        insert(slot, hash, string);
+        return string;
+    }
+
+    /**
+     * @param string
+     *               the string
+     *
+     * @return the pooled string equal to the given one, the given string itself when it was not pooled yet.
+     */
+    public synchronized @NotNull String intern(@NotNull String string) {
+        int length = string.length();
+        if (length == 0 || length > MAX_LENGTH)
+            return string;
+        int hash = string.hashCode();
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        String existing;
+        while ((existing = table[slot]) != null) {
+            if (hashes[slot] == hash && existing.equals(string))
+                return existing;
+            slot = (slot + 1) & mask;
+        }
+        insert(slot, hash, string);
+        return string;
+    }
+
+    /**
+     * @return the amount of strings in the pool.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the maximum amount of strings held by the pool.
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Remove all strings from the pool.
+     */
+    public synchronized void clear() {
+        table = new String[INITIAL_CAPACITY];
+        hashes = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    private void insert(int slot, int hash, String string) {
+        if (size >= maxSize)
+            return;
+        table[slot] = string;
+        hashes[slot] = hash;
+        // keep the load factor at or below one half
+        if (++size * 2 > table.length)
+            rehash();
+    }
+
+    private void rehash() {
+        String[] oldTable = table;
+        int[] oldHashes = hashes;
+        int capacity = oldTable.length * 2;
+        table = new String[capacity];
+        hashes = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldTable.length; i++) {
+            String string = oldTable[i];
+            if (string == null)
+                continue;
+            int slot = mix(oldHashes[i]) & mask;
+            while (table[slot] != null)
+                slot = (slot + 1) & mask;
+            table[slot] = string;
+            hashes[slot] = oldHashes[i];
+        }
+    }
+
+    private static int mix(int hash) {
+        // spread the bits, string hashes of short identifiers cluster in the low bits
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean regionEquals(String string, char[] chars, int start, int length) {
+        if (string.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (string.charAt(i) != chars[start + i])
+                return false;
+        }
+        return true;
+    }
+}
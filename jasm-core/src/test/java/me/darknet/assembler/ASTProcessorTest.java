@@ -1,25 +1,44 @@
 package me.darknet.assembler;
 
 import me.darknet.assembler.ast.ASTElement;
+import me.darknet.assembler.ast.ASTFingerprint;
+import me.darknet.assembler.ast.ElementType;
 import me.darknet.assembler.ast.primitive.*;
 import me.darknet.assembler.ast.specific.*;
 import me.darknet.assembler.error.Error;
 import me.darknet.assembler.error.Result;
+import me.darknet.assembler.helper.Processor;
+import me.darknet.assembler.instructions.Instruction;
 import me.darknet.assembler.parser.BytecodeFormat;
 import me.darknet.assembler.parser.DeclarationParser;
+import me.darknet.assembler.parser.IncrementalParser;
+import me.darknet.assembler.parser.ParsingResult;
 import me.darknet.assembler.parser.Token;
 import me.darknet.assembler.parser.Tokenizer;
 import me.darknet.assembler.parser.processor.ASTProcessor;
+import me.darknet.assembler.transformer.Transformer;
+import me.darknet.assembler.visitor.ASTRootVisitor;
 import me.darknet.assembler.util.Location;
+import me.darknet.assembler.util.StringPool;
 
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
 
 public class ASTProcessorTest {
 
@@ -231,4 +250,503 @@ public void testSubAnnotation() {
         );
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testIncrementalUpdate() {
+        String input = """
+                .class public Example {
+                    .method public first ()V {
+                        code: {
+                            return
+                        }
+                    }
+                    .signature "()V"
+                    .method public second ()V {
+                        code: {
+                            return
+                        }
+                    }
+                    .method public third ()V {
+                        code: {
+                            return
+                        }
+                    }
+                }
+                """;
+        IncrementalParser parser = new IncrementalParser(new Tokenizer(), BytecodeFormat.JVM);
+        Result<List<ASTElement>> result = parser.parse("<stdin>", input);
+        assertTrue(result.isOk());
+        ASTClass clazz = assertIs(ASTClass.class, result.get().getFirst());
+        ASTElement first = clazz.content(0);
+        ASTElement third = clazz.content(2);
+
+        // only the edited method is processed again, the others move along with the edit
+        String edit = "nop\n            foo\n            ";
+        int offset = input.indexOf("return", input.indexOf("second"));
+        result = parser.update(offset, 0, edit);
+        String edited = input.substring(0, offset) + edit + input.substring(offset);
+        assertSame(clazz, result.get().getFirst());
+        assertSame(first, clazz.content(0));
+        assertSame(third, clazz.content(2));
+        ASTMethod second = assertIs(ASTMethod.class, clazz.content(1));
+        assertEquals("()V", second.getSignature().content());
+        assertEquals(3, second.code().instructions().size());
+
+        IncrementalParser full = new IncrementalParser(new Tokenizer(), BytecodeFormat.JVM);
+        Result<List<ASTElement>> expected = full.parse("<stdin>", edited);
+        assertEquals(expected.errors().toString(), result.errors().toString());
+        assertEquals(1, result.errors().size());
+        ASTClass expectedClass = assertIs(ASTClass.class, expected.get().getFirst());
+        assertEquals(expectedClass.range(), clazz.range());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expectedClass.content(i).location(), clazz.content(i).location());
+            assertEquals(expectedClass.content(i).range(), clazz.content(i).range());
+        }
+
+        // removing the error again drops it
+        result = parser.update(edited.indexOf("foo"), "foo\n            ".length(), "");
+        assertTrue(result.isOk());
+        assertEquals(2, assertIs(ASTMethod.class, clazz.content(1)).code().instructions().size());
+
+        // edits across members parse the whole input again
+        result = parser.update(edited.indexOf(".signature"), 0, "}");
+        assertTrue(result.hasErr());
+    }
+
+    @Test
+    public void testIncrementalTopLevelUpdate() {
+        String input = """
+                .method public static first ()V {
+                    code: {
+                        return
+                    }
+                }
+                .signature "()V"
+                .method public static second ()V {
+                    code: {
+                        return
+                    }
+                }
+                .method public static third ()V {
+                    code: {
+                        bar
+                        return
+                    }
+                }
+                """;
+        IncrementalParser parser = new IncrementalParser(new Tokenizer(), BytecodeFormat.JVM);
+        Result<List<ASTElement>> result = parser.parse("<stdin>", input);
+        assertEquals(1, result.errors().size());
+        ASTElement first = result.get().get(0);
+        ASTElement third = result.get().get(2);
+
+        // only the edited top level method is processed again, the error behind it moves along with the edit
+        String edit = "nop\n        foo\n        ";
+        int offset = input.indexOf("return", input.indexOf("second"));
+        result = parser.update(offset, 0, edit);
+        String edited = input.substring(0, offset) + edit + input.substring(offset);
+        assertSame(first, result.get().get(0));
+        assertSame(third, result.get().get(2));
+        ASTMethod second = assertIs(ASTMethod.class, result.get().get(1));
+        assertEquals("()V", second.getSignature().content());
+        assertEquals(3, second.code().instructions().size());
+
+        Result<List<ASTElement>> expected = new IncrementalParser(new Tokenizer(), BytecodeFormat.JVM)
+                .parse("<stdin>", edited);
+        assertEquals(2, result.errors().size());
+        assertEquals(expected.errors().toString(), result.errors().toString());
+        for (int i = 0; i < 3; i++)
+            assertEquals(expected.get().get(i).range(), result.get().get(i).range());
+    }
+
+    @Test
+    public void testLazyCode() {
+        String input = """
+                .class public Example {
+                    .method public valid ()V {
+                        code: {
+                        A:
+                            invokedynamic run ()Ljava/lang/Runnable; { invokestatic, a/B.c, ()V } { }
+                            return
+                        }
+                    }
+                    .method public invalid ()V {
+                        code: {
+                            foo
+                            return
+                        }
+                    }
+                }
+                """;
+        List<Token> tokens = new Tokenizer().tokenize("<stdin>", input).get();
+        Result<List<ASTElement>> parsed = new DeclarationParser(true).parseAny(tokens);
+        assertTrue(parsed.isOk());
+        Result<List<ASTElement>> result = new ASTProcessor(BytecodeFormat.DEFAULT).processAST(parsed.get());
+        // unknown instructions are only found when the code is accessed
+        assertTrue(result.isOk());
+        ASTClass clazz = assertIs(ASTClass.class, result.get().getFirst());
+        ASTMethod valid = assertIs(ASTMethod.class, clazz.content(0));
+        ASTMethod invalid = assertIs(ASTMethod.class, clazz.content(1));
+        assertFalse(valid.code().isParsed());
+        assertEquals(valid.code().location(), new Location(4, 9, 1, "<stdin>"));
+
+        Result<List<ASTElement>> eager = new ASTProcessor(BytecodeFormat.DEFAULT)
+                .processAST(new DeclarationParser().parseAny(tokens).get());
+        ASTMethod expected = assertIs(ASTMethod.class, assertIs(ASTClass.class, eager.get().getFirst()).content(0));
+        assertEquals(expected.instructions(), valid.instructions());
+        assertTrue(valid.code().isParsed());
+        assertTrue(valid.codeErrors().isEmpty());
+        assertEquals(3, valid.code().instructions().size());
+        assertEquals(expected.code().range(), valid.code().range());
+        assertSame(valid.code(), valid.code().instructions().getFirst().parent());
+
+        assertEquals(1, invalid.codeErrors().size());
+        assertEquals(eager.errors().toString(), invalid.codeErrors().toString());
+        assertEquals(1, invalid.instructions().size());
+    }
+
+    @Test
+    public void testLazyCodeSharedBetweenThreads() throws Exception {
+        StringBuilder input = new StringBuilder(".class public Example {\n");
+        for (int i = 0; i < 64; i++) {
+            input.append(".method public m").append(i).append(" ()V {\n\tcode: {\n\t\tldc \"").append(i)
+                    .append("\"\n\t\tpop\n\t\treturn\n\t}\n}\n");
+        }
+        List<Token> tokens = new Tokenizer().tokenize("<stdin>", input.append("}\n").toString()).get();
+        Result<List<ASTElement>> result = new ASTProcessor(BytecodeFormat.DEFAULT)
+                .processAST(new DeclarationParser(true).parseAny(tokens).get());
+        ASTClass clazz = assertIs(ASTClass.class, result.get().getFirst());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<List<Instruction<?>>>>> results = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    List<List<Instruction<?>>> instructions = new ArrayList<>();
+                    for (ASTElement element : clazz.contents())
+                        instructions.add(assertIs(ASTMethod.class, element).instructions());
+                    return instructions;
+                }));
+            }
+            start.countDown();
+            List<List<Instruction<?>>> first = results.getFirst().get();
+            for (Future<List<List<Instruction<?>>>> other : results) {
+                // every method is verified once, all threads see the same instructions
+                List<List<Instruction<?>>> instructions = other.get();
+                for (int i = 0; i < first.size(); i++) {
+                    assertSame(first.get(i), instructions.get(i));
+                    assertEquals(3, instructions.get(i).size());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStreamingTransform() {
+        String input = """
+                .super java/lang/Object
+                .class public Example {
+                    .method public m (I)I {
+                        parameters: { this, a },
+                        exceptions: { { A, B, B, java/lang/Exception } },
+                        code: {
+                        A:
+                            iload a
+                            lookupswitch { 1: A, default: B }
+                        B:
+                            iconst_0
+                            ireturn
+                        }
+                    }
+                    .field public f I
+                }
+                """;
+        List<Token> tokens = new Tokenizer().tokenize("<stdin>", input).get();
+        ParsingResult<List<ASTElement>> parsed = new DeclarationParser(true).parseDeclarations(tokens);
+        Result<List<ASTElement>> processed = new ASTProcessor(BytecodeFormat.JVM).processAST(parsed.get());
+        assertTrue(processed.isOk());
+        List<String> visited = new ArrayList<>();
+        assertFalse(new Transformer(recorder(ASTRootVisitor.class, visited), true).transform(processed.get()).hasErr());
+        ASTClass clazz = assertIs(ASTClass.class, processed.get().getFirst());
+        ASTMethod method = assertIs(ASTMethod.class, clazz.content(0));
+        // the code went to the visitor without being parsed
+        assertFalse(method.code().isParsed());
+        assertTrue(visited.contains("visitLookupSwitchInsn"));
+
+        List<String> expected = new ArrayList<>();
+        assertFalse(new Transformer(recorder(ASTRootVisitor.class, expected)).transform(processed.get()).hasErr());
+        assertTrue(method.code().isParsed());
+        assertEquals(expected, visited);
+        visited.clear();
+        assertFalse(Processor.transformSource(input, "<stdin>", recorder(ASTRootVisitor.class, visited),
+                BytecodeFormat.JVM).hasErr());
+        assertEquals(expected, visited);
+
+        // instructions after an error are verified, but not visited
+        visited.clear();
+        String invalid = input.replace("iconst_0", "foo").replace("iload a", "iload");
+        Result<Void> result = Processor.transformSource(invalid, "<stdin>", recorder(ASTRootVisitor.class, visited),
+                BytecodeFormat.JVM);
+        assertEquals(2, result.errors().size());
+        assertFalse(visited.contains("visitVarInsn"));
+        assertFalse(visited.contains("visitLookupSwitchInsn"));
+        assertFalse(visited.contains("visitException"));
+    }
+
+    /**
+     * @return a visitor recording the names of the called methods, visitors it returns record to the same list.
+     */
+    private static <T> T recorder(Class<T> type, List<String> calls) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class)
+                return method.invoke(calls, args);
+            calls.add(method.getName());
+            Class<?> returnType = method.getReturnType();
+            return returnType.isInterface() ? recorder(returnType, calls) : null;
+        }));
+    }
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testLargeClass() {
+        int members = 50_000;
+        assertOne(largeClass(members), ASTClass.class, (clazz) -> {
+            assertEquals(members, clazz.contents().size());
+            assertEquals("java/lang/Object", clazz.getSuperName().content());
+            ASTField last = assertIs(ASTField.class, clazz.content(members - 1));
+            assertEquals("f" + (members - 1), last.getName().content());
+            assertEquals(1, last.getVisibleAnnotations().size());
+            List<ASTElement> children = clazz.children();
+            for (int i = 1; i < children.size(); i++) {
+                assertTrue(children.get(i - 1).location().compareTo(children.get(i).location()) <= 0);
+            }
+        });
+    }
+
+    @Test
+    public void testChildOrderingCost() {
+        // children must be kept in order with about n log n comparisons, not by comparing against every other child
+        int size = 10_000;
+        int[] compared = new int[1];
+        long sorted = 2L * size * (32 - Integer.numberOfLeadingZeros(size) + 2);
+
+        // in order, each child is compared against its neighbour only
+        new Parent(children(size, i -> i, compared));
+        assertTrue(compared[0] <= 4L * size, compared[0] + " comparisons");
+        compared[0] = 0;
+        Parent appended = new Parent(List.of());
+        for (Positioned child : children(size, i -> i, compared))
+            appended.add(child);
+        assertTrue(compared[0] <= 2L * size, compared[0] + " comparisons");
+
+        compared[0] = 0;
+        new Parent(children(size, i -> size - i, compared));
+        assertTrue(compared[0] <= sorted, compared[0] + " comparisons");
+        compared[0] = 0;
+        Parent prepended = new Parent(List.of());
+        for (Positioned child : children(size, i -> size - i, compared))
+            prepended.add(child);
+        assertTrue(compared[0] <= sorted, compared[0] + " comparisons");
+        compared[0] = 0;
+        Parent merged = new Parent(children(size, i -> 2 * i, compared));
+        compared[0] = 0;
+        merged.addAll(children(size, i -> 2 * i + 1, compared));
+        assertTrue(compared[0] <= 8L * size, compared[0] + " comparisons");
+        List<ASTElement> children = merged.children();
+        for (int i = 0; i < children.size(); i++)
+            assertEquals(i, children.get(i).position());
+    }
+
+    private static List<Positioned> children(int size, IntUnaryOperator position, int[] compared) {
+        List<Positioned> children = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            children.add(new Positioned(position.applyAsInt(i), compared));
+        return children;
+    }
+
+    /**
+     * Element counting how often its position is read, once per side of each comparison while ordering children.
+     */
+    private static final class Positioned extends ASTElement {
+        private final long position;
+        private final int[] compared;
+
+        private Positioned(long position, int[] compared) {
+            super(ElementType.EMPTY);
+            this.position = position;
+            this.compared = compared;
+        }
+
+        @Override
+        public long position() {
+            compared[0]++;
+            return position;
+        }
+    }
+
+    private static final class Parent extends ASTElement {
+        private Parent(List<? extends ASTElement> children) {
+            super(ElementType.ARRAY, children);
+        }
+
+        private void add(ASTElement child) {
+            addChild(child);
+        }
+
+        private void addAll(List<? extends ASTElement> children) {
+            addChildren(children);
+        }
+    }
+
+    private static String largeClass(int members) {
+        StringBuilder input = new StringBuilder(".super java/lang/Object\n.class public Large {\n");
+        for (int i = 0; i < members; i++) {
+            input.append("    .visible-annotation A {}\n    .field public f").append(i).append(" I\n");
+        }
+        input.append("}\n");
+        return input.toString();
+    }
+
+    @Test
+    public void testParallelProcessing() {
+        StringBuilder builder = new StringBuilder(".super java/lang/Object\n.class public Example {\n");
+        for (int i = 0; i < 200; i++) {
+            builder.append(".signature \"TT;\"\n.visible-annotation A {}\n.field public f").append(i).append(" I\n");
+            builder.append(".method public m").append(i).append(" ()V {\n\tcode: {\n\t\tiload ").append(i)
+                    .append("\n\t\treturn\n\t}\n}\n");
+        }
+        builder.append("}\n.field public top I\n.method public invalid ()V { code: { foo } }\n.annotation A {}\n");
+        String input = builder.toString();
+        List<ASTElement> declarations = new DeclarationParser()
+                .parseDeclarations(new Tokenizer().tokenize("<stdin>", input).get()).get();
+        ASTProcessor processor = new ASTProcessor(BytecodeFormat.DEFAULT);
+        Result<List<ASTElement>> sequential = processor.processAST(declarations);
+        Result<List<ASTElement>> parallel = processor.processAST(declarations, ForkJoinPool.commonPool());
+        assertEquals(sequential.errors().toString(), parallel.errors().toString());
+        assertEquals(sequential.get().size(), parallel.get().size());
+        for (int i = 0; i < sequential.get().size(); i++) {
+            assertEquals(sequential.get().get(i).getClass(), parallel.get().get(i).getClass());
+            assertEquals(sequential.get().get(i).range(), parallel.get().get(i).range());
+        }
+        ASTClass clazz = assertIs(ASTClass.class, parallel.get().getFirst());
+        assertEquals("java/lang/Object", clazz.getSuperName().content());
+        assertEquals(400, clazz.contents().size());
+        ASTField field = assertIs(ASTField.class, clazz.content(398));
+        assertEquals("f199", field.getName().content());
+        assertEquals("TT;", field.getSignature().content());
+        assertEquals(1, field.getVisibleAnnotations().size());
+
+        // attributes of a member which fails to process pass on to the next member
+        String broken = ".signature \"TT;\"\n.field f\n.field public g I\n.method public m ()V {}\n";
+        List<ASTElement> brokenDeclarations = new DeclarationParser()
+                .parseDeclarations(new Tokenizer().tokenize("<stdin>", broken).get()).get();
+        Result<List<ASTElement>> expected = processor.processAST(brokenDeclarations);
+        Result<List<ASTElement>> actual = processor.processAST(brokenDeclarations, ForkJoinPool.commonPool());
+        assertEquals(expected.errors().toString(), actual.errors().toString());
+        assertEquals(expected.get().size(), actual.get().size());
+        ASTField g = assertIs(ASTField.class, actual.get().getFirst());
+        assertEquals("TT;", g.getSignature().content());
+    }
+
+    @Test
+    @Timeout(value = 60, unit = TimeUnit.SECONDS)
+    public void testSharedPipeline() throws Exception {
+        // one tokenizer, parser and processor serve every thread, results must match processing one input at a time
+        Tokenizer tokenizer = new Tokenizer(new StringPool());
+        DeclarationParser parser = new DeclarationParser(true);
+        ASTProcessor processor = new ASTProcessor(BytecodeFormat.DEFAULT);
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            StringBuilder builder = new StringBuilder(".super java/lang/Object\n.class public C").append(i)
+                    .append(" {\n");
+            for (int j = 0; j <= i % 8; j++) {
+                builder.append(".field public f").append(j).append(" I\n");
+                builder.append(".method public m").append(j).append(" (I)I {\n\tparameters: { this, a },\n")
+                        .append("\tcode: {\n\tA:\n\t\tiload a\n\t\tifeq B\n\t\tldc \"").append(i)
+                        .append("\"\n\t\tpop\n\tB:\n\t\tiload a\n\t\tireturn\n\t}\n}\n");
+            }
+            if (i % 8 == 7)
+                builder.append(".method public invalid ()V {\n\tcode: {\n\t\tfoo\n\t}\n}\n");
+            inputs.add(builder.append("}\n").toString());
+        }
+        List<String> expected = new ArrayList<>();
+        for (String input : inputs) {
+            expected.add(process(new Tokenizer(), new DeclarationParser(true), new ASTProcessor(BytecodeFormat.DEFAULT),
+                    input));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> results = new ArrayList<>();
+            for (int round = 0; round < 8; round++) {
+                for (String input : inputs) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return process(tokenizer, parser, processor, input);
+                    }));
+                }
+            }
+            start.countDown();
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(expected.get(i % inputs.size()), results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFingerprint() {
+        String method = """
+                .method public static add (II)I {
+                    parameters: { a, b },
+                    code: {
+                    A:
+                        iload a
+                        iload b
+                        iadd
+                        ireturn
+                    B:
+                    }
+                }
+                """;
+        String[] fingerprints = new String[3];
+        assertOne(method, ASTMethod.class, m -> fingerprints[0] = ASTFingerprint.of(m));
+        // Same text at another position
+        assertOne("\n\n    " + method, ASTMethod.class, m -> fingerprints[1] = ASTFingerprint.of(m));
+        assertOne(method.replace("iadd", "isub"), ASTMethod.class, m -> fingerprints[2] = ASTFingerprint.of(m));
+        assertEquals(fingerprints[0], fingerprints[1]);
+        assertNotEquals(fingerprints[0], fingerprints[2]);
+
+        assertOne(".class public super Example {}", ASTClass.class, c -> fingerprints[0] = ASTFingerprint.ofHeader(c));
+        assertOne(".class public final super Example {}", ASTClass.class,
+                c -> fingerprints[1] = ASTFingerprint.ofHeader(c));
+        assertNotEquals(fingerprints[0], fingerprints[1]);
+    }
+
+    private static String process(Tokenizer tokenizer, DeclarationParser parser, ASTProcessor processor,
+            String input) {
+        ParsingResult<List<ASTElement>> parsed = parser.parseDeclarations(tokenizer.tokenize("<stdin>", input).get());
+        assertEquals(List.of(), parsed.errors());
+        Result<List<ASTElement>> result = processor.processAST(parsed.get());
+        StringBuilder builder = new StringBuilder(result.errors().toString());
+        for (ASTElement element : result.get()) {
+            describe(element, builder);
+        }
+        return builder.toString();
+    }
+
+    private static void describe(ASTElement element, StringBuilder builder) {
+        builder.append('\n').append(element.getClass().getSimpleName()).append(' ').append(element.content())
+                .append(' ').append(element.location()).append(' ').append(element.range());
+        if (element instanceof ASTMethod method)
+            builder.append(' ').append(method.codeErrors());
+        for (ASTElement child : element.children()) {
+            describe(child, builder);
+        }
+    }
+}
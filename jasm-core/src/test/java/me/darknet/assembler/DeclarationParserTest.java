@@ -1,21 +1,36 @@
 package me.darknet.assembler;
 
 import me.darknet.assembler.ast.ASTElement;
+import me.darknet.assembler.ast.ASTIndex;
 import me.darknet.assembler.ast.primitive.*;
 import me.darknet.assembler.error.Error;
 import me.darknet.assembler.error.Result;
+import me.darknet.assembler.parser.BytecodeFormat;
+import me.darknet.assembler.parser.DeclarationCache;
 import me.darknet.assembler.parser.DeclarationParser;
+import me.darknet.assembler.parser.ParsingResult;
 import me.darknet.assembler.parser.Token;
 import me.darknet.assembler.parser.Tokenizer;
 import me.darknet.assembler.util.Location;
+import me.darknet.assembler.util.StringPool;
 
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 public class DeclarationParserTest {
@@ -245,4 +260,219 @@ public void testInvalidInput() {
         assertEquals(2, result.errors().size());
     }
 
+    @Test
+    public void testParallelDeclarations() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append(".field public f").append(i).append(" I // field ").append(i).append('\n');
+            builder.append(".method public m").append(i).append(" ()V {\n\tcode: {\n\t\tldc \"}.\"\n\t\treturn\n\t}\n}\n");
+        }
+        String input = builder.toString();
+        Tokenizer tokenizer = new Tokenizer();
+        ParsingResult<List<ASTElement>> sequential = new DeclarationParser()
+                .parseDeclarations(tokenizer.tokenize("<stdin>", input).get());
+        ParsingResult<List<ASTElement>> parallel = new DeclarationParser()
+                .parseDeclarations(tokenizer, "<stdin>", input);
+        assertTrue(parallel.isOk());
+        assertEquals(2000, parallel.get().size());
+        assertEquals(1000, parallel.comments().size());
+        for (int i = 0; i < 2000; i++) {
+            ASTElement expected = sequential.get().get(i);
+            ASTElement actual = parallel.get().get(i);
+            assertEquals(expected.location(), actual.location());
+            assertEquals(expected.range(), actual.range());
+        }
+        assertEquals(sequential.comments().getLast().location(), parallel.comments().getLast().location());
+
+        // errors in a declaration are reported the same way as when parsing sequentially
+        String broken = input + ".annotation { a: , b: } \n" + input;
+        ParsingResult<List<ASTElement>> errors = new DeclarationParser()
+                .parseDeclarations(tokenizer, "<stdin>", broken);
+        assertTrue(errors.hasErr());
+        assertEquals(
+                new DeclarationParser().parseDeclarations(tokenizer.tokenize("<stdin>", broken).get()).errors()
+                        .toString(),
+                errors.errors().toString()
+        );
+    }
+
+    @Test
+    public void testLargeObject() {
+        // large objects look up keys through a hash index, the first entry of a duplicated key wins
+        StringBuilder input = new StringBuilder("{");
+        for (int i = 0; i < 1000; i++) {
+            input.append("k").append(i).append(": ").append(i).append(", ");
+        }
+        input.append("k5: dup}");
+        assertOne(input.toString(), ASTObject.class, (object) -> {
+            assertEquals(1001, object.values().size());
+            assertEquals("0", object.value("k0").content());
+            assertEquals("999", object.value("k999").content());
+            assertEquals("5", object.value("k5").content());
+            assertEquals("dup", object.values().get(1000).content());
+            assertEquals(object.values().key(5), object.values().key("k5"));
+            assertEquals(999, object.values().indexOf("k999"));
+            assertFalse(object.values().containsKey("k1000"));
+            assertNull(object.value("missing"));
+        });
+    }
+
+    @Test
+    public void testDeclarationCache(@TempDir Path directory) throws Exception {
+        String input = """
+                // comment
+                .visible-annotation A { values: { 1, 2.5F, 'c', "a\\tb" }, empty: {}, e: .enum A B }
+                .method public static m (I)J {
+                    parameters: { a },
+                    code: {
+                    A:
+                        lload 0x1F
+                        invokestatic a/B.c (I)V
+                        lookupswitch { 1: A, default: A }
+                        lreturn
+                    }
+                }
+                .field public f [I { value: -1 }
+                """;
+        Tokenizer tokenizer = new Tokenizer();
+        ParsingResult<List<ASTElement>> parsed = new DeclarationParser()
+                .parseDeclarations(tokenizer.tokenize("<stdin>", input).get());
+        assertTrue(parsed.isOk());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DeclarationCache.write(bytes, input, parsed);
+        ParsingResult<List<ASTElement>> read = DeclarationCache
+                .read(new ByteArrayInputStream(bytes.toByteArray()), "<stdin>", input);
+        assertEquals(parsed.get().size(), read.get().size());
+        // code is decoded on first access
+        ASTObject body = (ASTObject) ((ASTDeclaration) read.get().get(1)).elements().getLast();
+        ASTCode code = body.value("code");
+        assertFalse(code.isParsed());
+        assertEquals(5, code.instructions().size());
+        for (int i = 0; i < parsed.get().size(); i++) {
+            assertSameTree(parsed.get().get(i), read.get().get(i));
+        }
+        assertEquals(1, read.comments().size());
+        assertEquals(parsed.comments().getFirst().location(), read.comments().getFirst().location());
+        assertThrows(IOException.class, () -> DeclarationCache
+                .read(new ByteArrayInputStream(bytes.toByteArray()), "<stdin>", input + " "));
+
+        // the first access to cached code may come from several threads at once
+        read = DeclarationCache.read(new ByteArrayInputStream(bytes.toByteArray()), "<stdin>", input);
+        ASTCode shared = ((ASTObject) ((ASTDeclaration) read.get().get(1)).elements().getLast()).value("code");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<ASTInstruction>>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return shared.instructions();
+                }));
+            }
+            start.countDown();
+            for (Future<List<ASTInstruction>> future : futures) {
+                assertSame(shared.instructions(), future.get());
+            }
+            assertTrue(shared.errors().isEmpty());
+            assertSameTree(code, shared);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // entries are keyed by the source text and format
+        DeclarationCache cache = new DeclarationCache(directory, BytecodeFormat.DEFAULT);
+        assertNull(cache.load("<stdin>", input));
+        ParsingResult<List<ASTElement>> first = cache.parse("<stdin>", input);
+        assertTrue(first.isOk());
+        ParsingResult<List<ASTElement>> cached = cache.load("<stdin>", input);
+        assertNotNull(cached);
+        assertSameTree(first.get().getLast(), cached.get().getLast());
+        assertNull(cache.load("<stdin>", input + "\n"));
+        assertNotEquals(DeclarationCache.key(input, BytecodeFormat.JVM), DeclarationCache.key(input, BytecodeFormat.DALVIK));
+
+        // sources which are not cached yet are parsed with the given tokenizer and parser
+        StringPool pool = new StringPool();
+        List<String> parsedSources = new ArrayList<>();
+        DeclarationCache lazy = new DeclarationCache(directory.resolve("lazy"), BytecodeFormat.DEFAULT,
+                new Tokenizer(pool), new DeclarationParser(true) {
+                    @Override
+                    public ParsingResult<List<ASTElement>> parseDeclarations(Tokenizer tokenizer, String source,
+                            String input) {
+                        parsedSources.add(source);
+                        return super.parseDeclarations(tokenizer, source, input);
+                    }
+                });
+        ParsingResult<List<ASTElement>> parsedLazily = lazy.parse("<stdin>", input);
+        assertTrue(parsedLazily.isOk());
+        assertTrue(pool.size() > 0);
+        lazy.parse("<stdin>", input);
+        assertEquals(List.of("<stdin>"), parsedSources);
+        assertSameTree(first.get().getLast(), parsedLazily.get().getLast());
+    }
+
+    @Test
+    public void testPositionIndex() {
+        String input = """
+                .method public static m (I)V {
+                    code: {
+                    A:
+                        iload 0
+                        ifeq B
+                        lookupswitch { 1: A, default: B }
+                    B:
+                        new A
+                        return
+                    }
+                }
+                .field public f [I { value: { 1, 2 } }
+                """;
+        ParsingResult<List<ASTElement>> result = new DeclarationParser()
+                .parseDeclarations(new Tokenizer().tokenize("<stdin>", input).get());
+        assertTrue(result.isOk());
+        ASTIndex index = new ASTIndex(result.get());
+
+        // lookups agree with walking the tree
+        for (int offset = -1; offset <= input.length() + 1; offset++) {
+            ASTElement expected = null;
+            for (ASTElement root : result.get()) {
+                if (root.range().within(offset)) {
+                    expected = root.pick(offset);
+                    break;
+                }
+            }
+            assertSame(expected, index.at(offset), "offset " + offset);
+        }
+        int switchOffset = input.indexOf("lookupswitch");
+        ASTElement instruction = index.enclosing(switchOffset, input.indexOf("default"));
+        assertInstanceOf(ASTInstruction.class, instruction);
+        assertEquals("lookupswitch", ((ASTInstruction) instruction).identifier().content());
+        assertInstanceOf(ASTDeclaration.class, index.enclosing(0, input.indexOf("return")));
+        assertNull(index.enclosing(0, input.length() - 1));
+
+        ASTObject body = (ASTObject) ((ASTDeclaration) result.get().getFirst()).elements().getLast();
+        ASTCode code = body.value("code");
+        assertEquals(List.of("A", "B"), List.copyOf(index.labels(code)));
+        assertSame(code.instructions().getFirst(), index.definition(code, "A"));
+        assertNull(index.definition(code, "C"));
+        // only label operands and switch targets are uses, the type of 'new A' is not
+        List<ASTIdentifier> labelUses = index.uses(code, "A");
+        assertEquals(1, labelUses.size());
+        assertEquals(input.indexOf("1: A") + 3, labelUses.getFirst().range().start());
+        List<ASTIdentifier> uses = index.uses(code, "B");
+        assertEquals(2, uses.size());
+        assertEquals(input.indexOf("ifeq B") + 5, uses.getFirst().range().start());
+    }
+
+    private static void assertSameTree(ASTElement expected, ASTElement actual) {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.content(), actual.content());
+        assertEquals(expected.location(), actual.location());
+        assertEquals(expected.range(), actual.range());
+        if (expected.value() != null)
+            assertEquals(expected.value().number(), actual.value().number());
+        assertEquals(expected.children().size(), actual.children().size());
+        for (int i = 0; i < expected.children().size(); i++) {
+            assertSameTree(expected.children().get(i), actual.children().get(i));
+        }
+    }
 }
@@ -6,6 +6,8 @@
 import me.darknet.assembler.ast.specific.ASTMethod;
 import me.darknet.assembler.error.Error;
 import me.darknet.assembler.error.Result;
+import me.darknet.assembler.instructions.Instruction;
+import me.darknet.assembler.instructions.jvm.JvmInstructions;
 import me.darknet.assembler.parser.BytecodeFormat;
 import me.darknet.assembler.parser.DeclarationParser;
 import me.darknet.assembler.parser.Token;
@@ -180,4 +182,19 @@ public void testWeirdStrings() {
         );
     }
 
+    @Test
+    public void testInstructionIds() {
+        assertCode(new String[] { "L1:", "line 1", "iconst_0", "ireturn" }, BytecodeFormat.JVM, (code) -> {
+            List<ASTInstruction> instructions = code.instructions();
+            assertEquals(-1, instructions.get(0).instructionId());
+            for (ASTInstruction instruction : instructions.subList(1, instructions.size())) {
+                Instruction<?> resolved = JvmInstructions.INSTANCE.get(instruction.instructionId());
+                assertEquals(instruction.identifier().content(), resolved.name());
+                assertSame(JvmInstructions.INSTANCE.get(resolved.name()), resolved);
+            }
+            assertTrue(JvmInstructions.INSTANCE.get(instructions.get(1).instructionId()).isIntrinsic());
+            assertFalse(JvmInstructions.INSTANCE.get(instructions.get(2).instructionId()).isIntrinsic());
+        });
+    }
+
 }
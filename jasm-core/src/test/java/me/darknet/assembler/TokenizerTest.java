@@ -1,14 +1,23 @@
 package me.darknet.assembler;
 
+import me.darknet.assembler.error.Result;
 import me.darknet.assembler.parser.Token;
+import me.darknet.assembler.parser.TokenReader;
+import me.darknet.assembler.parser.TokenStream;
 import me.darknet.assembler.parser.TokenType;
 import me.darknet.assembler.parser.Tokenizer;
+import me.darknet.assembler.util.Location;
+import me.darknet.assembler.util.Position;
+import me.darknet.assembler.util.Range;
+import me.darknet.assembler.util.StringPool;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.List;
 
 public class TokenizerTest {
@@ -59,6 +68,41 @@ public void testNumbers() {
         }
     }
 
+    @Test
+    public void testNumberValues() {
+        Tokenizer tokenizer = new Tokenizer();
+        List<Token> tokens = tokenizer
+                .tokenize("<stdin>", "0 -10 10f 0xDEADBEEF 0x1fL 0b101 1_000_000 6.02214076e23 0x1.8p1 .5d 2147483648")
+                .get();
+        Assertions.assertEquals(11, tokens.size());
+        for (Token token : tokens) {
+            Assertions.assertSame(TokenType.NUMBER, token.type());
+        }
+        Assertions.assertEquals(0, tokens.get(0).number());
+        Assertions.assertEquals(-10, tokens.get(1).number());
+        Assertions.assertEquals(10f, tokens.get(2).number());
+        Assertions.assertEquals(0xDEADBEEF, tokens.get(3).number());
+        Assertions.assertEquals(0x1fL, tokens.get(4).number());
+        Assertions.assertEquals(0b101, tokens.get(5).number());
+        Assertions.assertEquals(1_000_000, tokens.get(6).number());
+        Assertions.assertEquals(6.02214076e23, tokens.get(7).number());
+        Assertions.assertEquals(0x1.8p1, tokens.get(8).number());
+        Assertions.assertEquals(.5d, tokens.get(9).number());
+        // does not fit an int, so there is no value
+        Assertions.assertNull(tokens.get(10).number());
+    }
+
+    @Test
+    public void testNotNumbers() {
+        Tokenizer tokenizer = new Tokenizer();
+        List<Token> tokens = tokenizer.tokenize("<stdin>", "- . 0x 1e 1.2.3 0b2 -name 12abc").get();
+        Assertions.assertEquals(8, tokens.size());
+        for (Token token : tokens) {
+            Assertions.assertSame(TokenType.IDENTIFIER, token.type(), token.content());
+            Assertions.assertNull(token.number());
+        }
+    }
+
     @ParameterizedTest
     @ValueSource(
             strings = { ".class public java/lang/HelloWorld",
@@ -93,4 +137,133 @@ public void testMultiLineComment() {
         Assertions.assertSame(TokenType.COMMENT, tokens.getFirst().type());
     }
 
+    @Test
+    public void testPackedTokenStream() {
+        Tokenizer tokenizer = new Tokenizer();
+        List<Token> tokens = tokenizer.tokenize("<stdin>", "ldc \"a\\tb\"\n  iload value").get();
+        Assertions.assertInstanceOf(TokenStream.class, tokens);
+        TokenStream stream = (TokenStream) tokens;
+        Assertions.assertEquals(4, stream.size());
+        Assertions.assertSame(TokenType.IDENTIFIER, stream.type(0));
+        Assertions.assertTrue(stream.contentEquals(0, "ldc"));
+        Assertions.assertTrue(stream.startsWith(3, "val"));
+        Assertions.assertEquals("a\tb", stream.content(1));
+        Assertions.assertTrue(stream.contentEquals(1, "a\tb"));
+        Assertions.assertEquals(new Range(5, 9), stream.range(1));
+        Assertions.assertEquals(new Location(2, 3, 5, "<stdin>"), stream.location(2));
+        Assertions.assertEquals(2, tokens.get(3).line());
+        Assertions.assertSame(tokens.get(3), tokens.get(3));
+        Assertions.assertEquals(
+                new Token(new Range(19, 24), new Location(2, 9, 5, "<stdin>"), TokenType.IDENTIFIER, "value"),
+                tokens.get(3)
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "yy", "y\n\t\t", "\"x", "/* c */", "// c\n" })
+    public void testRetokenize(String inserted) {
+        Tokenizer tokenizer = new Tokenizer();
+        String input = ".method a ()V {\n\tcode: {\n\t\tiload x\n\t\tldc \"s\"\n\t}\n}";
+        TokenStream tokens = (TokenStream) tokenizer.tokenize("<stdin>", input).get();
+        int offset = input.indexOf('x');
+        String edited = input.substring(0, offset) + inserted + input.substring(offset + 1);
+        Result<TokenStream> incremental = tokenizer.retokenize(tokens, offset, 1, inserted);
+        Result<List<Token>> full = tokenizer.tokenize("<stdin>", edited);
+        Assertions.assertEquals(full.get(), incremental.get());
+        Assertions.assertEquals(full.errors().size(), incremental.errors().size());
+    }
+
+    @Test
+    public void testRetokenizeConsumesPrevious() {
+        Tokenizer tokenizer = new Tokenizer();
+        String input = "iload x\niload y";
+        TokenStream previous = (TokenStream) tokenizer.tokenize("<stdin>", input).get();
+        Token moved = previous.get(3);
+        TokenStream edited = tokenizer.retokenize(previous, input.indexOf('x'), 1, "xyz").get();
+        // the view follows the edit, the previous stream hands out views of the text before it
+        Assertions.assertSame(moved, edited.get(3));
+        Assertions.assertEquals(new Range(16, 17), moved.range());
+        Assertions.assertNotSame(moved, previous.get(3));
+        Assertions.assertEquals(new Range(14, 15), previous.get(3).range());
+    }
+
+    @Test
+    public void testReader() {
+        Tokenizer tokenizer = new Tokenizer();
+        String input = ".method a ()V {\n\tcode: {\n\t\tldc \"a\\u0020b\"\n\t\tldc 0x1f // c\n\t}\n}";
+        List<Token> expected = tokenizer.tokenize("<stdin>", input).get();
+        List<Token> tokens = new ArrayList<>();
+        TokenReader reader = tokenizer.reader("<stdin>", new StringReader(input));
+        reader.forEachRemaining(tokens::add);
+        Assertions.assertEquals(expected, tokens);
+        Assertions.assertTrue(reader.errors().isEmpty());
+        Assertions.assertEquals(31, tokens.get(10).number());
+    }
+
+    @Test
+    public void testInterning() {
+        StringPool pool = new StringPool();
+        Tokenizer tokenizer = new Tokenizer(pool);
+        String input = "getstatic java/lang/System.out Ljava/io/PrintStream;\n"
+                + "getstatic java/lang/System.out Ljava/io/PrintStream;\nldc \"a\\tb\"\nldc \"a\\tb\"";
+        List<Token> tokens = tokenizer.tokenize("<stdin>", input).get();
+        Assertions.assertSame(tokens.get(1).content(), tokens.get(4).content());
+        Assertions.assertSame(tokens.get(2).content(), tokens.get(5).content());
+        Assertions.assertSame(tokens.get(7).content(), tokens.get(9).content());
+        Assertions.assertEquals("Ljava/io/PrintStream;", tokens.get(5).content());
+
+        List<Token> read = new ArrayList<>();
+        tokenizer.reader("<stdin>", new StringReader(input)).forEachRemaining(read::add);
+        Assertions.assertEquals(tokens, read);
+        Assertions.assertSame(tokens.get(1).content(), read.get(4).content());
+
+        StringPool bounded = new StringPool(1);
+        Assertions.assertSame(bounded.intern("a"), bounded.intern("a".toCharArray(), 0, 1));
+        String b = bounded.intern("b".toCharArray(), 0, 1);
+        Assertions.assertNotSame(b, bounded.intern("b".toCharArray(), 0, 1));
+        Assertions.assertEquals(1, bounded.size());
+    }
+
+    @Test
+    public void testLongRuns() {
+        // runs longer than a vector of characters, with delimiters in both the vectorized part and the remainder
+        String name = "java/lang/invoke/MethodHandles$Lookup";
+        String text = "a long string with a \\t tab and \\\" quotes in it";
+        String input = "getstatic " + name + " " + name + "                                \t\t\tx\n"
+                + "ldc \"" + text + "\" // " + text + "\n/* " + text + " *** */ end";
+        List<Token> tokens = new Tokenizer().tokenize("<stdin>", input).get();
+        Assertions.assertEquals(9, tokens.size());
+        Assertions.assertEquals(name, tokens.get(1).content());
+        Assertions.assertEquals(new Range(10, 10 + name.length()), tokens.get(1).range());
+        Assertions.assertEquals(new Location(1, 121, 1, "<stdin>"), tokens.get(3).location());
+        Assertions.assertEquals("a long string with a \t tab and \" quotes in it", tokens.get(5).content());
+        Assertions.assertEquals(" " + text, tokens.get(6).content());
+        Assertions.assertSame(TokenType.COMMENT, tokens.get(7).type());
+        Assertions.assertEquals(new Location(3, 3, text.length() + 6, "<stdin>"), tokens.get(7).location());
+        Assertions.assertEquals(new Range(285, 288), tokens.get(8).range());
+    }
+
+    @Test
+    public void testPositions() {
+        Tokenizer tokenizer = new Tokenizer();
+        List<Token> tokens = tokenizer.tokenize("<stdin>", "ldc \"a\"\n  iload value\n\treturn").get();
+        Assertions.assertNotNull(tokens);
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            long position = token.position();
+            Location location = token.location();
+            Assertions.assertEquals(location.line(), Position.line(position));
+            Assertions.assertEquals(location.column(), Position.column(position));
+            Assertions.assertEquals(location, Position.toLocation(position, location.length(), "<stdin>"));
+            if (i > 0) {
+                Token previous = tokens.get(i - 1);
+                Assertions.assertEquals(
+                        Integer.signum(previous.location().compareTo(location)),
+                        Integer.signum(Position.compare(previous.position(), position))
+                );
+            }
+        }
+        Assertions.assertEquals(0, Position.compare(Position.NONE, tokens.getFirst().position()));
+        Assertions.assertEquals(Position.NONE, Position.of(null));
+    }
 }
@@ -0,0 +1,46 @@
+package me.darknet.assembler.parser;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class CharScannerTest {
+
+    // every character any of the scanners stops at, mixed with plain ones and a non-ASCII one
+    private static final String ALPHABET = "aZ09_$ \t\r\n*\\\"'/{}:,.;é";
+
+    private final CharScanner scalar = new CharScanner();
+    private final CharScanner best = CharScanner.get();
+
+    @Test
+    public void testVectorScannerLoaded() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+            Assertions.assertNotSame(CharScanner.class, best.getClass());
+        else
+            Assertions.assertSame(CharScanner.class, best.getClass());
+    }
+
+    @Test
+    public void testMatchesScalar() {
+        Random random = new Random(0);
+        for (int round = 0; round < 2000; round++) {
+            // long runs of one character so that vectors of every width are filled before a stop is found
+            char[] input = new char[random.nextInt(200)];
+            for (int i = 0; i < input.length;) {
+                char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                int run = Math.min(input.length - i, 1 + random.nextInt(40));
+                for (int j = 0; j < run; j++)
+                    input[i++] = c;
+            }
+            int from = input.length == 0 ? 0 : random.nextInt(input.length);
+            int to = from + random.nextInt(input.length - from + 1);
+            Assertions.assertEquals(scalar.lineEnd(input, from, to), best.lineEnd(input, from, to));
+            Assertions.assertEquals(scalar.commentEnd(input, from, to), best.commentEnd(input, from, to));
+            Assertions.assertEquals(scalar.literalEnd(input, from, to, '"'), best.literalEnd(input, from, to, '"'));
+            Assertions.assertEquals(scalar.literalEnd(input, from, to, '\''), best.literalEnd(input, from, to, '\''));
+            Assertions.assertEquals(scalar.blankEnd(input, from, to), best.blankEnd(input, from, to));
+            Assertions.assertEquals(scalar.identifierEnd(input, from, to), best.identifierEnd(input, from, to));
+        }
+    }
+}
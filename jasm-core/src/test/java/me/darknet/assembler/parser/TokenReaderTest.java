@@ -0,0 +1,77 @@
+package me.darknet.assembler.parser;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TokenReaderTest {
+
+    // comments, escapes and a token longer than the smallest window, so that every window size below refills the
+    // input somewhere inside of them
+    private static final String INPUT = ".method a ()V {\n\tcode: {\n\t\t/* a comment\n\t\t   over lines */\n"
+            + "\t\tldc \"a\\u0020b\\tc\\u00e9\"\n\t\tldc 'x'\n\t\tldc 'y' // trailing\n"
+            + "\t\tinvokestatic java/lang/invoke/MethodHandles$Lookup.lookupClass ()Ljava/lang/Class;\n"
+            + "\t\tldc 0x1f\n\t}\n}";
+
+    private final Tokenizer tokenizer = new Tokenizer();
+
+    @Test
+    public void testWindowRefills() {
+        List<Token> expected = tokenizer.tokenize("<stdin>", INPUT).get();
+        for (int window = 1; window <= 64; window++) {
+            TokenReader reader = new TokenReader(tokenizer, "<stdin>", new StringReader(INPUT), window);
+            Assertions.assertEquals(expected, read(reader), "window " + window);
+            Assertions.assertTrue(reader.errors().isEmpty(), "window " + window);
+        }
+    }
+
+    @Test
+    public void testShortReads() {
+        // a reader handing out a single character per read refills the window at every step
+        Reader trickle = new StringReader(INPUT) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        };
+        List<Token> expected = tokenizer.tokenize("<stdin>", INPUT).get();
+        Assertions.assertEquals(expected, read(tokenizer.reader("<stdin>", trickle)));
+    }
+
+    @Test
+    public void testPathAndChannel(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("input.jasm");
+        Files.writeString(file, INPUT, StandardCharsets.UTF_8);
+        List<Token> expected = tokenizer.tokenize(file.toString(), INPUT).get();
+
+        try (TokenReader reader = tokenizer.reader(file)) {
+            Assertions.assertEquals(expected, read(reader));
+            Assertions.assertTrue(reader.errors().isEmpty());
+        }
+        try (TokenReader reader = tokenizer.reader(file.toString(), Channels.newChannel(Files.newInputStream(file)))) {
+            Assertions.assertEquals(expected, read(reader));
+        }
+
+        Path empty = dir.resolve("empty.jasm");
+        Files.createFile(empty);
+        try (TokenReader reader = tokenizer.reader(empty)) {
+            Assertions.assertFalse(reader.hasNext());
+        }
+    }
+
+    private static List<Token> read(TokenReader reader) {
+        List<Token> tokens = new ArrayList<>();
+        reader.forEachRemaining(tokens::add);
+        return tokens;
+    }
+}
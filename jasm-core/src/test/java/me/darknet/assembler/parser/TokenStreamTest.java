@@ -0,0 +1,50 @@
+package me.darknet.assembler.parser;
+
+import me.darknet.assembler.ast.ASTElement;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class TokenStreamTest {
+
+    private static final String INPUT = """
+            .method public static m (I)V {
+                parameters: { a },
+                code: {
+                A:
+                    iload a
+                    ifeq A
+                    return
+                }
+            }
+            """;
+
+    @Test
+    public void testViewsOnlyForHeldTokens() {
+        TokenStream tokens = (TokenStream) new Tokenizer().tokenize("<stdin>", INPUT).get();
+        ParsingResult<List<ASTElement>> result = new DeclarationParser().parseDeclarations(tokens);
+        Assertions.assertTrue(result.isOk());
+        // braces, colons and commas are only looked at by the parser, no element holds them
+        int punctuation = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.type(i) == TokenType.OPERATOR && !tokens.contentEquals(i, "{"))
+                punctuation++;
+        }
+        Assertions.assertTrue(punctuation > 0);
+        Assertions.assertTrue(tokens.viewCount() <= tokens.size() - punctuation,
+                tokens.viewCount() + " views of " + tokens.size() + " tokens");
+    }
+
+    @Test
+    public void testLazyCodeFromSlice() {
+        TokenStream tokens = (TokenStream) new Tokenizer().tokenize("<stdin>", INPUT).get();
+        ParsingResult<List<ASTElement>> lazy = new DeclarationParser(true).parseDeclarations(tokens);
+        ParsingResult<List<ASTElement>> eager = new DeclarationParser().parseDeclarations(tokens);
+        Assertions.assertTrue(lazy.isOk());
+        // lazy code is parsed from a slice of the stream once accessed
+        Assertions.assertEquals(eager.get().getFirst().children().size(), lazy.get().getFirst().children().size());
+        Assertions.assertEquals(eager.get().getFirst().content(), lazy.get().getFirst().content());
+    }
+}
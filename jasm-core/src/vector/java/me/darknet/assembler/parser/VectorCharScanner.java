@@ -0,0 +1,85 @@
+package me.darknet.assembler.parser;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link CharScanner} comparing a full vector of characters at a time, the remainder of a range which does not fill
+ * a vector is handled by the scalar implementation. Only loaded by {@link CharScanner#get()} when the
+ * {@code jdk.incubator.vector} module is present.
+ */
+final class VectorCharScanner extends CharScanner {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    @Override
+    int lineEnd(char[] input, int from, int to) {
+        int i = from;
+        for (int bound = to - LANES; i <= bound; i += LANES) {
+            VectorMask<Short> stop = ShortVector.fromCharArray(SPECIES, input, i).eq((short) '\n');
+            if (stop.anyTrue())
+                return i + stop.firstTrue();
+        }
+        return super.lineEnd(input, i, to);
+    }
+
+    @Override
+    int commentEnd(char[] input, int from, int to) {
+        int i = from;
+        for (int bound = to - LANES; i <= bound; i += LANES) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, input, i);
+            VectorMask<Short> stop = chars.eq((short) '\n').or(chars.eq((short) '*'));
+            if (stop.anyTrue())
+                return i + stop.firstTrue();
+        }
+        return super.commentEnd(input, i, to);
+    }
+
+    @Override
+    int literalEnd(char[] input, int from, int to, char quote) {
+        int i = from;
+        for (int bound = to - LANES; i <= bound; i += LANES) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, input, i);
+            VectorMask<Short> stop = chars.eq((short) '\n').or(chars.eq((short) '\\')).or(chars.eq((short) quote));
+            if (stop.anyTrue())
+                return i + stop.firstTrue();
+        }
+        return super.literalEnd(input, i, to, quote);
+    }
+
+    @Override
+    int blankEnd(char[] input, int from, int to) {
+        int i = from;
+        for (int bound = to - LANES; i <= bound; i += LANES) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, input, i);
+            VectorMask<Short> stop = chars.eq((short) ' ').or(chars.eq((short) '\t')).or(chars.eq((short) '\r'))
+                    .not();
+            if (stop.anyTrue())
+                return i + stop.firstTrue();
+        }
+        return super.blankEnd(input, i, to);
+    }
+
+    @Override
+    int identifierEnd(char[] input, int from, int to) {
+        int i = from;
+        for (int bound = to - LANES; i <= bound; i += LANES) {
+            ShortVector chars = ShortVector.fromCharArray(SPECIES, input, i);
+            VectorMask<Short> stop = chars.compare(VectorOperators.UNSIGNED_LE, (short) ' ')
+                    .or(chars.compare(VectorOperators.UNSIGNED_GE, (short) 0x7F))
+                    .or(chars.eq((short) '{'))
+                    .or(chars.eq((short) '}'))
+                    .or(chars.eq((short) ':'))
+                    .or(chars.eq((short) ','))
+                    .or(chars.eq((short) '/'))
+                    .or(chars.eq((short) '"'))
+                    .or(chars.eq((short) '\''));
+            if (stop.anyTrue())
+                return i + stop.firstTrue();
+        }
+        return super.identifierEnd(input, i, to);
+    }
+}